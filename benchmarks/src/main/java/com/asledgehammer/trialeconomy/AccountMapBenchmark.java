@@ -0,0 +1,69 @@
+package com.asledgehammer.trialeconomy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>AccountMapBenchmark</b> measures the account cache shape used by {@link TrialEconomy} at
+ * small and very large populations.
+ *
+ * @author Jab
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AccountMapBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int size;
+
+  private Map<UUID, PlayerAccount> accounts;
+  private UUID[] present;
+  private UUID[] absent;
+  private SplittableRandom random;
+
+  @Setup
+  public void setup() {
+
+    random = new SplittableRandom(0x7e57L);
+    accounts = new HashMap<>();
+    present = new UUID[size];
+    absent = new UUID[1024];
+
+    for (int index = 0; index < size; index++) {
+      UUID playerId = new UUID(random.nextLong(), random.nextLong());
+      present[index] = playerId;
+      accounts.put(playerId, new PlayerAccount(Stubs.offlinePlayer(playerId, "p" + index), index));
+    }
+
+    for (int index = 0; index < absent.length; index++) {
+      absent[index] = new UUID(random.nextLong(), random.nextLong());
+    }
+  }
+
+  @Benchmark
+  public PlayerAccount getHit() {
+    return accounts.get(present[random.nextInt(size)]);
+  }
+
+  @Benchmark
+  public PlayerAccount getMiss() {
+    return accounts.get(absent[random.nextInt(absent.length)]);
+  }
+
+  @Benchmark
+  public PlayerAccount removeAndPut() {
+    UUID playerId = present[random.nextInt(size)];
+    PlayerAccount account = accounts.remove(playerId);
+    accounts.put(playerId, account);
+    return account;
+  }
+}
@@ -0,0 +1,358 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * <b>Checks</b> verifies the behaviour the benchmarks rely on, so a regression fails the build
+ * instead of being measured. Each check throws an {@link IllegalStateException} describing the
+ * first mismatch it finds.
+ *
+ * <p>Run on 'mvn verify' before the benchmarks. Skip with '-Dchecks.skip=true'.
+ *
+ * @author Jab
+ */
+public final class Checks {
+
+  private Checks() {
+    throw new UnsupportedOperationException();
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    Stubs.installLogger();
+
+    run("uuid-layouts", Checks::checkUuidLayouts);
+    run("quantile-sketch", Checks::checkQuantileSketch);
+    run("economy-job-resume", Checks::checkEconomyJobResume);
+  }
+
+  private static void run(@NotNull String name, @NotNull Check check) throws Exception {
+    long start = System.nanoTime();
+    check.run();
+    System.out.printf("%-24s ok (%d ms)%n", name, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Every layout round-trips, and {@link UuidCodec.Layout#TIME_ORDERED} matches MySQL's
+   * UUID_TO_BIN(uuid, 1) and sorts version 1 UUIDs by creation time.
+   */
+  private static void checkUuidLayouts() {
+
+    SplittableRandom random = new SplittableRandom(44);
+    byte[] bytes = new byte[UuidCodec.BYTES];
+    ByteBuffer buffer = ByteBuffer.allocate(UuidCodec.BYTES);
+
+    for (UuidCodec.Layout layout : UuidCodec.Layout.values()) {
+      for (int index = 0; index < 10_000; index++) {
+        UUID uuid = new UUID(random.nextLong(), random.nextLong());
+
+        UuidCodec.encode(uuid, bytes, 0, layout);
+        check(uuid.equals(UuidCodec.decode(bytes, 0, layout)), layout + " array: " + uuid);
+
+        buffer.clear();
+        UuidCodec.encode(uuid, buffer, layout);
+        check(Arrays.equals(bytes, buffer.array()), layout + " buffer differs: " + uuid);
+        buffer.flip();
+        check(uuid.equals(UuidCodec.decode(buffer, layout)), layout + " buffer: " + uuid);
+      }
+    }
+
+    // The example from MySQL's UUID_TO_BIN documentation.
+    UUID example = UUID.fromString("6ccd780c-baba-1026-9564-5b8c656024db");
+    UuidCodec.encode(example, bytes, 0, UuidCodec.Layout.TIME_ORDERED);
+    UUID stored = UuidCodec.decode(bytes, 0, UuidCodec.Layout.SORTABLE);
+    check(
+        stored.toString().equals("1026baba-6ccd-780c-9564-5b8c656024db"),
+        "UUID_TO_BIN mismatch: " + stored);
+
+    byte[] previous = new byte[UuidCodec.BYTES];
+    long timestamp = 0x01EB_0000_0000_0000L;
+    for (int index = 0; index < 10_000; index++) {
+
+      // Steps large & small enough to carry through every time field.
+      timestamp += 1 + random.nextLong(1L << random.nextInt(40));
+      long mostSigBits =
+          (timestamp << 32)
+              | ((timestamp >>> 16) & 0xFFFF_0000L)
+              | 0x1000L
+              | ((timestamp >>> 48) & 0x0FFFL);
+      UUID uuid = new UUID(mostSigBits, random.nextLong());
+      check(uuid.version() == 1 && uuid.timestamp() == timestamp, "Bad v1 UUID: " + uuid);
+
+      UuidCodec.encode(uuid, bytes, 0, UuidCodec.Layout.TIME_ORDERED);
+      if (index > 0) {
+        check(Arrays.compareUnsigned(previous, bytes) < 0, "Not time-ordered at: " + uuid);
+      }
+      System.arraycopy(bytes, 0, previous, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Percentiles are within {@link QuantileSketch#RELATIVE_ACCURACY} of the exact value, and
+   * removing, merging and serializing keep the counts exact.
+   */
+  private static void checkQuantileSketch() {
+
+    Random random = new Random(33);
+    double[] quantiles = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+    int size = 200_000;
+
+    // Balances spanning many orders of magnitude, with a share of empty accounts.
+    double[] values = new double[size];
+    for (int index = 0; index < size; index++) {
+      values[index] = random.nextInt(10) == 0 ? 0 : Math.exp(random.nextGaussian() * 4 + 5);
+    }
+
+    QuantileSketch sketch = new QuantileSketch();
+    for (double value : values) sketch.add(value);
+    check(sketch.getCount() == size, "Count: " + sketch.getCount());
+
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    for (double quantile : quantiles) {
+      double exact = sorted[(int) (quantile * (size - 1))];
+      double estimate = sketch.getQuantile(quantile);
+      double error =
+          exact < QuantileSketch.MIN_VALUE ? estimate : Math.abs(estimate - exact) / exact;
+      check(
+          error <= QuantileSketch.RELATIVE_ACCURACY + 1e-9,
+          "p" + quantile * 100 + " estimated " + estimate + " for " + exact);
+    }
+
+    // Removing the second half leaves the same counts as only adding the first.
+    QuantileSketch first = new QuantileSketch();
+    QuantileSketch second = new QuantileSketch();
+    for (int index = 0; index < size; index++) {
+      (index < size / 2 ? first : second).add(values[index]);
+    }
+    QuantileSketch removed = sketch.copy();
+    for (int index = size / 2; index < size; index++) removed.remove(values[index]);
+    checkSameQuantiles(first, removed, quantiles, "remove");
+
+    QuantileSketch merged = first.copy();
+    merged.merge(second);
+    checkSameQuantiles(sketch, merged, quantiles, "merge");
+
+    ByteBuffer buffer = ByteBuffer.allocate(sketch.getSerializedSize());
+    sketch.writeTo(buffer);
+    check(!buffer.hasRemaining(), "Serialized size: " + buffer.position());
+    buffer.flip();
+    checkSameQuantiles(sketch, QuantileSketch.readFrom(buffer), quantiles, "serialize");
+  }
+
+  private static void checkSameQuantiles(
+      @NotNull QuantileSketch expected,
+      @NotNull QuantileSketch actual,
+      @NotNull double[] quantiles,
+      @NotNull String operation) {
+    check(
+        expected.getCount() == actual.getCount(),
+        operation + " count: " + actual.getCount() + " != " + expected.getCount());
+    for (double quantile : quantiles) {
+      double want = expected.getQuantile(quantile);
+      double got = actual.getQuantile(quantile);
+      check(want == got, operation + " p" + quantile * 100 + ": " + got + " != " + want);
+    }
+  }
+
+  /**
+   * An economy job run changes every account exactly once: in one go, and when stopped part-way by
+   * a shutdown and resumed from its checkpoint by a new instance.
+   */
+  private static void checkEconomyJobResume() throws Exception {
+
+    if (Bukkit.getServer() == null) {
+      Bukkit.setServer(Stubs.server(Map.of(), List.of(), Logger.getLogger("TrialEconomy Checks")));
+    }
+
+    int accounts = 2_000;
+    int chunkSize = 100;
+    double amount = 10;
+
+    Database database =
+        new Database(Stubs.embeddedCredentials("checks_jobs"), 4, CurrencyRegistry.DEFAULT);
+    database.connect();
+
+    SplittableRandom random = new SplittableRandom(45);
+    List<UUID> playerIds = new ArrayList<>(accounts);
+    for (int index = 0; index < accounts; index++) {
+      UUID playerId = new UUID(random.nextLong(), random.nextLong());
+      Player player = Stubs.player(playerId, "player" + index);
+      database.getOrCreateAccount(player);
+      playerIds.add(playerId);
+    }
+
+    MemoryConfiguration rules = new MemoryConfiguration();
+    // A run's changes share a transaction ID, so each scenario runs its own job.
+    for (String name : List.of("full", "resumed")) {
+      rules.createSection(
+          name, Map.of("action", "deposit", "amount", amount, "interval-minutes", 60));
+    }
+    List<EconomyJob> jobs = EconomyJob.load(rules, CurrencyRegistry.DEFAULT);
+
+    ExecutorService async = Executors.newCachedThreadPool();
+    try {
+
+      // A new job waits for its next start, so move its latest run an interval back.
+      JobDriver driver = new JobDriver(database, jobs, chunkSize, async);
+      driver.jobs.check();
+      checkJobRow(database, "full", row -> row.completed, "A new job ran at once.");
+      backdateJob(database, "full");
+
+      double before = sumBalances(database, playerIds);
+      driver.jobs.check();
+      driver.drive(database, "full", row -> row.completed);
+      driver.close();
+      double delta = sumBalances(database, playerIds) - before;
+      check(delta == amount * accounts, "A full run changed balances by " + delta);
+      checkJobRow(
+          database, "full", row -> row.processed == accounts, "A full run missed accounts.");
+
+      // Stop the next run after two chunks, then resume it with a new instance.
+      backdateJob(database, "resumed");
+      before = sumBalances(database, playerIds);
+
+      driver = new JobDriver(database, jobs, chunkSize, async);
+      driver.jobs.check();
+      driver.drive(database, "resumed", row -> row.processed >= 2L * chunkSize);
+      driver.close();
+      checkJobRow(database, "resumed", row -> !row.completed, "The stopped run completed.");
+
+      driver = new JobDriver(database, jobs, chunkSize, async);
+      driver.jobs.check();
+      driver.drive(database, "resumed", row -> row.completed);
+      driver.close();
+      delta = sumBalances(database, playerIds) - before;
+      check(delta == amount * accounts, "A resumed run changed balances by " + delta);
+      checkJobRow(
+          database, "resumed", row -> row.processed == accounts, "A resumed run missed accounts.");
+
+    } finally {
+      async.shutdownNow();
+      database.disconnect();
+    }
+  }
+
+  private static void backdateJob(@NotNull Database database, @NotNull String name)
+      throws SQLException {
+    String sql = "UPDATE " + EconomyJobs.TABLE_JOBS + " SET run_at = run_at - ? WHERE name = ?;";
+    try (Connection conn = database.openWriteConnection();
+        PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setLong(1, TimeUnit.MINUTES.toMillis(60));
+      statement.setString(2, name);
+      statement.executeUpdate();
+    }
+  }
+
+  @NotNull
+  private static JobRow readJobRow(@NotNull Database database, @NotNull String name)
+      throws SQLException {
+    String sql = "SELECT processed, completed FROM " + EconomyJobs.TABLE_JOBS + " WHERE name = ?;";
+    try (Connection conn = database.openWriteConnection();
+        PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setString(1, name);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        check(resultSet.next(), "The job '" + name + "' has no row.");
+        return new JobRow(resultSet.getLong(1), resultSet.getBoolean(2));
+      }
+    }
+  }
+
+  private static void checkJobRow(
+      @NotNull Database database,
+      @NotNull String name,
+      @NotNull Predicate<JobRow> condition,
+      @NotNull String message)
+      throws SQLException {
+    JobRow row = readJobRow(database, name);
+    check(condition.test(row), message + " " + row);
+  }
+
+  private static double sumBalances(@NotNull Database database, @NotNull List<UUID> playerIds)
+      throws SQLException {
+    double sum = 0;
+    for (UUID playerId : playerIds) sum += Objects.requireNonNull(database.getBalance(playerId));
+    return sum;
+  }
+
+  private static void check(boolean condition, @NotNull String message) {
+    if (!condition) throw new IllegalStateException(message);
+  }
+
+  /** The checkpoint of a job run, as stored. */
+  private record JobRow(long processed, boolean completed) {}
+
+  /**
+   * <b>JobDriver</b> runs economy jobs with the calling thread as the main thread, so a check can
+   * stop a run between chunks.
+   *
+   * @author Jab
+   */
+  private static class JobDriver {
+
+    private final BlockingQueue<Runnable> mainTasks = new LinkedBlockingQueue<>();
+    private final AccountMailboxes mailboxes;
+    private final EconomyJobs jobs;
+
+    JobDriver(
+        @NotNull Database database,
+        @NotNull List<EconomyJob> jobs,
+        int chunkSize,
+        @NotNull Executor async) {
+      this.mailboxes =
+          new AccountMailboxes(
+              database, new ConcurrentHashMap<>(), new TransactionLog(database, 10_000, 0), 4);
+      this.jobs =
+          new EconomyJobs(
+              database,
+              mailboxes,
+              jobs,
+              chunkSize,
+              TimeUnit.MILLISECONDS.toNanos(2),
+              mainTasks::add,
+              async);
+    }
+
+    /** Runs main thread tasks and ticks until a job's row meets the condition. */
+    void drive(
+        @NotNull Database database, @NotNull String name, @NotNull Predicate<JobRow> until)
+        throws Exception {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+      while (!until.test(readJobRow(database, name))) {
+        check(System.nanoTime() < deadline, "The job stalled at " + readJobRow(database, name));
+        Runnable task = mainTasks.poll(5, TimeUnit.MILLISECONDS);
+        if (task != null) task.run();
+        jobs.tick();
+      }
+    }
+
+    /** Shuts down the same way the plugin disables. */
+    void close() throws InterruptedException {
+      jobs.close();
+      check(mailboxes.close(10_000), "The mailboxes didn't drain.");
+    }
+  }
+
+  /**
+   * <b>Check</b> is one verification run by {@link Checks}.
+   *
+   * @author Jab
+   */
+  @FunctionalInterface
+  private interface Check {
+    void run() throws Exception;
+  }
+}
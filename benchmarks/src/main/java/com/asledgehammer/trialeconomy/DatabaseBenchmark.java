@@ -0,0 +1,106 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>DatabaseBenchmark</b> measures {@link Database} encoding and round trips against an embedded
+ * H2 database running in MySQL compatibility mode.
+ *
+ * <p>Hot paths prepare their statement on every call and rely on the driver to cache it. Each round
+ * trip is measured with and without that cache: H2's per-session parse cache stands in for
+ * Connector/J's 'cachePrepStmts', so the difference is what preparing per call costs without it.
+ *
+ * @author Jab
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseBenchmark {
+
+  /** The amount of accounts seeded before measuring. */
+  private static final int ACCOUNTS = 10_000;
+
+  /** If false, the driver parses every statement prepared, as without a statement cache. */
+  @Param({"true", "false"})
+  public boolean statementCache;
+
+  private Database database;
+  private Player[] players;
+  private PlayerAccount[] accounts;
+  private SplittableRandom random;
+  private final byte[] buffer = new byte[UuidCodec.BYTES];
+
+  @Setup
+  public void setup() throws SQLException {
+
+    Stubs.installLogger();
+
+    random = new SplittableRandom(0x7e57L);
+    String url = Stubs.embeddedJdbcUrl("bench_" + System.nanoTime());
+    if (!statementCache) url += ";QUERY_CACHE_SIZE=0";
+    database = new Database(new Database.Credentials(url, "sa", ""));
+    database.connect();
+
+    players = new Player[ACCOUNTS];
+    accounts = new PlayerAccount[ACCOUNTS];
+
+    for (int index = 0; index < ACCOUNTS; index++) {
+      UUID playerId = new UUID(random.nextLong(), random.nextLong());
+      players[index] = Stubs.player(playerId, "p" + index);
+      accounts[index] = database.getOrCreateAccount(players[index]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    database.disconnect();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public byte[] toBytes() {
+    return UuidCodec.toBytes(players[random.nextInt(ACCOUNTS)].getUniqueId());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public UUID encodeDecode() {
+    UUID playerId = players[random.nextInt(ACCOUNTS)].getUniqueId();
+    UuidCodec.encode(playerId, buffer, 0, UuidCodec.Layout.LEGACY);
+    return UuidCodec.decode(buffer, 0, UuidCodec.Layout.LEGACY);
+  }
+
+  @Benchmark
+  public PlayerAccount getOrCreateAccount() throws SQLException {
+    return database.getOrCreateAccount(players[random.nextInt(ACCOUNTS)]);
+  }
+
+  @Benchmark
+  public PlayerAccount getAccount() throws SQLException {
+    OfflinePlayer player = players[random.nextInt(ACCOUNTS)];
+    return database.getAccount(player);
+  }
+
+  @Benchmark
+  public boolean hasAccount() throws SQLException {
+    return database.hasAccount(players[random.nextInt(ACCOUNTS)].getUniqueId());
+  }
+
+  @Benchmark
+  public PlayerAccount save() throws SQLException {
+    PlayerAccount account = accounts[random.nextInt(ACCOUNTS)];
+    account.deposit(1.0);
+    database.save(account);
+    return account;
+  }
+}
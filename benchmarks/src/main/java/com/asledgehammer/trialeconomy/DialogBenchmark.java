@@ -0,0 +1,63 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>DialogBenchmark</b> measures rendering the shipped English dialog with injected arguments.
+ *
+ * @author Jab
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DialogBenchmark {
+
+  private Dialog dialog;
+  private Dialog.Arg playerArg;
+  private Dialog.Arg amountArg;
+  private Dialog.Arg balanceArg;
+
+  @Setup
+  public void setup() throws Exception {
+
+    InputStream in =
+        Objects.requireNonNull(
+            DialogBenchmark.class
+                .getClassLoader()
+                .getResourceAsStream("dialog/trial_economy_en.yml"));
+
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      dialog = new Dialog(YamlConfiguration.loadConfiguration(reader));
+    }
+
+    playerArg = new Dialog.Arg("player", "Notch");
+    amountArg = new Dialog.Arg("amount", "250.0");
+    balanceArg = new Dialog.Arg("balance", 1250.0);
+  }
+
+  @Benchmark
+  public String noArgs() {
+    return dialog.get("command_help");
+  }
+
+  @Benchmark
+  public String twoArgs() {
+    return dialog.get("command_report_success", playerArg, balanceArg);
+  }
+
+  @Benchmark
+  public String threeArgs() {
+    return dialog.get("command_deposit_success", playerArg, amountArg, balanceArg);
+  }
+}
@@ -0,0 +1,92 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <b>LatencyInjectingCredentials</b> wraps the connections of an embedded database so every
+ * statement execution pays a simulated network round trip.
+ *
+ * @author Jab
+ */
+class LatencyInjectingCredentials extends Database.Credentials {
+
+  /** The delay added to each statement execution, in nanoseconds. Zero disables injection. */
+  private volatile long latencyNanos;
+
+  /**
+   * @param jdbcUrl The JDBC URL to connect to.
+   * @param username The username of the database account.
+   * @param password The password for authenticating with the service.
+   */
+  LatencyInjectingCredentials(
+      @NotNull String jdbcUrl, @NotNull String username, @NotNull String password) {
+    super(jdbcUrl, username, password);
+  }
+
+  /** @param latencyNanos The delay added to each statement execution. Zero disables injection. */
+  void setLatencyNanos(long latencyNanos) {
+    if (latencyNanos < 0) {
+      throw new IllegalArgumentException("The latency cannot be negative. (" + latencyNanos + ")");
+    }
+    this.latencyNanos = latencyNanos;
+  }
+
+  @NotNull
+  @Override
+  Connection newConnection() throws SQLException {
+
+    Connection conn = super.newConnection();
+
+    return (Connection)
+        Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class[] {Connection.class},
+            (proxy, method, args) -> {
+              Object result = invoke(conn, method, args);
+              return switch (method.getName()) {
+                case "createStatement" -> wrap(result, Statement.class);
+                case "prepareStatement" -> wrap(result, PreparedStatement.class);
+                case "prepareCall" -> wrap(result, CallableStatement.class);
+                default -> result;
+              };
+            });
+  }
+
+  @NotNull
+  private Object wrap(@NotNull Object statement, @NotNull Class<?> type) {
+    return Proxy.newProxyInstance(
+        getClass().getClassLoader(),
+        new Class[] {type},
+        (proxy, method, args) -> {
+          if (method.getName().startsWith("execute")) pause();
+          return invoke(statement, method, args);
+        });
+  }
+
+  private void pause() {
+    long latency = latencyNanos;
+    if (latency == 0) return;
+    long deadline = System.nanoTime() + latency;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) LockSupport.parkNanos(remaining);
+  }
+
+  private static Object invoke(@NotNull Object target, @NotNull Method method, Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package com.asledgehammer.trialeconomy;
+
+import org.HdrHistogram.Histogram;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <b>LoadHarness</b> drives {@link TrialEconomy} with synthetic join, quit and transaction traffic
+ * outside of a Paper server, reporting throughput and latency percentiles per operation.
+ *
+ * <p>Operations are scheduled open-loop at their configured rates and submitted one at a time, the
+ * same way the server's main thread would. Latency is measured from each operation's scheduled
+ * start to its completion, which for joins, quits and transactions is when their account's mailbox
+ * has run them, so time spent queued behind a slow operation is counted rather than hidden.
+ *
+ * @author Jab
+ */
+public final class LoadHarness {
+
+  private static final String[] OPERATIONS = {"join", "quit", "deposit", "withdraw", "report"};
+
+  private final Workload workload;
+  private final SplittableRandom random;
+  private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+  private final Player[] players;
+  private final Map<String, Player> playersByName = new HashMap<>();
+  private final Set<Player> online = new LinkedHashSet<>();
+  private final PriorityQueue<Session> sessions = new PriorityQueue<>();
+
+  private final ZipfDistribution targets;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Command command =
+      new Command("balance") {
+        @Override
+        public boolean execute(
+            @NotNull CommandSender sender, @NotNull String label, @NotNull String[] args) {
+          return false;
+        }
+      };
+
+  private TrialEconomy plugin;
+  private BalanceCommand balanceCommand;
+
+  private LoadHarness(@NotNull Workload workload) {
+
+    this.workload = workload;
+    this.random = new SplittableRandom(workload.seed);
+    this.targets = new ZipfDistribution(workload.players, workload.zipfExponent);
+
+    for (String operation : OPERATIONS) histograms.put(operation, new Histogram(3));
+
+    players = new Player[workload.players];
+    for (int index = 0; index < players.length; index++) {
+      String name = "player" + index;
+      players[index] = Stubs.player(new UUID(random.nextLong(), random.nextLong()), name);
+      playersByName.put(name, players[index]);
+    }
+
+    // Shuffle so the hottest Zipf ranks aren't also the first players to join.
+    for (int index = players.length - 1; index > 0; index--) {
+      int other = random.nextInt(index + 1);
+      Player player = players[index];
+      players[index] = players[other];
+      players[other] = player;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    if (Arrays.asList(args).contains("--help")) {
+      System.out.println(Workload.USAGE);
+      return;
+    }
+
+    Workload workload;
+    try {
+      workload = Workload.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(Workload.USAGE);
+      System.exit(2);
+      return;
+    }
+
+    new LoadHarness(workload).run();
+  }
+
+  private void run() throws IOException, SQLException {
+
+    Logger serverLogger = Logger.getLogger("Harness");
+    Server server = Stubs.server(playersByName, online, serverLogger);
+    Bukkit.setServer(server);
+
+    File dataFolder = Files.createTempDirectory("trialeconomy-load").toFile();
+    plugin =
+        new TrialEconomy(
+            new JavaPluginLoader(server),
+            new PluginDescriptionFile("TrialEconomy", "load", TrialEconomy.class.getName()),
+            dataFolder,
+            new File(dataFolder, "TrialEconomy.jar"));
+
+    LatencyInjectingCredentials credentials =
+        new LatencyInjectingCredentials(Stubs.embeddedJdbcUrl("load_" + workload.seed), "sa", "");
+
+    if (!plugin.enable(credentials)) throw new IllegalStateException("Failed to enable.");
+    TrialEconomy.logger.setLevel(Level.WARNING);
+    balanceCommand = new BalanceCommand();
+
+    System.out.println("Seeding " + players.length + " accounts..");
+    for (Player player : players) plugin.getDatabase().getOrCreateAccount(player);
+
+    credentials.setLatencyNanos((long) (workload.jdbcLatencyMs * 1_000_000));
+
+    System.out.println("Running for " + workload.durationSeconds + " seconds..");
+    long elapsed = drive();
+    awaitPending();
+
+    long disableStart = System.nanoTime();
+    plugin.onDisable();
+    long disableNanos = System.nanoTime() - disableStart;
+
+    printReport(elapsed, disableNanos);
+  }
+
+  /** @return The elapsed time of the run in nanoseconds. */
+  private long drive() {
+
+    long start = System.nanoTime();
+    long end = start + TimeUnit.SECONDS.toNanos(workload.durationSeconds);
+
+    long nextJoin = start + interval(workload.joinsPerMinute / 60.0);
+    long nextTransaction = start + interval(workload.transactionsPerSecond);
+    long nextReport = start + interval(workload.reportsPerMinute / 60.0);
+
+    while (true) {
+
+      long nextQuit = sessions.isEmpty() ? Long.MAX_VALUE : sessions.peek().quitAt;
+      long next = Math.min(Math.min(nextJoin, nextTransaction), Math.min(nextReport, nextQuit));
+      if (next - end >= 0) break;
+
+      long wait;
+      while ((wait = next - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+
+      if (next == nextQuit) {
+        quit(Objects.requireNonNull(sessions.poll()).player, next);
+      } else if (next == nextJoin) {
+        join(next);
+        nextJoin += interval(workload.joinsPerMinute / 60.0);
+      } else if (next == nextTransaction) {
+        transact(next);
+        nextTransaction += interval(workload.transactionsPerSecond);
+      } else {
+        balanceReport(next);
+        nextReport += interval(workload.reportsPerMinute / 60.0);
+      }
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private void join(long scheduled) {
+
+    if (online.size() == players.length) return;
+
+    Player player;
+    do {
+      player = players[random.nextInt(players.length)];
+    } while (online.contains(player));
+
+    online.add(player);
+    // The same as the join event, but keeping the future so completion is what's timed.
+    pending.incrementAndGet();
+    plugin.load(player).whenComplete((account, e) -> complete("join", scheduled));
+
+    long sessionNanos = (long) (exponential(1.0 / workload.sessionSeconds) * 1_000_000_000L);
+    sessions.add(new Session(player, scheduled + Math.max(1, sessionNanos)));
+  }
+
+  private void quit(@NotNull Player player, long scheduled) {
+    pending.incrementAndGet();
+    plugin.save(player.getUniqueId()).whenComplete((ignored, e) -> complete("quit", scheduled));
+    online.remove(player);
+  }
+
+  private void transact(long scheduled) {
+
+    Player player = players[targets.sample(random)];
+    boolean withdraw = random.nextDouble() < workload.withdrawRatio;
+    String amount = Integer.toString(1 + random.nextInt(100));
+    String operation = withdraw ? "withdraw" : "deposit";
+
+    balanceCommand.onCommand(
+        console(operation, scheduled),
+        command,
+        "balance",
+        new String[] {operation, player.getName(), amount});
+  }
+
+  private void balanceReport(long scheduled) {
+    Player player = players[targets.sample(random)];
+    balanceCommand.onCommand(
+        console("report", scheduled),
+        command,
+        "balance",
+        new String[] {"report", player.getName()});
+  }
+
+  /**
+   * @param operation The operation the command runs.
+   * @param scheduled The scheduled start of the operation.
+   * @return A console completing the operation when the command replies. Transactions reply once
+   *     their mailbox has run them, so it's the reply that's timed rather than the submission.
+   */
+  @NotNull
+  private CommandSender console(@NotNull String operation, long scheduled) {
+    pending.incrementAndGet();
+    AtomicBoolean replied = new AtomicBoolean();
+    return Stubs.console(
+        message -> {
+          if (replied.compareAndSet(false, true)) complete(operation, scheduled);
+        });
+  }
+
+  /** Records an operation completing, from whichever thread completed it. */
+  private void complete(@NotNull String operation, long scheduled) {
+    long micros = Math.max(0, (System.nanoTime() - scheduled) / 1_000);
+    Histogram histogram = histograms.get(operation);
+    synchronized (histogram) {
+      histogram.recordValue(micros);
+    }
+    pending.decrementAndGet();
+  }
+
+  /** Waits for operations submitted before the end of the run to complete, so all are counted. */
+  private void awaitPending() {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (pending.get() > 0 && System.nanoTime() - deadline < 0) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    if (pending.get() > 0) {
+      System.err.println(pending.get() + " operations didn't complete and weren't counted.");
+    }
+  }
+
+  /**
+   * @param perSecond The mean rate of arrivals per second.
+   * @return The nanoseconds until the next Poisson arrival.
+   */
+  private long interval(double perSecond) {
+    if (perSecond <= 0) return Long.MAX_VALUE / 4;
+    return Math.max(1, (long) (exponential(perSecond) * 1_000_000_000L));
+  }
+
+  /**
+   * @param rate The rate of the exponential distribution.
+   * @return A sample in seconds.
+   */
+  private double exponential(double rate) {
+    return -Math.log(1.0 - random.nextDouble()) / rate;
+  }
+
+  private void printReport(long elapsedNanos, long disableNanos) throws IOException {
+
+    double seconds = elapsedNanos / 1_000_000_000.0;
+
+    System.out.printf(
+        "%n%-10s %10s %12s %10s %10s %10s %10s%n",
+        "operation", "count", "ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)");
+
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      Histogram histogram = entry.getValue();
+      System.out.printf(
+          "%-10s %10d %12.1f %10d %10d %10d %10d%n",
+          entry.getKey(),
+          histogram.getTotalCount(),
+          histogram.getTotalCount() / seconds,
+          histogram.getValueAtPercentile(50),
+          histogram.getValueAtPercentile(99),
+          histogram.getValueAtPercentile(99.9),
+          histogram.getMaxValue());
+    }
+
+    System.out.printf(
+        "%nPlayers online at shutdown: %d (saved in %.1f ms)%n",
+        online.size(), disableNanos / 1_000_000.0);
+
+    if (workload.output == null) return;
+
+    try (PrintWriter writer = new PrintWriter(workload.output)) {
+      writer.println("{");
+      writer.printf(Locale.ROOT, "  \"durationSeconds\": %.3f,%n", seconds);
+      writer.printf(Locale.ROOT, "  \"jdbcLatencyMs\": %.3f,%n", workload.jdbcLatencyMs);
+      writer.printf(Locale.ROOT, "  \"shutdownMs\": %.3f,%n", disableNanos / 1_000_000.0);
+      writer.println("  \"operations\": {");
+
+      Iterator<Map.Entry<String, Histogram>> iterator = histograms.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, Histogram> entry = iterator.next();
+        Histogram histogram = entry.getValue();
+        writer.printf(
+            Locale.ROOT,
+            "    \"%s\": {\"count\": %d, \"opsPerSecond\": %.3f, \"p50Us\": %d, \"p99Us\": %d,"
+                + " \"p999Us\": %d, \"maxUs\": %d}%s%n",
+            entry.getKey(),
+            histogram.getTotalCount(),
+            histogram.getTotalCount() / seconds,
+            histogram.getValueAtPercentile(50),
+            histogram.getValueAtPercentile(99),
+            histogram.getValueAtPercentile(99.9),
+            histogram.getMaxValue(),
+            iterator.hasNext() ? "," : "");
+      }
+
+      writer.println("  }");
+      writer.println("}");
+    }
+
+    System.out.println("Wrote report to " + workload.output);
+  }
+
+  /** A scheduled quit for an online player. */
+  private static class Session implements Comparable<Session> {
+
+    final Player player;
+    final long quitAt;
+
+    Session(@NotNull Player player, long quitAt) {
+      this.player = player;
+      this.quitAt = quitAt;
+    }
+
+    @Override
+    public int compareTo(@NotNull Session other) {
+      return Long.compare(quitAt, other.quitAt);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.asledgehammer.trialeconomy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>PlayerAccountBenchmark</b> measures {@link PlayerAccount} mutation with and without threads
+ * contending for the same account.
+ *
+ * @author Jab
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerAccountBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class SharedAccount {
+
+    PlayerAccount account;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      account = new PlayerAccount(Stubs.offlinePlayer(UUID.randomUUID(), "shared"), 1_000_000.0);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class OwnAccount {
+
+    PlayerAccount account;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      account = new PlayerAccount(Stubs.offlinePlayer(UUID.randomUUID(), "own"), 1_000_000.0);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public double uncontended(OwnAccount state) {
+    PlayerAccount account = state.account;
+    account.deposit(10.0);
+    account.withdraw(10.0);
+    return account.getBalance();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public double contended(SharedAccount state) {
+    PlayerAccount account = state.account;
+    account.deposit(10.0);
+    if (account.has(10.0)) account.withdraw(10.0);
+    return account.getBalance();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public double contendedSetBalance(SharedAccount state) {
+    PlayerAccount account = state.account;
+    account.setBalance(account.getBalance() + 1.0);
+    return account.getBalance();
+  }
+}
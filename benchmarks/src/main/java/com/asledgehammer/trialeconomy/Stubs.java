@@ -0,0 +1,187 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <b>Stubs</b> provides server-less stand-ins for the Bukkit types used by TrialEconomy so its
+ * internals can be exercised outside of a running Paper server.
+ *
+ * @author Jab
+ */
+final class Stubs {
+
+  private Stubs() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Installs a quiet logger for TrialEconomy so per-save logging doesn't dominate measurements.
+   */
+  static void installLogger() {
+    Logger logger = Logger.getLogger("TrialEconomy");
+    logger.setLevel(Level.WARNING);
+    TrialEconomy.logger = logger;
+  }
+
+  /**
+   * @param name A unique name for the in-memory database.
+   * @return The JDBC URL of an embedded H2 database running in MySQL compatibility mode.
+   */
+  @NotNull
+  static String embeddedJdbcUrl(@NotNull String name) {
+    return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+  }
+
+  /**
+   * @param name A unique name for the in-memory database.
+   * @return Credentials for an embedded H2 database running in MySQL compatibility mode.
+   */
+  @NotNull
+  static Database.Credentials embeddedCredentials(@NotNull String name) {
+    return new Database.Credentials(embeddedJdbcUrl(name), "sa", "");
+  }
+
+  /**
+   * @param playerId The ID of the player.
+   * @param name The name of the player.
+   * @return A player stub answering identity queries only.
+   */
+  @NotNull
+  static Player player(@NotNull UUID playerId, @NotNull String name) {
+    return (Player)
+        Proxy.newProxyInstance(
+            Stubs.class.getClassLoader(),
+            new Class[] {Player.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "getUniqueId" -> playerId;
+                  case "getName" -> name;
+                  case "hasPlayedBefore", "isOnline" -> true;
+                  case "hashCode" -> playerId.hashCode();
+                  case "equals" -> proxy == args[0];
+                  case "toString" -> "Player{" + name + "}";
+                  default -> defaultValue(method.getReturnType());
+                });
+  }
+
+  /**
+   * @param playerId The ID of the player.
+   * @param name The name of the player.
+   * @return An offline player stub answering identity queries only.
+   */
+  @NotNull
+  static OfflinePlayer offlinePlayer(@NotNull UUID playerId, @NotNull String name) {
+    return player(playerId, name);
+  }
+
+  /**
+   * @param playersByName The players known to the server, keyed by name.
+   * @param online The players currently online.
+   * @param logger The logger of the server.
+   * @return A server stub resolving players from the given collections, and any player ID to an
+   *     offline player, ignoring everything else. One-shot tasks run immediately on the calling
+   *     thread; repeating tasks never run.
+   */
+  @NotNull
+  static Server server(
+      @NotNull Map<String, Player> playersByName,
+      @NotNull Collection<Player> online,
+      @NotNull Logger logger) {
+
+    PluginManager pluginManager =
+        (PluginManager)
+            Proxy.newProxyInstance(
+                Stubs.class.getClassLoader(),
+                new Class[] {PluginManager.class},
+                (proxy, method, args) -> defaultValue(method.getReturnType()));
+
+    BukkitScheduler scheduler =
+        (BukkitScheduler)
+            Proxy.newProxyInstance(
+                Stubs.class.getClassLoader(),
+                new Class[] {BukkitScheduler.class},
+                (proxy, method, args) -> {
+                  String name = method.getName();
+                  if ((name.equals("runTask") || name.equals("runTaskAsynchronously"))
+                      && args.length == 2
+                      && args[1] instanceof Runnable task) {
+                    task.run();
+                  }
+                  return defaultValue(method.getReturnType());
+                });
+
+    return (Server)
+        Proxy.newProxyInstance(
+            Stubs.class.getClassLoader(),
+            new Class[] {Server.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "getLogger" -> logger;
+                  case "getName" -> "TrialEconomy Harness";
+                  case "getVersion", "getBukkitVersion" -> "headless";
+                  case "getOnlinePlayers" -> online;
+                  case "getPluginManager" -> pluginManager;
+                  case "getScheduler" -> scheduler;
+                  case "isPrimaryThread" -> true;
+                  case "getOfflinePlayer" -> args[0] instanceof String name
+                      ? playersByName.get(name)
+                      : offlinePlayer((UUID) args[0], args[0].toString());
+                  case "hashCode" -> System.identityHashCode(proxy);
+                  case "equals" -> proxy == args[0];
+                  case "toString" -> "Server{headless}";
+                  default -> defaultValue(method.getReturnType());
+                });
+  }
+
+  /**
+   * @param sink The consumer receiving every message sent to the commander.
+   * @return A console commander stub with every permission.
+   */
+  @NotNull
+  static CommandSender console(@NotNull Consumer<String> sink) {
+    return (CommandSender)
+        Proxy.newProxyInstance(
+            Stubs.class.getClassLoader(),
+            new Class[] {CommandSender.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "sendMessage" -> {
+                    if (args.length == 1 && args[0] instanceof String message) sink.accept(message);
+                    yield null;
+                  }
+                  case "getName" -> "CONSOLE";
+                  case "hasPermission", "isPermissionSet", "isOp" -> true;
+                  case "hashCode" -> System.identityHashCode(proxy);
+                  case "equals" -> proxy == args[0];
+                  case "toString" -> "CommandSender{CONSOLE}";
+                  default -> defaultValue(method.getReturnType());
+                });
+  }
+
+  private static Object defaultValue(@NotNull Class<?> type) {
+    if (!type.isPrimitive()) return null;
+    if (type == boolean.class) return false;
+    if (type == void.class) return null;
+    if (type == char.class) return '\0';
+    if (type == float.class) return 0f;
+    if (type == double.class) return 0d;
+    if (type == long.class) return 0L;
+    if (type == int.class) return 0;
+    if (type == short.class) return (short) 0;
+    return (byte) 0;
+  }
+}
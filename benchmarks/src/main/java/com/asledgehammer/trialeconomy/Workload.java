@@ -0,0 +1,94 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <b>Workload</b> holds the traffic settings of a {@link LoadHarness} run, parsed from '--key
+ * value' command-line pairs.
+ *
+ * @author Jab
+ */
+class Workload {
+
+  static final String USAGE =
+      String.join(
+          System.lineSeparator(),
+          "Usage: LoadHarness [--key value]...",
+          "  --players <n>                 Distinct players known to the server. (10000)",
+          "  --duration-seconds <n>        Length of the measured run. (60)",
+          "  --joins-per-minute <n>        Player joins per minute. (500)",
+          "  --session-seconds <n>         Mean time a player stays online. (600)",
+          "  --transactions-per-second <n> Admin deposits & withdrawals per second. (200)",
+          "  --withdraw-ratio <0..1>       Share of transactions that are withdrawals. (0.4)",
+          "  --zipf-exponent <s>           Skew of the transaction target distribution. (1.1)",
+          "  --reports-per-minute <n>      Admin '/balance report' commands per minute. (60)",
+          "  --jdbc-latency-ms <ms>        Latency added to every JDBC statement. (0)",
+          "  --seed <n>                    Random seed for a reproducible workload. (1)",
+          "  --output <file>               Writes the report as JSON to the file.");
+
+  int players = 10_000;
+  int durationSeconds = 60;
+  double joinsPerMinute = 500;
+  double sessionSeconds = 600;
+  double transactionsPerSecond = 200;
+  double withdrawRatio = 0.4;
+  double zipfExponent = 1.1;
+  double reportsPerMinute = 60;
+  double jdbcLatencyMs = 0;
+  long seed = 1;
+  @Nullable String output;
+
+  /**
+   * @param args The command-line arguments.
+   * @return The parsed workload.
+   * @throws IllegalArgumentException Thrown if an argument is unknown, missing its value, or out of
+   *     range.
+   */
+  @NotNull
+  static Workload parse(@NotNull String[] args) {
+
+    Workload workload = new Workload();
+
+    for (int index = 0; index < args.length; index += 2) {
+
+      String key = args[index];
+      if (index + 1 >= args.length) {
+        throw new IllegalArgumentException("The argument '" + key + "' has no value.");
+      }
+      String value = args[index + 1];
+
+      switch (key) {
+        case "--players" -> workload.players = Integer.parseInt(value);
+        case "--duration-seconds" -> workload.durationSeconds = Integer.parseInt(value);
+        case "--joins-per-minute" -> workload.joinsPerMinute = Double.parseDouble(value);
+        case "--session-seconds" -> workload.sessionSeconds = Double.parseDouble(value);
+        case "--transactions-per-second" -> workload.transactionsPerSecond =
+            Double.parseDouble(value);
+        case "--withdraw-ratio" -> workload.withdrawRatio = Double.parseDouble(value);
+        case "--zipf-exponent" -> workload.zipfExponent = Double.parseDouble(value);
+        case "--reports-per-minute" -> workload.reportsPerMinute = Double.parseDouble(value);
+        case "--jdbc-latency-ms" -> workload.jdbcLatencyMs = Double.parseDouble(value);
+        case "--seed" -> workload.seed = Long.parseLong(value);
+        case "--output" -> workload.output = value;
+        default -> throw new IllegalArgumentException("Unknown argument: " + key);
+      }
+    }
+
+    if (workload.players < 1) {
+      throw new IllegalArgumentException("--players must be at least 1.");
+    } else if (workload.durationSeconds < 1) {
+      throw new IllegalArgumentException("--duration-seconds must be at least 1.");
+    } else if (workload.withdrawRatio < 0 || workload.withdrawRatio > 1) {
+      throw new IllegalArgumentException("--withdraw-ratio must be between 0 and 1.");
+    } else if (workload.joinsPerMinute < 0
+        || workload.sessionSeconds <= 0
+        || workload.transactionsPerSecond < 0
+        || workload.reportsPerMinute < 0
+        || workload.jdbcLatencyMs < 0) {
+      throw new IllegalArgumentException("Rates and latencies cannot be negative.");
+    }
+
+    return workload;
+  }
+}
@@ -0,0 +1,50 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * <b>ZipfDistribution</b> samples ranks in [0, n) where rank k is drawn with probability
+ * proportional to 1 / (k + 1)^s, modelling a few very active players and a long tail.
+ *
+ * @author Jab
+ */
+class ZipfDistribution {
+
+  /** The cumulative probability of each rank. */
+  private final double[] cdf;
+
+  /**
+   * @param n The number of ranks.
+   * @param exponent The skew of the distribution. Zero is uniform.
+   * @throws IllegalArgumentException Thrown if n is less than 1 or the exponent is negative.
+   */
+  ZipfDistribution(int n, double exponent) {
+
+    if (n < 1) throw new IllegalArgumentException("n must be at least 1. (" + n + " given)");
+    if (exponent < 0) {
+      throw new IllegalArgumentException("The exponent cannot be negative. (" + exponent + ")");
+    }
+
+    cdf = new double[n];
+
+    double sum = 0;
+    for (int rank = 0; rank < n; rank++) {
+      sum += 1.0 / Math.pow(rank + 1, exponent);
+      cdf[rank] = sum;
+    }
+    for (int rank = 0; rank < n; rank++) cdf[rank] /= sum;
+  }
+
+  /**
+   * @param random The source of randomness.
+   * @return A rank in [0, n).
+   */
+  int sample(@NotNull SplittableRandom random) {
+    int index = Arrays.binarySearch(cdf, random.nextDouble());
+    if (index < 0) index = -index - 1;
+    return Math.min(index, cdf.length - 1);
+  }
+}
@@ -0,0 +1,630 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <b>AccountMailboxes</b> runs every operation on an account through a queue of its own, drained
+ * by a shared pool of workers.
+ *
+ * <p>Operations on the same account run one at a time in the order they were submitted, while
+ * different accounts are drained in parallel without any lock shared between them. Each drain runs
+ * up to {@link AccountMailboxes#BATCH_SIZE} queued operations, then saves the account once if any
+ * of them changed it. If the save fails, the drain's changes are undone and its operations fail.
+ *
+ * @author Jab
+ */
+class AccountMailboxes {
+
+  /** The most operations run per drain before the account is saved and others get a turn. */
+  static final int BATCH_SIZE = 64;
+
+  /** The most time to wait checking that a worker's connection still works, in seconds. */
+  private static final int VALID_TIMEOUT_SECONDS = 2;
+
+  /** The database to read and save accounts with. */
+  private final Database database;
+
+  /** The accounts of online players. Shared with {@link TrialEconomy}. */
+  private final Map<UUID, PlayerAccount> loaded;
+
+  /** The outcomes of transactions given IDs. */
+  private final TransactionLog transactions;
+
+  /** The mailboxes with queued or running operations. Idle mailboxes are removed. */
+  private final Map<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+  /** The workers draining the mailboxes. */
+  private final ExecutorService executor;
+
+  /** The connection of each worker. */
+  private final ThreadLocal<Connection> connection = new ThreadLocal<>();
+
+  /** Every worker connection opened, so they can be closed. */
+  private final List<Connection> connections = new ArrayList<>();
+
+  /**
+   * @param database The database to read and save accounts with.
+   * @param loaded The accounts of online players. Must be safe to use from several threads.
+   * @param transactions The outcomes of transactions given IDs.
+   * @param threads The amount of workers.
+   * @throws IllegalArgumentException Thrown if the amount of workers is less than 1.
+   * @throws NullPointerException Thrown if the database, map or log is null.
+   */
+  AccountMailboxes(
+      @NotNull Database database,
+      @NotNull Map<UUID, PlayerAccount> loaded,
+      @NotNull TransactionLog transactions,
+      int threads) {
+
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+          "There must be at least 1 worker. (" + threads + " given)");
+    }
+
+    this.database = database;
+    this.loaded = loaded;
+    this.transactions = transactions;
+
+    AtomicInteger count = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            threads,
+            task -> {
+              Thread thread = new Thread(task, "TrialEconomy Mailbox #" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Queues an operation on an account. If the player is offline, the account is read from the
+   * primary for the drain and saved back afterwards.
+   *
+   * @param player The player associated with the account.
+   * @param operation The operation to run.
+   * @return The result of the operation. Completes off the main thread once any change made by the
+   *     operation is saved. If the player doesn't have an account, it completes exceptionally with
+   *     a {@link NullPointerException}.
+   */
+  @NotNull
+  <T> CompletableFuture<T> submit(
+      @NotNull OfflinePlayer player, @NotNull AccountOperation<T> operation) {
+    return queue(
+        player.getUniqueId(),
+        null,
+        (mailbox, conn) -> operation.apply(mailbox.requireAccount(conn, player)));
+  }
+
+  /**
+   * Queues a transaction on an account. If the transaction ID was seen before, the transaction
+   * isn't run again and the outcome of its first run is returned instead.
+   *
+   * @param player The player associated with the account.
+   * @param currency The currency the transaction changes.
+   * @param transactionId (Optional) The ID the client gave the transaction.
+   * @param operation The transaction. Returns false if it refused to change the account.
+   * @return The outcome of the transaction, in the currency. Completes off the main thread once the
+   *     change and its outcome are saved together.
+   */
+  @NotNull
+  CompletableFuture<TransactionResult> transact(
+      @NotNull OfflinePlayer player,
+      @NotNull Currency currency,
+      @Nullable String transactionId,
+      @NotNull AccountOperation<Boolean> operation) {
+    return transact(player, currency, transactionId, operation, true);
+  }
+
+  /**
+   * Queues a transaction on an account that may not exist. (See {@link
+   * AccountMailboxes#transact(OfflinePlayer, Currency, String, AccountOperation)})
+   *
+   * @param player The player associated with the account.
+   * @param currency The currency the transaction changes.
+   * @param transactionId (Optional) The ID the client gave the transaction.
+   * @param operation The transaction. Returns false if it refused to change the account.
+   * @return The outcome of the transaction, in the currency. If the player has no account, the
+   *     transaction isn't run or recorded and the outcome is null.
+   */
+  @NotNull
+  CompletableFuture<TransactionResult> transactIfPresent(
+      @NotNull OfflinePlayer player,
+      @NotNull Currency currency,
+      @Nullable String transactionId,
+      @NotNull AccountOperation<Boolean> operation) {
+    return transact(player, currency, transactionId, operation, false);
+  }
+
+  @NotNull
+  private CompletableFuture<TransactionResult> transact(
+      @NotNull OfflinePlayer player,
+      @NotNull Currency currency,
+      @Nullable String transactionId,
+      @NotNull AccountOperation<Boolean> operation,
+      boolean required) {
+    return queue(
+        player.getUniqueId(),
+        transactionId,
+        (mailbox, conn) -> {
+          PlayerAccount account =
+              required ? mailbox.requireAccount(conn, player) : mailbox.getAccount(conn, player);
+          if (account == null) return null;
+          double before = account.getBalance(currency);
+          boolean applied = operation.apply(account);
+          double after = account.getBalance(currency);
+          return new TransactionResult(
+              account.getPlayerId(),
+              transactionId,
+              applied,
+              after - before,
+              after,
+              System.currentTimeMillis(),
+              false);
+        });
+  }
+
+  /**
+   * Queues loading a player's account, creating it if it doesn't exist. Once loaded, the account
+   * is in the map of online players' accounts.
+   *
+   * @param player The player associated with the account.
+   * @return The account. Completes off the main thread.
+   */
+  @NotNull
+  CompletableFuture<PlayerAccount> load(@NotNull Player player) {
+    return queue(
+        player.getUniqueId(),
+        null,
+        (mailbox, conn) -> {
+          // Changes made earlier in this drain aren't saved yet, so keep the account they changed.
+          PlayerAccount account = mailbox.account;
+          if (account == null) account = database.getOrCreateAccount(conn, player);
+          loaded.put(player.getUniqueId(), account);
+          mailbox.account = account;
+          return account;
+        });
+  }
+
+  /**
+   * Queues removing a player's account from the map of online players' accounts, saving it if it
+   * has changes. Operations queued before this one still run on the loaded account.
+   *
+   * @param playerId The player ID of the account.
+   * @return Completes off the main thread once the account is saved.
+   */
+  @NotNull
+  CompletableFuture<Void> unload(@NotNull UUID playerId) {
+    return queue(
+        playerId,
+        null,
+        (mailbox, conn) -> {
+          PlayerAccount account = loaded.remove(playerId);
+          if (account != null) mailbox.account = account;
+          return null;
+        });
+  }
+
+  /**
+   * Queues replacing a loaded account's balances with the ones stored, discarding changes made
+   * before the stored balances were last written. The balances are read by the step itself, on the
+   * worker's connection, so no change saved by an earlier step is undone by an older read.
+   *
+   * @param playerId The player ID of the account.
+   * @return Completes off the main thread once the account is reloaded. If the account isn't
+   *     loaded, nothing is read.
+   */
+  @NotNull
+  CompletableFuture<Void> reload(@NotNull UUID playerId) {
+    return queue(
+        playerId,
+        null,
+        (mailbox, conn) -> {
+          PlayerAccount account = loaded.get(playerId);
+          if (account == null) return null;
+          // Changes made earlier in this drain would otherwise be discarded without being saved.
+          if (account.isDirty()) database.save(conn, account);
+          double[] balances = database.getBalances(conn, playerId);
+          if (balances != null) account.reload(balances);
+          return null;
+        });
+  }
+
+  /** @return The amount of accounts with queued or running operations. */
+  int size() {
+    return mailboxes.size();
+  }
+
+  /**
+   * Runs every queued operation, then closes the workers' connections. Operations submitted
+   * afterwards fail with a {@link RejectedExecutionException}.
+   *
+   * @param timeoutMillis The most time to wait for queued operations, in milliseconds.
+   * @return Returns true if every queued operation ran.
+   * @throws InterruptedException Thrown if interrupted while waiting.
+   */
+  boolean close(long timeoutMillis) throws InterruptedException {
+
+    executor.shutdown();
+    boolean drained = executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+
+    synchronized (connections) {
+      for (Connection conn : connections) {
+        try {
+          conn.close();
+        } catch (SQLException e) {
+          TrialEconomy.logger.warning("Failed to close a mailbox connection: " + e.getMessage());
+        }
+      }
+      connections.clear();
+    }
+
+    return drained;
+  }
+
+  @NotNull
+  private <T> CompletableFuture<T> queue(
+      @NotNull UUID playerId, @Nullable String transactionId, @NotNull Step<T> step) {
+
+    Pending<T> pending = new Pending<>(transactionId, step);
+
+    // Queued inside compute() so an idle mailbox can't be removed between lookup and queueing.
+    Mailbox mailbox =
+        mailboxes.compute(
+            playerId,
+            (key, existing) -> {
+              Mailbox target = existing != null ? existing : new Mailbox(key);
+              target.queue.add(pending);
+              return target;
+            });
+
+    mailbox.schedule();
+    return pending.future;
+  }
+
+  /** @return The distinct transaction IDs of the operations. */
+  @NotNull
+  private static Set<String> getTransactionIds(@NotNull List<Pending<?>> batch) {
+    Set<String> transactionIds = new HashSet<>();
+    for (Pending<?> pending : batch) {
+      if (pending.transactionId != null) transactionIds.add(pending.transactionId);
+    }
+    return transactionIds;
+  }
+
+  /** @return The calling worker's connection, opened on first use. */
+  @NotNull
+  private Connection getConnection() throws SQLException {
+
+    Connection conn = connection.get();
+    if (conn != null && !conn.isClosed()) return conn;
+
+    conn = database.openWriteConnection();
+    connection.set(conn);
+    synchronized (connections) {
+      connections.add(conn);
+    }
+
+    return conn;
+  }
+
+  /** @return The calling worker's connection, reopened if it no longer works. */
+  @NotNull
+  private Connection reconnect() throws SQLException {
+
+    Connection conn = connection.get();
+    if (conn != null && !conn.isClosed() && !conn.isValid(VALID_TIMEOUT_SECONDS)) {
+      synchronized (connections) {
+        connections.remove(conn);
+      }
+      try {
+        conn.close();
+      } catch (SQLException ignored) {
+        // The connection is broken. Closing it only releases it.
+      }
+    }
+
+    return getConnection();
+  }
+
+  /**
+   * <b>Mailbox</b> is the queue of one account. At most one worker drains it at a time.
+   *
+   * @author Jab
+   */
+  private class Mailbox implements Runnable {
+
+    /** The player ID of the account. */
+    private final UUID playerId;
+
+    /** The operations waiting to run, oldest first. */
+    private final Queue<Pending<?>> queue = new ConcurrentLinkedQueue<>();
+
+    /** If true, the mailbox is queued on or being drained by a worker. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /** The account changed by the current drain. Only touched by the draining worker. */
+    @Nullable private PlayerAccount account;
+
+    /** The changes made by the current drain, held until they're saved. */
+    @Nullable private PlayerAccount.Journal journal;
+
+    private Mailbox(@NotNull UUID playerId) {
+      this.playerId = playerId;
+    }
+
+    private void schedule() {
+      if (!scheduled.compareAndSet(false, true)) return;
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        scheduled.set(false);
+        fail(e);
+      }
+    }
+
+    @Override
+    public void run() {
+
+      List<Pending<?>> batch = new ArrayList<>();
+
+      journal = new PlayerAccount.Journal(playerId);
+      journal.begin();
+
+      try {
+        Connection conn;
+        try {
+          conn = getConnection();
+        } catch (SQLException e) {
+          TrialEconomy.logger.warning("Failed to connect to the database: " + e.getMessage());
+          fail(e);
+          return;
+        }
+
+        Pending<?> next;
+        while (batch.size() < BATCH_SIZE && (next = queue.poll()) != null) batch.add(next);
+
+        // One lookup for every transaction ID in the drain that isn't in the window.
+        Map<String, TransactionResult> outcomes;
+        try {
+          outcomes = transactions.find(conn, playerId, getTransactionIds(batch));
+        } catch (SQLException e) {
+          TrialEconomy.logger.warning("Failed to read transaction outcomes: " + e.getMessage());
+          for (Pending<?> pending : batch) pending.future.completeExceptionally(e);
+          return;
+        }
+
+        List<Pending<?>> applied = new ArrayList<>(batch.size());
+        List<TransactionResult> recorded = new ArrayList<>();
+
+        for (Pending<?> pending : batch) {
+
+          TransactionResult previous =
+              pending.transactionId != null ? outcomes.get(pending.transactionId) : null;
+          if (previous != null) {
+            pending.replay(previous);
+            applied.add(pending);
+            continue;
+          }
+
+          // A failed operation's changes are undone so nothing of it is saved or announced.
+          int mark = journal.mark();
+          try {
+            pending.apply(this, conn);
+            applied.add(pending);
+          } catch (RuntimeException | SQLException e) {
+            journal.revert(mark);
+            pending.future.completeExceptionally(e);
+            continue;
+          }
+
+          if (pending.transactionId != null && pending.result != null) {
+            TransactionResult result = (TransactionResult) pending.result;
+            outcomes.put(pending.transactionId, result);
+            recorded.add(result);
+          }
+        }
+
+        Diagnostics.BatchFlush trace = Diagnostics.batchFlush("mailbox");
+
+        try {
+          persist(conn, recorded);
+          journal.publish();
+          if (trace != null) trace.finish(playerId, applied.size());
+          transactions.remember(recorded);
+          for (Pending<?> pending : applied) pending.complete();
+        } catch (SQLException e) {
+          TrialEconomy.logger.warning("Failed to save account: " + playerId);
+          e.printStackTrace(System.err);
+          restore(journal);
+          for (Pending<?> pending : applied) pending.future.completeExceptionally(e);
+        }
+
+      } finally {
+        journal.end();
+        account = null;
+        journal = null;
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+          schedule();
+        } else {
+          mailboxes.computeIfPresent(
+              playerId, (key, mailbox) -> mailbox == this && isIdle() ? null : mailbox);
+        }
+      }
+    }
+
+    /**
+     * Replaces the account's balances with the ones stored, once the drain's changes failed to
+     * save, and marks it clean. Listeners are told of the differences from what they last saw. If
+     * the stored balances cannot be read, the drain's changes are undone instead.
+     *
+     * @param journal The drain's unsaved changes.
+     */
+    private void restore(@NotNull PlayerAccount.Journal journal) {
+
+      if (account == null) {
+        journal.discard();
+        return;
+      }
+
+      double[] stored;
+      try {
+        stored = database.getBalances(reconnect(), playerId);
+      } catch (SQLException e) {
+        TrialEconomy.logger.warning("Failed to reload account: " + playerId);
+        stored = null;
+      }
+
+      if (stored == null) {
+        journal.revert(0);
+        return;
+      }
+
+      double[] previous = journal.unpublished(account.copyBalances());
+      journal.discard();
+      account.reload(stored, previous);
+    }
+
+    /**
+     * Saves every change made by the drain in one write. If any outcomes were recorded, they are
+     * inserted in the same transaction.
+     *
+     * @param conn The worker's connection.
+     * @param recorded The outcomes of the transactions with IDs run by the drain.
+     * @throws SQLException Thrown if the write fails. Nothing is stored.
+     */
+    private void persist(@NotNull Connection conn, @NotNull List<TransactionResult> recorded)
+        throws SQLException {
+
+      boolean dirty = account != null && account.isDirty();
+
+      if (recorded.isEmpty()) {
+        if (dirty) database.save(conn, account);
+        return;
+      }
+
+      conn.setAutoCommit(false);
+      try {
+        if (dirty) database.save(conn, account);
+        transactions.insert(conn, recorded);
+        conn.commit();
+      } catch (SQLException e) {
+        try {
+          conn.rollback();
+        } catch (SQLException ignored) {
+          // The connection is broken. The server discards the transaction.
+        }
+        throw e;
+      } finally {
+        conn.setAutoCommit(true);
+      }
+    }
+
+    /**
+     * @param conn The worker's connection.
+     * @param player The player associated with the account.
+     * @return The loaded account, else the account read earlier in this drain, else the account
+     *     read from the primary. If the player doesn't have an account, null is returned.
+     */
+    @Nullable
+    private PlayerAccount getAccount(@NotNull Connection conn, @NotNull OfflinePlayer player)
+        throws SQLException {
+
+      PlayerAccount loadedAccount = loaded.get(playerId);
+      if (loadedAccount != null) {
+        account = loadedAccount;
+      } else if (account == null) {
+        Diagnostics.CacheMiss trace = Diagnostics.cacheMiss("mailbox");
+        account = database.getAccount(conn, player);
+        if (trace != null) trace.finish(playerId, account != null ? 1 : 0);
+      }
+      return account;
+    }
+
+    /**
+     * @param conn The worker's connection.
+     * @param player The player associated with the account.
+     * @return The account. (See {@link Mailbox#getAccount(Connection, OfflinePlayer)})
+     * @throws NullPointerException Thrown if the player doesn't have an account.
+     */
+    @NotNull
+    private PlayerAccount requireAccount(@NotNull Connection conn, @NotNull OfflinePlayer player)
+        throws SQLException {
+      PlayerAccount account = getAccount(conn, player);
+      if (account == null) {
+        throw new NullPointerException("No account exists for the player: " + player.getName());
+      }
+      return account;
+    }
+
+    private boolean isIdle() {
+      return !scheduled.get() && queue.isEmpty();
+    }
+
+    /** Fails every queued operation. (E.G: When the workers are shut down) */
+    private void fail(@NotNull Throwable cause) {
+      Pending<?> pending;
+      while ((pending = queue.poll()) != null) pending.future.completeExceptionally(cause);
+    }
+  }
+
+  /**
+   * <b>Step</b> is the work of a queued operation, run by the account's mailbox.
+   *
+   * @author Jab
+   */
+  @FunctionalInterface
+  private interface Step<T> {
+
+    /**
+     * @param mailbox The mailbox of the account.
+     * @param conn The worker's connection.
+     * @return The result passed to the submitter once the account is saved.
+     * @throws SQLException Thrown if the account cannot be read.
+     */
+    T apply(@NotNull Mailbox mailbox, @NotNull Connection conn) throws SQLException;
+  }
+
+  /**
+   * <b>Pending</b> is a queued operation and the future of its result.
+   *
+   * @author Jab
+   */
+  private static class Pending<T> {
+
+    @Nullable private final String transactionId;
+    private final Step<T> step;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private T result;
+
+    private Pending(@Nullable String transactionId, @NotNull Step<T> step) {
+      this.transactionId = transactionId;
+      this.step = step;
+    }
+
+    private void apply(@NotNull Mailbox mailbox, @NotNull Connection conn) throws SQLException {
+      result = step.apply(mailbox, conn);
+    }
+
+    /** @param previous The outcome of the first run of the operation's transaction ID. */
+    @SuppressWarnings("unchecked")
+    private void replay(@NotNull TransactionResult previous) {
+      // Only transactions carry IDs, and their result type is TransactionResult.
+      result = (T) previous.replay();
+    }
+
+    private void complete() {
+      future.complete(result);
+    }
+  }
+}
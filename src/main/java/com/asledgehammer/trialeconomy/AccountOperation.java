@@ -0,0 +1,22 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.OfflinePlayer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <b>AccountOperation</b> reads or changes an account from the account's mailbox. (See {@link
+ * TrialEconomy#submit(OfflinePlayer, AccountOperation)})
+ *
+ * @author Jab
+ */
+@FunctionalInterface
+public interface AccountOperation<T> {
+
+  /**
+   * @param account The account. No other operation touches the account while this one runs.
+   * @return The result passed to the submitter.
+   * @throws RuntimeException Thrown to fail the operation. Changes already made to the account are
+   *     kept and saved.
+   */
+  T apply(@NotNull PlayerAccount account);
+}
@@ -0,0 +1,233 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * <b>AccountPartitions</b> is the layout of the account tables. Accounts are spread over one or
+ * more tables by a hash of the player ID, so each table's B-tree stays small enough to cache and
+ * bulk operations can work through the tables in parallel.
+ *
+ * <p>A layout of one partition is the original '{@value Database#TABLE_ACCOUNTS}' table. A layout
+ * of N partitions uses '{@value Database#TABLE_ACCOUNTS}_0' through '_N-1'. When the amount
+ * changes, the previous layout is kept until every account is moved to its new partition. Until
+ * then, accounts missing from their partition are looked for in the previous one.
+ *
+ * @author Jab
+ */
+class AccountPartitions {
+
+  /** The single-row table recording the layout shared by every server. */
+  static final String TABLE_LAYOUT = "trial_economy_partitions";
+
+  /** The most partitions in a layout. */
+  static final int MAX_PARTITIONS = 256;
+
+  /** The amount of partitions in the layout. */
+  @Getter private final int count;
+
+  /** The amount of partitions in the layout being moved away from. Zero if none. */
+  @Getter private final int previousCount;
+
+  /** The table of each partition. */
+  private final String[] tables;
+
+  /** The table of each partition of the previous layout. Null if none. */
+  @Nullable private final String[] previousTables;
+
+  /**
+   * @param count The amount of partitions in the layout.
+   * @param previousCount The amount of partitions in the layout being moved away from. Zero if
+   *     none.
+   */
+  AccountPartitions(int count, int previousCount) {
+    this.count = count;
+    this.previousCount = previousCount == count ? 0 : previousCount;
+    this.tables = toTables(count);
+    this.previousTables = this.previousCount != 0 ? toTables(this.previousCount) : null;
+  }
+
+  /**
+   * Reads the layout, recording the configured amount of partitions if it changed, and creates any
+   * missing partition tables.
+   *
+   * @param migrator The migrator of the connection to the primary.
+   * @param conn The connection to the primary.
+   * @param configured The amount of partitions configured.
+   * @return The layout.
+   * @throws YAMLException Thrown if the layout changed again before the last change was rebalanced.
+   * @throws SQLException Thrown if the layout cannot be read or recorded.
+   */
+  @NotNull
+  static AccountPartitions load(
+      @NotNull SchemaMigrator migrator, @NotNull Connection conn, int configured)
+      throws SQLException {
+
+    AccountPartitions layout;
+
+    // Another server may record a change at the same time, so only record over what was read.
+    while (true) {
+
+      layout = read(conn);
+
+      if (layout.count == configured) break;
+
+      int previous = layout.count;
+      if (layout.previousCount != 0 && layout.previousCount != configured) {
+        throw new YAMLException(
+            "The field 'storage.partitions' changed to "
+                + configured
+                + " before the change from "
+                + layout.previousCount
+                + " to "
+                + layout.count
+                + " partitions was rebalanced. Set it back to "
+                + layout.count
+                + " and run '/balance rebalance' first.");
+      }
+
+      String sql =
+          "UPDATE "
+              + TABLE_LAYOUT
+              + " SET partitions=?, previous_partitions=?"
+              + " WHERE id = 1 AND partitions = ? AND previous_partitions = ?;";
+
+      try (PreparedStatement statement = conn.prepareStatement(sql)) {
+        statement.setInt(1, configured);
+        statement.setInt(2, previous);
+        statement.setInt(3, layout.count);
+        statement.setInt(4, layout.previousCount);
+        if (statement.executeUpdate() == 1) {
+          layout = new AccountPartitions(configured, previous);
+          break;
+        }
+      }
+    }
+
+    for (String table : layout.tables) migrator.createAccountTable(table);
+
+    if (layout.isRebalancing()) {
+      TrialEconomy.logger.warning(
+          "Accounts are being moved from "
+              + layout.previousCount
+              + " to "
+              + layout.count
+              + " partitions. They are moved as they load; run '/balance rebalance' to move the"
+              + " rest.");
+    }
+
+    return layout;
+  }
+
+  @NotNull
+  private static AccountPartitions read(@NotNull Connection conn) throws SQLException {
+
+    String sql = "SELECT partitions, previous_partitions FROM " + TABLE_LAYOUT + " WHERE id = 1;";
+
+    try (PreparedStatement statement = conn.prepareStatement(sql);
+        ResultSet resultSet = statement.executeQuery()) {
+      if (!resultSet.next()) throw new SQLException("The partition layout is missing.");
+      return new AccountPartitions(resultSet.getInt(1), resultSet.getInt(2));
+    }
+  }
+
+  /**
+   * Records that every account is in its partition, ending the move from the previous layout.
+   *
+   * @param conn The connection to the primary.
+   * @return The layout without the previous layout.
+   * @throws SQLException Thrown if the layout cannot be recorded.
+   */
+  @NotNull
+  AccountPartitions complete(@NotNull Connection conn) throws SQLException {
+
+    if (!isRebalancing()) return this;
+
+    String sql =
+        "UPDATE "
+            + TABLE_LAYOUT
+            + " SET previous_partitions=0"
+            + " WHERE id = 1 AND partitions = ? AND previous_partitions = ?;";
+
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setInt(1, count);
+      statement.setInt(2, previousCount);
+      statement.executeUpdate();
+    }
+
+    return new AccountPartitions(count, 0);
+  }
+
+  /**
+   * The hash is part of the stored layout. Changing it strands every account in a partitioned
+   * database.
+   *
+   * @param playerId The player ID of the account.
+   * @param count The amount of partitions.
+   * @return The partition of the account, from 0 to count - 1.
+   */
+  static int indexOf(@NotNull UUID playerId, int count) {
+
+    if (count == 1) return 0;
+
+    // Offline-mode IDs share their version bits, so mix every bit before reducing.
+    long hash = playerId.getMostSignificantBits() ^ playerId.getLeastSignificantBits();
+    hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+
+    return (int) Long.remainderUnsigned(hash, count);
+  }
+
+  /**
+   * @param playerId The player ID of the account.
+   * @return The table storing the account.
+   */
+  @NotNull
+  String getTable(@NotNull UUID playerId) {
+    return tables[indexOf(playerId, count)];
+  }
+
+  /**
+   * @param playerId The player ID of the account.
+   * @return The table the account was stored in before the layout changed. Null if the layout isn't
+   *     changing or the table is the same.
+   */
+  @Nullable
+  String getPreviousTable(@NotNull UUID playerId) {
+    if (previousTables == null) return null;
+    String previous = previousTables[indexOf(playerId, previousCount)];
+    return previous.equals(getTable(playerId)) ? null : previous;
+  }
+
+  /** @return Every table that may store accounts, including the previous layout's. */
+  @NotNull
+  List<String> getTables() {
+    Set<String> all = new LinkedHashSet<>(Arrays.asList(tables));
+    if (previousTables != null) all.addAll(Arrays.asList(previousTables));
+    return new ArrayList<>(all);
+  }
+
+  /** @return Returns true if accounts are being moved from a previous layout. */
+  boolean isRebalancing() {
+    return previousTables != null;
+  }
+
+  @NotNull
+  private static String[] toTables(int count) {
+    if (count == 1) return new String[] {Database.TABLE_ACCOUNTS};
+    String[] tables = new String[count];
+    for (int index = 0; index < count; index++) {
+      tables[index] = Database.TABLE_ACCOUNTS + "_" + index;
+    }
+    return tables;
+  }
+}
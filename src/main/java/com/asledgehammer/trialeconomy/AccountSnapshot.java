@@ -0,0 +1,245 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <b>AccountSnapshot</b> keeps the balance leaderboard and economy aggregates between restarts, so
+ * they start warm instead of scanning every account table.
+ *
+ * <p>A snapshot records the latest account update time the leaderboard had read when it was taken.
+ * On load, the file is memory-mapped and checked against its CRC32 trailer and the database, then
+ * only accounts written since that time are read back.
+ *
+ * @author Jab
+ */
+final class AccountSnapshot {
+
+  /** Identifies the snapshot format. ("TEWS") */
+  private static final int MAGIC = 0x54455753;
+
+  private static final int VERSION = 1;
+
+  /** The account count and checksum ending every snapshot. */
+  private static final int TRAILER_SIZE = 8;
+
+  /** The database the snapshot was taken from. */
+  @Getter private final String source;
+
+  /** The latest account update time the snapshot includes, in epoch milliseconds. */
+  @Getter private final long syncedAt;
+
+  /** The hour each volume slot was summing, in hours since the epoch. */
+  private final long[] volumeHours = new long[EconomyAggregates.VOLUME_HOURS];
+
+  /** The transaction volume of each hour slot. */
+  private final double[] volumes = new double[EconomyAggregates.VOLUME_HOURS];
+
+  /** The mapped accounts, from the first account to the trailer. */
+  private final ByteBuffer accounts;
+
+  /** The amount of accounts in the snapshot. */
+  @Getter private final int count;
+
+  private AccountSnapshot(@NotNull ByteBuffer buffer) throws IOException {
+
+    if (buffer.getInt() != MAGIC) throw new IOException("Not a TrialEconomy snapshot.");
+    int version = buffer.getInt();
+    if (version != VERSION) throw new IOException("Unsupported snapshot version: " + version);
+
+    this.source = readString(buffer);
+    this.syncedAt = buffer.getLong();
+    for (int slot = 0; slot < EconomyAggregates.VOLUME_HOURS; slot++) {
+      volumeHours[slot] = buffer.getLong();
+      volumes[slot] = buffer.getDouble();
+    }
+
+    int end = buffer.limit() - TRAILER_SIZE;
+    this.count = buffer.getInt(end);
+    if (count < 0) throw new IOException("Corrupt snapshot account count: " + count);
+    this.accounts = buffer.slice(buffer.position(), end - buffer.position());
+  }
+
+  /**
+   * Writes the leaderboard, through {@link DataFiles#write(File, DataFiles.Output)}.
+   *
+   * @param file The file to write. If it exists, it is replaced.
+   * @param source The database the leaderboard was read from.
+   * @param leaderboard The leaderboard to write. Must be seeded.
+   * @return The amount of accounts written.
+   * @throws IOException Thrown if the file cannot be written.
+   */
+  static int write(@NotNull File file, @NotNull String source, @NotNull Leaderboard leaderboard)
+      throws IOException {
+
+    CRC32 checksum = new CRC32();
+    int[] count = new int[1];
+
+    long[] volumeHours = new long[EconomyAggregates.VOLUME_HOURS];
+    double[] volumes = new double[EconomyAggregates.VOLUME_HOURS];
+    leaderboard.getAggregates().copyVolumes(volumeHours, volumes);
+
+    // Read first, so accounts written while walking the leaderboard are read again on load.
+    long syncedAt = leaderboard.getSyncedAt();
+
+    DataFiles.write(
+        file,
+        temp -> {
+          try (DataOutputStream out =
+              new DataOutputStream(
+                  new CheckedOutputStream(
+                      new BufferedOutputStream(new FileOutputStream(temp), 1 << 16), checksum))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, source);
+            out.writeLong(syncedAt);
+            for (int slot = 0; slot < EconomyAggregates.VOLUME_HOURS; slot++) {
+              out.writeLong(volumeHours[slot]);
+              out.writeDouble(volumes[slot]);
+            }
+
+            leaderboard.forEach(
+                (playerId, playerName, balance) -> {
+                  UuidCodec.write(playerId, out);
+                  out.writeDouble(balance);
+                  DataFiles.writeName(out, playerName);
+                  count[0]++;
+                });
+
+            out.writeInt(count[0]);
+            // The checksum covers every byte before it.
+            out.writeInt((int) checksum.getValue());
+          }
+        });
+
+    return count[0];
+  }
+
+  /**
+   * Maps a snapshot and verifies its checksum. The accounts are decoded from the mapping as they
+   * are visited, so no copy of the file is held on the heap.
+   *
+   * @param file The file to read.
+   * @return The snapshot. If the file doesn't exist, null is returned.
+   * @throws IOException Thrown if the file cannot be read, is truncated or fails its checksum.
+   */
+  @Nullable
+  static AccountSnapshot read(@NotNull File file) throws IOException {
+
+    if (!file.exists()) return null;
+
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < TRAILER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("The snapshot is truncated or too large. (" + size + " bytes)");
+      }
+      // The mapping stays valid once the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    int end = buffer.limit() - Integer.BYTES;
+    CRC32 checksum = new CRC32();
+    checksum.update(buffer.slice(0, end));
+    if ((int) checksum.getValue() != buffer.getInt(end)) {
+      throw new IOException("The snapshot failed its checksum.");
+    }
+
+    try {
+      return new AccountSnapshot(buffer);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("The snapshot is truncated.", e);
+    }
+  }
+
+  /**
+   * Checks the snapshot still describes the database. Only the latest update time is read, from
+   * the updated_at index of each partition.
+   *
+   * @param database The database to check against.
+   * @param marginMillis How far before the snapshot's update time the database may trail, covering
+   *     clock skew between servers and replication lag.
+   * @throws IOException Thrown if the snapshot was taken from another database, or is newer than
+   *     the database. (E.G: The database was restored from a backup)
+   * @throws SQLException Thrown if the database cannot be read.
+   */
+  void validate(@NotNull Database database, long marginMillis) throws IOException, SQLException {
+
+    if (!source.equals(database.getCredentials().getJdbcUrl())) {
+      throw new IOException("The snapshot was taken from another database. (" + source + ")");
+    }
+
+    long latest = database.getLatestUpdate();
+    if (latest < syncedAt - marginMillis) {
+      throw new IOException("The database is older than the snapshot.");
+    }
+  }
+
+  /**
+   * @param visitor The visitor receiving each account, richest first.
+   * @throws IOException Thrown if an account is malformed.
+   */
+  void forEach(@NotNull Leaderboard.EntryVisitor visitor) throws IOException {
+
+    ByteBuffer buffer = accounts.duplicate();
+    byte[] name = new byte[DataFiles.MAX_NAME_BYTES];
+
+    try {
+      for (int index = 0; index < count; index++) {
+
+        UUID playerId = UuidCodec.decode(buffer, UuidCodec.Layout.SORTABLE);
+        double balance = buffer.getDouble();
+        if (Double.isNaN(balance) || Double.isInfinite(balance)) {
+          throw new IOException("Invalid balance at account " + (index + 1) + ": " + balance);
+        }
+
+        String playerName = DataFiles.readName(buffer, name);
+
+        visitor.visit(playerId, playerName, balance);
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException("The snapshot is truncated.", e);
+    }
+
+    if (buffer.hasRemaining()) throw new IOException("The snapshot has trailing data.");
+  }
+
+  /**
+   * Adds the transaction volume of the snapshot's hours to aggregates.
+   *
+   * @param aggregates The aggregates to add to.
+   */
+  void restoreVolumes(@NotNull EconomyAggregates aggregates) {
+    aggregates.addVolumes(volumeHours, volumes);
+  }
+
+  private static void writeString(@NotNull DataOutputStream out, @NotNull String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > Short.MAX_VALUE) throw new IOException("String too long: " + value);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  @NotNull
+  private static String readString(@NotNull ByteBuffer buffer) throws IOException {
+    int length = buffer.getShort();
+    if (length < 0) throw new IOException("Corrupt snapshot string length: " + length);
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
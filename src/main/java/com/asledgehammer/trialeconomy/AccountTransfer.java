@@ -0,0 +1,524 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * <b>AccountTransfer</b> streams every account to or from a file for backups and migrations.
+ *
+ * <p>Exports read through a forward-only, streaming result set and imports write chunked batch
+ * upserts, so memory use stays constant regardless of the amount of accounts.
+ *
+ * <p>Files carry the balance of every currency, named in their header, so imports match balances
+ * to currencies by name rather than by position. Files from before currencies list one balance,
+ * which is imported as the primary currency.
+ *
+ * @author Jab
+ */
+public final class AccountTransfer {
+
+  /** The amount of accounts written per batch & transaction when importing. */
+  static final int BATCH_SIZE = 1_000;
+
+  /** The amount of accounts between progress reports. */
+  static final int PROGRESS_INTERVAL = 50_000;
+
+  /** Identifies the binary format. ("TEAX") */
+  private static final int MAGIC = 0x54454158;
+
+  private static final int BINARY_VERSION = 2;
+
+  /** The binary format with only the primary currency's balance, still read by imports. */
+  private static final int BINARY_VERSION_PRIMARY = 1;
+
+  /** The CSV header of files with only the primary currency's balance, still read by imports. */
+  private static final String CSV_HEADER_PRIMARY = "player_id,player_name,balance";
+
+  private AccountTransfer() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Exports every account, through {@link DataFiles#write(File, DataFiles.Output)}.
+   *
+   * @param database The database to read from.
+   * @param file The file to write.
+   * @param format The format of the file.
+   * @param progress (Optional) Receives the running total of accounts exported.
+   * @return The amount of accounts exported.
+   * @throws IOException Thrown if the file cannot be written.
+   * @throws SQLException Thrown if the accounts cannot be read.
+   */
+  static long exportAccounts(
+      @NotNull Database database,
+      @NotNull File file,
+      @NotNull Format format,
+      @Nullable LongConsumer progress)
+      throws IOException, SQLException {
+
+    long[] count = new long[1];
+
+    List<String> currencies = new ArrayList<>();
+    for (Currency currency : database.getCurrencies().getAll()) {
+      currencies.add(currency.getName());
+    }
+
+    DataFiles.write(
+        file,
+        temp -> {
+          try (AccountWriter writer = format.newWriter(temp, currencies)) {
+
+            database.forEachAccount(
+                0,
+                (playerId, playerName, balances, updatedAt) -> {
+                  try {
+                    writer.write(playerId, playerName, balances);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                  if (++count[0] % PROGRESS_INTERVAL == 0 && progress != null) {
+                    progress.accept(count[0]);
+                  }
+                });
+
+            writer.finish(count[0]);
+
+          } catch (UncheckedIOException e) {
+            throw e.getCause();
+          }
+        });
+
+    return count[0];
+  }
+
+  /**
+   * Imports accounts, creating missing accounts and overwriting the name and the balances of the
+   * file's currencies of existing ones. Each batch commits on its own, so a failed import keeps the
+   * batches before it. Accounts are batched per partition, so a batch costs one round trip per
+   * partition it touches.
+   *
+   * @param database The database to write to.
+   * @param file The file to read.
+   * @param format The format of the file.
+   * @param progress (Optional) Receives the running total of accounts imported.
+   * @return The amount of accounts imported.
+   * @throws IOException Thrown if the file cannot be read or is malformed, has a currency that
+   *     isn't registered, or lacks the primary currency.
+   * @throws SQLException Thrown if the accounts cannot be written.
+   */
+  static long importAccounts(
+      @NotNull Database database,
+      @NotNull File file,
+      @NotNull Format format,
+      @Nullable LongConsumer progress)
+      throws IOException, SQLException {
+
+    AccountPartitions partitions = database.getPartitions();
+    CurrencyRegistry registry = database.getCurrencies();
+    Map<String, PreparedStatement> statements = new HashMap<>();
+    long count = 0;
+
+    try (Connection conn = database.openWriteConnection();
+        AccountReader reader = format.newReader(file, registry.getPrimary().getName())) {
+
+      List<String> columns = toColumns(registry, reader.currencies);
+      conn.setAutoCommit(false);
+      int pending = 0;
+
+      try {
+        while (reader.next()) {
+
+          String table = partitions.getTable(reader.playerId);
+          PreparedStatement statement = statements.get(table);
+          if (statement == null) {
+            statement = conn.prepareStatement(toUpsertSql(table, columns));
+            statements.put(table, statement);
+          }
+
+          int parameter = 1;
+          statement.setBytes(parameter++, UuidCodec.toBytes(reader.playerId));
+          for (double balance : reader.balances) statement.setDouble(parameter++, balance);
+          statement.setString(parameter++, reader.playerName);
+          statement.setLong(parameter, System.currentTimeMillis());
+          statement.addBatch();
+
+          if (++pending == BATCH_SIZE) {
+            for (PreparedStatement batch : statements.values()) batch.executeBatch();
+            conn.commit();
+            pending = 0;
+          }
+
+          if (++count % PROGRESS_INTERVAL == 0 && progress != null) progress.accept(count);
+        }
+
+        if (pending != 0) {
+          for (PreparedStatement batch : statements.values()) batch.executeBatch();
+          conn.commit();
+        }
+
+      } catch (IOException | SQLException | RuntimeException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        for (PreparedStatement statement : statements.values()) statement.close();
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * @param registry The currencies held by every account.
+   * @param currencies The names of the currencies in a file, in the order of its balances.
+   * @return The balance column of each currency in the file, in the same order.
+   * @throws IOException Thrown if a currency isn't registered or the primary currency is missing.
+   */
+  @NotNull
+  private static List<String> toColumns(
+      @NotNull CurrencyRegistry registry, @NotNull List<String> currencies) throws IOException {
+
+    List<String> columns = new ArrayList<>(currencies.size());
+
+    for (String name : currencies) {
+      Currency currency = registry.get(name);
+      if (currency == null) {
+        throw new IOException(
+            "The file has balances of '" + name + "', which isn't listed under 'currencies'.");
+      }
+      columns.add(currency.getColumn());
+    }
+
+    // New accounts need a primary balance, as its column has no default.
+    if (!columns.contains(registry.getPrimary().getColumn())) {
+      throw new IOException(
+          "The file has no balances of the primary currency '" + registry.getPrimary() + "'.");
+    }
+
+    return columns;
+  }
+
+  /**
+   * @param table The account table to write.
+   * @param columns The balance columns to write.
+   * @return A statement creating an account or overwriting its balances & name.
+   */
+  @NotNull
+  private static String toUpsertSql(@NotNull String table, @NotNull List<String> columns) {
+
+    StringJoiner assignments = new StringJoiner(", ");
+    for (String column : columns) assignments.add(column + "=VALUES(" + column + ")");
+
+    return "INSERT INTO "
+        + table
+        + " (player_id, "
+        + String.join(", ", columns)
+        + ", player_name, updated_at) VALUES (?,"
+        + "?,".repeat(columns.size())
+        + "?,?)"
+        + " ON DUPLICATE KEY UPDATE "
+        + assignments
+        + ", player_name=COALESCE(VALUES(player_name), player_name),"
+        + " version=version+1, updated_at=VALUES(updated_at);";
+  }
+
+  /**
+   * <b>Format</b> identifies the file layout of a transfer.
+   *
+   * @author Jab
+   */
+  public enum Format {
+
+    /**
+     * A compact layout of 16-byte IDs, doubles and length-prefixed names, with a checked trailer.
+     * The header names the currency of each double.
+     */
+    BINARY,
+
+    /** Comma-separated 'player_id,player_name' rows, then a column per currency in the header. */
+    CSV;
+
+    /**
+     * @param fileName The name of a transfer file.
+     * @return CSV for '.csv' files, else binary.
+     */
+    @NotNull
+    public static Format byFileName(@NotNull String fileName) {
+      return fileName.toLowerCase().endsWith(".csv") ? CSV : BINARY;
+    }
+
+    /**
+     * @param file The file to write.
+     * @param currencies The names of the currencies of each account's balances, in order.
+     */
+    @NotNull
+    private AccountWriter newWriter(@NotNull File file, @NotNull List<String> currencies)
+        throws IOException {
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+      return this == CSV ? new CsvWriter(out, currencies) : new BinaryWriter(out, currencies);
+    }
+
+    /**
+     * @param file The file to read.
+     * @param primary The name of the primary currency, for files with only its balance.
+     */
+    @NotNull
+    private AccountReader newReader(@NotNull File file, @NotNull String primary)
+        throws IOException {
+      InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+      return this == CSV ? new CsvReader(in, primary) : new BinaryReader(in, primary);
+    }
+  }
+
+  private interface AccountWriter extends Closeable {
+
+    /**
+     * @param playerId The player ID of the account.
+     * @param playerName (Optional) The last known name of the player.
+     * @param balances The balance of each currency named in the header, in order.
+     */
+    void write(@NotNull UUID playerId, @Nullable String playerName, @NotNull double[] balances)
+        throws IOException;
+
+    /** @param count The amount of accounts written, for formats that record it. */
+    void finish(long count) throws IOException;
+  }
+
+  private abstract static class AccountReader implements Closeable {
+
+    /** The names of the currencies of each account's balances, in order. Set by the header. */
+    List<String> currencies;
+
+    UUID playerId;
+    String playerName;
+    double[] balances;
+
+    /** @return Returns true if an account was read into the fields. */
+    abstract boolean next() throws IOException;
+
+    /**
+     * @param currencies The names of the currencies in the header.
+     * @throws IOException Thrown if there are none or a name is repeated.
+     */
+    void setCurrencies(@NotNull List<String> currencies) throws IOException {
+      if (currencies.isEmpty()) throw new IOException("The file has no currencies.");
+      if (new HashSet<>(currencies).size() != currencies.size()) {
+        throw new IOException("The file lists a currency twice: " + currencies);
+      }
+      this.currencies = currencies;
+      this.balances = new double[currencies.size()];
+    }
+
+    void validate(long position) throws IOException {
+      for (double balance : balances) {
+        if (Double.isNaN(balance) || Double.isInfinite(balance) || balance < 0) {
+          throw new IOException("Invalid balance at account " + position + ": " + balance);
+        }
+      }
+    }
+  }
+
+  private static class BinaryWriter implements AccountWriter {
+
+    private final DataOutputStream out;
+
+    BinaryWriter(@NotNull OutputStream out, @NotNull List<String> currencies) throws IOException {
+      this.out = new DataOutputStream(out);
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(BINARY_VERSION);
+      this.out.writeByte(currencies.size());
+      for (String currency : currencies) DataFiles.writeName(this.out, currency);
+    }
+
+    @Override
+    public void write(
+        @NotNull UUID playerId, @Nullable String playerName, @NotNull double[] balances)
+        throws IOException {
+      out.writeByte(1);
+      UuidCodec.write(playerId, out);
+      for (double balance : balances) out.writeDouble(balance);
+      DataFiles.writeName(out, playerName);
+    }
+
+    @Override
+    public void finish(long count) throws IOException {
+      out.writeByte(0);
+      out.writeLong(count);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  private static class BinaryReader extends AccountReader {
+
+    private final DataInputStream in;
+    private final byte[] name = new byte[DataFiles.MAX_NAME_BYTES];
+    private long count = 0;
+
+    BinaryReader(@NotNull InputStream in, @NotNull String primary) throws IOException {
+      this.in = new DataInputStream(in);
+      if (this.in.readInt() != MAGIC) throw new IOException("Not a TrialEconomy export.");
+      int version = this.in.readInt();
+      if (version == BINARY_VERSION_PRIMARY) {
+        setCurrencies(List.of(primary));
+      } else if (version == BINARY_VERSION) {
+        int size = this.in.readUnsignedByte();
+        List<String> currencies = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+          String currency = DataFiles.readName(this.in, name);
+          if (currency == null) throw new IOException("Corrupt export header.");
+          currencies.add(currency);
+        }
+        setCurrencies(currencies);
+      } else {
+        throw new IOException("Unsupported export version: " + version);
+      }
+    }
+
+    @Override
+    boolean next() throws IOException {
+
+      byte tag = in.readByte();
+
+      if (tag == 0) {
+        long expected = in.readLong();
+        if (expected != count) {
+          throw new IOException("Export is incomplete. (" + count + " of " + expected + " read)");
+        }
+        return false;
+      } else if (tag != 1) {
+        throw new IOException("Corrupt export at account " + count + ".");
+      }
+
+      playerId = UuidCodec.read(in);
+      for (int index = 0; index < balances.length; index++) balances[index] = in.readDouble();
+      playerName = DataFiles.readName(in, name);
+
+      validate(++count);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  private static class CsvWriter implements AccountWriter {
+
+    private final Writer out;
+
+    CsvWriter(@NotNull OutputStream out, @NotNull List<String> currencies) throws IOException {
+      this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      this.out.write("player_id,player_name," + String.join(",", currencies) + "\n");
+    }
+
+    @Override
+    public void write(
+        @NotNull UUID playerId, @Nullable String playerName, @NotNull double[] balances)
+        throws IOException {
+      out.write(playerId.toString());
+      out.write(',');
+      if (playerName != null) out.write(playerName);
+      for (double balance : balances) {
+        out.write(',');
+        out.write(Double.toString(balance));
+      }
+      out.write('\n');
+    }
+
+    @Override
+    public void finish(long count) {
+      // CSV has no trailer.
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  private static class CsvReader extends AccountReader {
+
+    private final BufferedReader in;
+    private long line = 1;
+
+    CsvReader(@NotNull InputStream in, @NotNull String primary) throws IOException {
+
+      this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+      String header = this.in.readLine();
+      if (header != null && header.trim().equalsIgnoreCase(CSV_HEADER_PRIMARY)) {
+        setCurrencies(List.of(primary));
+        return;
+      }
+
+      String[] fields = header != null ? header.trim().split(",", -1) : new String[0];
+      if (fields.length < 3
+          || !fields[0].equalsIgnoreCase("player_id")
+          || !fields[1].equalsIgnoreCase("player_name")) {
+        throw new IOException(
+            "Expected the header 'player_id,player_name,' followed by the name of each currency.");
+      }
+
+      List<String> currencies = new ArrayList<>(fields.length - 2);
+      for (int index = 2; index < fields.length; index++) {
+        currencies.add(fields[index].trim().toLowerCase(Locale.ROOT));
+      }
+      setCurrencies(currencies);
+    }
+
+    @Override
+    boolean next() throws IOException {
+
+      String row;
+      do {
+        row = in.readLine();
+        line++;
+        if (row == null) return false;
+      } while (row.isBlank());
+
+      String[] fields = row.split(",", -1);
+      if (fields.length != balances.length + 2) {
+        throw new IOException(
+            "Expected "
+                + (balances.length + 2)
+                + " fields on line "
+                + line
+                + ". ("
+                + fields.length
+                + ")");
+      }
+
+      try {
+        playerId = UUID.fromString(fields[0].trim());
+        for (int index = 0; index < balances.length; index++) {
+          balances[index] = Double.parseDouble(fields[2 + index].trim());
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid value on line " + line + ": " + e.getMessage());
+      }
+
+      String name = fields[1].trim();
+      playerName = name.isEmpty() ? null : name;
+
+      validate(line);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * <b>BalanceChangeEvent</b> is called when the balance of a currency of an account changes, so
+ * scoreboards and bridges can update on change rather than poll.
+ *
+ * <p>With 'events.coalesce' enabled in config.yml, the changes made to an account's currency within
+ * a tick are combined into one event, called on the main thread the next tick. Otherwise, an event
+ * is called for every change on the thread making it, and is asynchronous when that isn't the main
+ * thread.
+ *
+ * <p>Events are only created while a listener is registered. (See {@link
+ * TrialEconomy#addBalanceListener(BalanceListener)} for a lighter, non-Bukkit alternative)
+ *
+ * @author Jab
+ */
+public class BalanceChangeEvent extends Event {
+
+  private static final HandlerList HANDLERS = new HandlerList();
+
+  /** The player ID of the account. */
+  @Getter private final UUID playerId;
+
+  /** The currency that changed. */
+  @Getter private final Currency currency;
+
+  /** The balance before the first change. */
+  @Getter private final double oldBalance;
+
+  /** The balance after the last change. */
+  @Getter private final double newBalance;
+
+  /** The amount of changes combined into the event. One unless changes are coalesced. */
+  @Getter private final int changes;
+
+  /** What the last change was for. (E.G: "shop") */
+  @Getter private final String cause;
+
+  /** (Optional) Who made the last change. */
+  @Getter @Nullable private final String actor;
+
+  /**
+   * @param async If true, the event is called off the main thread.
+   * @param playerId The player ID of the account.
+   * @param currency The currency that changed.
+   * @param oldBalance The balance before the first change.
+   * @param newBalance The balance after the last change.
+   * @param changes The amount of changes combined into the event.
+   * @param cause What the last change was for.
+   * @param actor (Optional) Who made the last change.
+   */
+  BalanceChangeEvent(
+      boolean async,
+      @NotNull UUID playerId,
+      @NotNull Currency currency,
+      double oldBalance,
+      double newBalance,
+      int changes,
+      @NotNull String cause,
+      @Nullable String actor) {
+    super(async);
+    this.playerId = playerId;
+    this.currency = currency;
+    this.oldBalance = oldBalance;
+    this.newBalance = newBalance;
+    this.changes = changes;
+    this.cause = cause;
+    this.actor = actor;
+  }
+
+  /** @return The new balance minus the old balance. */
+  public double getDelta() {
+    return newBalance - oldBalance;
+  }
+
+  @NotNull
+  @Override
+  public HandlerList getHandlers() {
+    return HANDLERS;
+  }
+
+  @NotNull
+  public static HandlerList getHandlerList() {
+    return HANDLERS;
+  }
+}
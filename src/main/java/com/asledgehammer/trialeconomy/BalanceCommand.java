@@ -11,9 +11,18 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.io.File;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
 
 /**
  * <b>BalanceCommand</b> handles the 'balance' command and sub-commands for TrialEconomy.
@@ -22,6 +31,28 @@ import java.util.List;
  */
 class BalanceCommand implements CommandExecutor, TabCompleter {
 
+  /** The amount of entries shown per page of listings. */
+  static final int PAGE_SIZE = 10;
+
+  /** The format of times shown in history pages. */
+  private static final DateTimeFormatter HISTORY_TIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+  /** The history cause of changes made by the command. */
+  static final String CAUSE = "command";
+
+  /** The last history pages viewed by each commander, so the next page can seek from them. */
+  private final Map<String, PageCursor<HistoryEntry>> historyCursors = new ConcurrentHashMap<>();
+
+  /** The last listing pages viewed by each commander, so the next page can seek from them. */
+  private final Map<String, PageCursor<LeaderboardEntry>> listCursors = new ConcurrentHashMap<>();
+
+  /** Given in place of a bound of '/balance list' for no bound. */
+  private static final String NO_BOUND = "*";
+
+  /** Transfer files are plain names, so they can't point outside the transfer folder. */
+  private static final Pattern TRANSFER_FILE_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9_.-]*");
+
   @Override
   public boolean onCommand(
       @NotNull CommandSender commander,
@@ -29,7 +60,7 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
       @NotNull String l,
       @NotNull String[] args) {
 
-    Dialog dialog = TrialEconomy.INSTANCE.getDialog();
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
 
     if (args.length == 0) {
       commander.sendMessage(dialog.get("command_help"));
@@ -37,11 +68,20 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
     }
 
     String firstArg = args[0].toLowerCase();
+    Diagnostics.Command trace = Diagnostics.command(firstArg, commander.getName());
 
     switch (firstArg) {
       case "deposit" -> onDepositCommand(commander, args);
+      case "economy" -> onEconomyCommand(commander, args);
+      case "export" -> onTransferCommand(commander, args, false);
+      case "history" -> onHistoryCommand(commander, args);
+      case "import" -> onTransferCommand(commander, args, true);
+      case "list" -> onListCommand(commander, args);
+      case "rebalance" -> onRebalanceCommand(commander, args);
       case "set" -> onSetCommand(commander, args);
+      case "reload-dialog" -> onReloadDialogCommand(commander, args);
       case "report" -> onReportCommand(commander, args);
+      case "top" -> onTopCommand(commander, args);
       case "withdraw" -> onWithdrawCommand(commander, args);
       default -> {
         commander.sendMessage(dialog.get("command_help"));
@@ -49,6 +89,9 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
       }
     }
 
+    if (trace != null) {
+      trace.finish(commander instanceof Player player ? player.getUniqueId() : null, 0);
+    }
     return true;
   }
 
@@ -65,25 +108,120 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
     switch (args.length) {
       case 1 -> {
         if ("deposit".contains(args[0])) tabs.add("deposit");
+        if ("economy".contains(args[0])) tabs.add("economy");
+        if ("export".contains(args[0])) tabs.add("export");
+        if ("history".contains(args[0])) tabs.add("history");
+        if ("import".contains(args[0])) tabs.add("import");
+        if ("list".contains(args[0])) tabs.add("list");
+        if ("rebalance".contains(args[0])) tabs.add("rebalance");
+        if ("reload-dialog".contains(args[0])) tabs.add("reload-dialog");
         if ("report".contains(args[0])) tabs.add("report");
         if ("set".contains(args[0])) tabs.add("set");
+        if ("top".contains(args[0])) tabs.add("top");
         if ("withdraw".contains(args[0])) tabs.add("withdraw");
       }
       case 2 -> {
+        if (args[0].equalsIgnoreCase("economy")) return tabs;
+        if (args[0].equalsIgnoreCase("rebalance")) return tabs;
+        if (args[0].equalsIgnoreCase("reload-dialog")) return tabs;
+        if (args[0].equalsIgnoreCase("top")) {
+          tabs.add("[page]");
+          return tabs;
+        } else if (args[0].equalsIgnoreCase("list")) {
+          tabs.add("[min]");
+          return tabs;
+        } else if (isTransfer(args[0])) {
+          tabs.add("<file>");
+          return tabs;
+        }
         tabs.add("<player>");
         List<Player> players = new ArrayList<>(Bukkit.getOnlinePlayers());
         players.sort(Comparator.comparing(HumanEntity::getName));
         for (Player player : Bukkit.getOnlinePlayers()) tabs.add(player.getName());
       }
       case 3 -> {
-        if (args[0].equalsIgnoreCase("report")) return tabs;
+        if (args[0].equalsIgnoreCase("top")) return tabs;
+        if (args[0].equalsIgnoreCase("list")) {
+          tabs.add("[max]");
+          tabs.add(NO_BOUND);
+          return tabs;
+        }
+        if (args[0].equalsIgnoreCase("report")) {
+          addCurrencies(tabs, args[2]);
+          return tabs;
+        }
+        if (args[0].equalsIgnoreCase("history")) {
+          tabs.add("[page]");
+          return tabs;
+        }
+        if (isTransfer(args[0])) {
+          tabs.add("binary");
+          tabs.add("csv");
+          return tabs;
+        }
         tabs.add("<amount>");
       }
+      case 4 -> {
+        if (isTransaction(args[0])) addCurrencies(tabs, args[3]);
+        if (args[0].equalsIgnoreCase("list")) tabs.add("[page]");
+      }
     }
 
     return tabs;
   }
 
+  /**
+   * @param tabs The completions to add to.
+   * @param arg The argument typed so far.
+   */
+  private static void addCurrencies(@NotNull List<String> tabs, @NotNull String arg) {
+    for (Currency currency : TrialEconomy.getCurrencies().getAll()) {
+      if (currency.getName().contains(arg.toLowerCase())) tabs.add(currency.getName());
+    }
+  }
+
+  /**
+   * @param subCommand The first argument of the command.
+   * @return Returns true if the sub-command is 'deposit', 'set' or 'withdraw'.
+   */
+  private static boolean isTransaction(@NotNull String subCommand) {
+    return subCommand.equalsIgnoreCase("deposit")
+        || subCommand.equalsIgnoreCase("set")
+        || subCommand.equalsIgnoreCase("withdraw");
+  }
+
+  /**
+   * Reads the optional currency argument of a sub-command, telling the commander if it isn't
+   * found.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   * @param index The position of the currency argument.
+   * @return The currency given, else the primary currency if none is given. If the currency given
+   *     isn't found, null is returned.
+   */
+  @Nullable
+  private static Currency getCurrency(
+      @NotNull CommandSender commander, @NotNull String[] args, int index) {
+
+    CurrencyRegistry currencies = TrialEconomy.getCurrencies();
+    if (args.length <= index) return currencies.getPrimary();
+
+    Currency currency = currencies.get(args[index]);
+    if (currency == null) {
+      StringJoiner names = new StringJoiner(", ");
+      for (Currency next : currencies.getAll()) names.add(next.getName());
+      Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+      commander.sendMessage(
+          dialog.get(
+              "invalid_currency_given",
+              new Dialog.Arg("currency", args[index]),
+              new Dialog.Arg("currencies", names.toString())));
+    }
+
+    return currency;
+  }
+
   /**
    * Handles the 'balance deposit' sub-command.
    *
@@ -92,9 +230,9 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
    */
   private void onDepositCommand(CommandSender commander, String[] args) {
 
-    Dialog dialog = TrialEconomy.INSTANCE.getDialog();
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
 
-    if (args.length != 3) {
+    if (args.length < 3 || args.length > 4) {
       commander.sendMessage(dialog.get("command_deposit_help"));
       return;
     }
@@ -126,18 +264,551 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
       return;
     }
 
+    Currency currency = getCurrency(commander, args, 3);
+    if (currency == null) return;
+    Dialog.Arg currencyArg = new Dialog.Arg("currency", currency.getName());
+
     if (!TrialEconomy.hasAccount(oPlayer.getUniqueId())) {
       commander.sendMessage(dialog.get("no_account", playerArg));
       return;
     }
 
-    PlayerAccount account = TrialEconomy.getAccount(oPlayer);
-    account.deposit(amount);
-    account.save();
+    reply(
+        commander,
+        TrialEconomy.deposit(oPlayer, currency, amount, CAUSE, commander.getName(), null),
+        (reply, result) ->
+            reply.get(
+                "command_deposit_success",
+                playerArg,
+                amountArg,
+                currencyArg,
+                new Dialog.Arg("balance", result.getBalance())));
+  }
+
+  /**
+   * Handles the 'balance economy' sub-command.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   */
+  private void onEconomyCommand(CommandSender commander, String[] args) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+
+    if (args.length != 1) {
+      commander.sendMessage(dialog.get("command_economy_help"));
+      return;
+    }
+
+    if (!TrialEconomy.isLeaderboardReady()) {
+      commander.sendMessage(dialog.get("leaderboard_loading"));
+      return;
+    }
+
+    EconomyStats stats = TrialEconomy.getEconomyStats();
+
+    commander.sendMessage(
+        dialog.get(
+            "command_economy_summary",
+            new Dialog.Arg("accounts", stats.getAccountCount()),
+            new Dialog.Arg("supply", format(stats.getMoneySupply())),
+            new Dialog.Arg("mean", format(stats.getMean())),
+            new Dialog.Arg("median", format(stats.getMedian())),
+            new Dialog.Arg("p90", format(stats.getPercentile(90))),
+            new Dialog.Arg("p99", format(stats.getPercentile(99)))));
+
+    commander.sendMessage(
+        dialog.get(
+            "command_economy_volume",
+            new Dialog.Arg("volume", format(stats.getVolume())),
+            new Dialog.Arg("velocity", format(stats.getVelocity()))));
+
+    long accounts = Math.max(1, stats.getAccountCount());
+
+    for (int bracket = 0; bracket < EconomyStats.HISTOGRAM_BRACKETS; bracket++) {
+
+      long count = stats.getBracketCount(bracket);
+      if (count == 0) continue;
+
+      String range;
+      if (bracket == 0) {
+        range = "0";
+      } else if (bracket == 1) {
+        range = "< 1";
+      } else if (bracket == EconomyStats.HISTOGRAM_BRACKETS - 1) {
+        range = formatBound(EconomyStats.getBracketMinimum(bracket)) + "+";
+      } else {
+        double min = EconomyStats.getBracketMinimum(bracket);
+        range = formatBound(min) + " - " + formatBound(min * 10);
+      }
+
+      commander.sendMessage(
+          dialog.get(
+              "command_economy_bracket",
+              new Dialog.Arg("range", range),
+              new Dialog.Arg("count", count),
+              new Dialog.Arg("percent", format(count * 100.0 / accounts))));
+    }
+  }
+
+  /**
+   * @param value The value to format.
+   * @return The value with two decimals.
+   */
+  @NotNull
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.2f", value);
+  }
+
+  /**
+   * @param bound A power of 10 of at least 1.
+   * @return The bound in short form. (E.G: 10K, 1M)
+   */
+  @NotNull
+  private static String formatBound(double bound) {
+    String[] suffixes = {"", "K", "M", "B", "T"};
+    int power = (int) Math.log10(bound);
+    return (long) Math.pow(10, power % 3) + suffixes[Math.min(power / 3, suffixes.length - 1)];
+  }
+
+  /**
+   * Handles the 'balance export' and 'balance import' sub-commands.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   * @param isImport If true, the sub-command is 'import'.
+   */
+  private void onTransferCommand(CommandSender commander, String[] args, boolean isImport) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+    String action = isImport ? "import" : "export";
+
+    if (args.length < 2 || args.length > 3) {
+      commander.sendMessage(dialog.get("command_" + action + "_help"));
+      return;
+    }
+
+    String argFile = args[1];
+    Dialog.Arg fileArg = new Dialog.Arg("file", argFile);
+
+    // Keep transfers inside the transfer folder.
+    if (!TRANSFER_FILE_NAME.matcher(argFile).matches()) {
+      commander.sendMessage(dialog.get("invalid_file_given", fileArg));
+      return;
+    }
+
+    AccountTransfer.Format format;
+    if (args.length == 3) {
+      try {
+        format = AccountTransfer.Format.valueOf(args[2].toUpperCase());
+      } catch (IllegalArgumentException e) {
+        commander.sendMessage(
+            dialog.get("invalid_format_given", new Dialog.Arg("format", args[2])));
+        return;
+      }
+    } else {
+      format = AccountTransfer.Format.byFileName(argFile);
+    }
+
+    File folder = TrialEconomy.getTransferFolder();
+    if (!folder.exists() && !folder.mkdirs()) {
+      commander.sendMessage(
+          dialog.get("transfer_failed", new Dialog.Arg("error", folder.getPath())));
+      return;
+    }
+
+    File file = new File(folder, argFile);
+    if (isImport && !file.isFile()) {
+      commander.sendMessage(dialog.get("file_not_found", fileArg));
+      return;
+    }
+
+    LongConsumer progress =
+        count ->
+            Bukkit.getScheduler()
+                .runTask(
+                    TrialEconomy.INSTANCE,
+                    () ->
+                        commander.sendMessage(
+                            dialog.get(
+                                "command_" + action + "_progress",
+                                new Dialog.Arg("count", count))));
+
+    long start = System.nanoTime();
+
+    CompletableFuture<Long> future =
+        isImport
+            ? TrialEconomy.importAccounts(file, format, progress)
+            : TrialEconomy.exportAccounts(file, format, progress);
+
+    if (future.isDone() && future.isCompletedExceptionally()) {
+      commander.sendMessage(dialog.get("transfer_running"));
+      return;
+    }
+
+    commander.sendMessage(dialog.get("command_" + action + "_started", fileArg));
+
+    future.whenComplete(
+        (count, e) -> {
+          if (e != null) {
+            TrialEconomy.logger.warning("Failed to " + action + " accounts: " + e.getMessage());
+            commander.sendMessage(
+                dialog.get("transfer_failed", new Dialog.Arg("error", e.getMessage())));
+            return;
+          }
+
+          long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          commander.sendMessage(
+              dialog.get(
+                  "command_" + action + "_success",
+                  fileArg,
+                  new Dialog.Arg("count", count),
+                  new Dialog.Arg("millis", millis)));
+        });
+  }
+
+  /**
+   * Handles the 'balance list' sub-command.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   */
+  private void onListCommand(CommandSender commander, String[] args) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+
+    if (args.length > 4) {
+      commander.sendMessage(dialog.get("command_list_help"));
+      return;
+    }
+
+    String argMin = args.length > 1 ? args[1] : NO_BOUND;
+    String argMax = args.length > 2 ? args[2] : NO_BOUND;
+
+    double min;
+    double max;
+    try {
+      min = argMin.equals(NO_BOUND) ? 0 : Double.parseDouble(argMin);
+      max = argMax.equals(NO_BOUND) ? Double.MAX_VALUE : Double.parseDouble(argMax);
+    } catch (NumberFormatException e) {
+      min = Double.NaN;
+      max = Double.NaN;
+    }
+
+    if (!(min <= max)) {
+      commander.sendMessage(
+          dialog.get(
+              "invalid_range_given", new Dialog.Arg("min", argMin), new Dialog.Arg("max", argMax)));
+      return;
+    }
+
+    int page = 1;
+    if (args.length == 4) {
+      try {
+        page = Integer.parseInt(args[3]);
+      } catch (NumberFormatException e) {
+        page = 0;
+      }
+      if (page < 1) {
+        commander.sendMessage(dialog.get("invalid_page_given", new Dialog.Arg("page", args[3])));
+        return;
+      }
+    }
+
+    double rangeMin = min;
+    double rangeMax = max;
+    List<Double> range = List.of(min, max);
+    Database database = TrialEconomy.INSTANCE.getDatabase();
+    PageCursor<LeaderboardEntry> cursor =
+        listCursors.compute(
+            commander.getName(),
+            (name, last) ->
+                last != null && last.subject.equals(range)
+                    ? last
+                    : new PageCursor<>(
+                        range,
+                        (after, skip, limit) ->
+                            database.getAccountsInRange(rangeMin, rangeMax, after, skip, limit)));
+
+    int targetPage = page;
+
+    Bukkit.getScheduler()
+        .runTaskAsynchronously(
+            TrialEconomy.INSTANCE,
+            () -> {
+              List<LeaderboardEntry> entries;
+              try {
+                entries = cursor.getPage(targetPage);
+              } catch (SQLException e) {
+                TrialEconomy.logger.warning("Failed to list accounts: " + e.getMessage());
+                Bukkit.getScheduler()
+                    .runTask(
+                        TrialEconomy.INSTANCE,
+                        () ->
+                            commander.sendMessage(
+                                dialog.get(
+                                    "list_failed", new Dialog.Arg("error", e.getMessage()))));
+                return;
+              }
+
+              Bukkit.getScheduler()
+                  .runTask(
+                      TrialEconomy.INSTANCE,
+                      () -> sendList(commander, argMin, argMax, targetPage, entries));
+            });
+  }
+
+  /**
+   * @param commander The commander to send the page to.
+   * @param min The lowest balance, as given.
+   * @param max The highest balance, as given.
+   * @param page The page number.
+   * @param entries The accounts of the page, richest first.
+   */
+  private void sendList(
+      CommandSender commander, String min, String max, int page, List<LeaderboardEntry> entries) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+    Dialog.Arg minArg = new Dialog.Arg("min", min);
+    Dialog.Arg maxArg = new Dialog.Arg("max", max);
+    Dialog.Arg pageArg = new Dialog.Arg("page", page);
+
+    if (entries.isEmpty()) {
+      commander.sendMessage(dialog.get("command_list_empty", minArg, maxArg, pageArg));
+      return;
+    }
+
+    commander.sendMessage(dialog.get("command_list_header", minArg, maxArg, pageArg));
+
+    for (LeaderboardEntry entry : entries) {
+      commander.sendMessage(
+          dialog.get(
+              "command_list_entry",
+              new Dialog.Arg("rank", entry.getRank()),
+              new Dialog.Arg("player", getName(entry.getPlayerId(), entry.getPlayerName())),
+              new Dialog.Arg("balance", entry.getBalance())));
+    }
+
+    if (entries.size() == PAGE_SIZE) {
+      commander.sendMessage(
+          dialog.get("command_list_next", minArg, maxArg, new Dialog.Arg("page", page + 1)));
+    }
+  }
+
+  /**
+   * Handles the 'balance rebalance' sub-command.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   */
+  private void onRebalanceCommand(CommandSender commander, String[] args) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+
+    if (args.length != 1) {
+      commander.sendMessage(dialog.get("command_rebalance_help"));
+      return;
+    }
+
+    LongConsumer progress =
+        count ->
+            Bukkit.getScheduler()
+                .runTask(
+                    TrialEconomy.INSTANCE,
+                    () ->
+                        commander.sendMessage(
+                            dialog.get(
+                                "command_rebalance_progress", new Dialog.Arg("count", count))));
+
+    long start = System.nanoTime();
+    CompletableFuture<Long> future = TrialEconomy.rebalanceAccounts(progress);
+
+    if (future.isDone() && future.isCompletedExceptionally()) {
+      commander.sendMessage(dialog.get("transfer_running"));
+      return;
+    }
+
+    commander.sendMessage(dialog.get("command_rebalance_started"));
+
+    future.whenComplete(
+        (count, e) -> {
+          if (e != null) {
+            TrialEconomy.logger.warning("Failed to rebalance accounts: " + e.getMessage());
+            commander.sendMessage(
+                dialog.get("transfer_failed", new Dialog.Arg("error", e.getMessage())));
+            return;
+          }
+
+          long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          commander.sendMessage(
+              dialog.get(
+                  "command_rebalance_success",
+                  new Dialog.Arg("count", count),
+                  new Dialog.Arg("millis", millis)));
+        });
+  }
+
+  /**
+   * Handles the 'balance reload-dialog' sub-command.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   */
+  private void onReloadDialogCommand(CommandSender commander, String[] args) {
+
+    if (args.length != 1) {
+      Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+      commander.sendMessage(dialog.get("command_reload_dialog_help"));
+      return;
+    }
+
+    long start = System.nanoTime();
+
+    TrialEconomy.reloadDialog()
+        .whenComplete(
+            (ignored, e) -> {
+              // Answer in the reloaded dialog.
+              Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+              if (e != null) {
+                TrialEconomy.logger.warning("Failed to reload dialog: " + e.getMessage());
+                commander.sendMessage(
+                    dialog.get("reload_dialog_failed", new Dialog.Arg("error", e.getMessage())));
+                return;
+              }
+
+              long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+              commander.sendMessage(
+                  dialog.get("command_reload_dialog_success", new Dialog.Arg("millis", millis)));
+            });
+  }
+
+  /**
+   * @param subCommand The first argument of the command.
+   * @return Returns true if the sub-command is 'export' or 'import'.
+   */
+  private static boolean isTransfer(@NotNull String subCommand) {
+    return subCommand.equalsIgnoreCase("export") || subCommand.equalsIgnoreCase("import");
+  }
+
+  /**
+   * Handles the 'balance history' sub-command.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   */
+  private void onHistoryCommand(CommandSender commander, String[] args) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+
+    if (args.length < 2 || args.length > 3) {
+      commander.sendMessage(dialog.get("command_history_help"));
+      return;
+    }
+
+    String argPlayer = args[1];
+    Dialog.Arg playerArg = new Dialog.Arg("player", argPlayer);
+
+    int page = 1;
+    if (args.length == 3) {
+      try {
+        page = Integer.parseInt(args[2]);
+      } catch (NumberFormatException e) {
+        page = 0;
+      }
+      if (page < 1) {
+        commander.sendMessage(dialog.get("invalid_page_given", new Dialog.Arg("page", args[2])));
+        return;
+      }
+    }
+
+    OfflinePlayer oPlayer = Bukkit.getOfflinePlayer(argPlayer);
+    if (!oPlayer.hasPlayedBefore()) {
+      commander.sendMessage(dialog.get("player_not_found", playerArg));
+      return;
+    }
+
+    UUID playerId = oPlayer.getUniqueId();
+    HistoryLedger ledger = TrialEconomy.INSTANCE.getLedger();
+    PageCursor<HistoryEntry> cursor =
+        historyCursors.compute(
+            commander.getName(),
+            (name, last) ->
+                last != null && last.subject.equals(playerId)
+                    ? last
+                    : new PageCursor<>(
+                        playerId,
+                        (after, skip, limit) -> ledger.getPage(playerId, after, skip, limit)));
+
+    int targetPage = page;
+
+    Bukkit.getScheduler()
+        .runTaskAsynchronously(
+            TrialEconomy.INSTANCE,
+            () -> {
+              List<HistoryEntry> entries;
+              try {
+                entries = cursor.getPage(targetPage);
+              } catch (SQLException e) {
+                TrialEconomy.logger.warning("Failed to read history: " + e.getMessage());
+                Bukkit.getScheduler()
+                    .runTask(
+                        TrialEconomy.INSTANCE,
+                        () ->
+                            commander.sendMessage(
+                                dialog.get(
+                                    "history_failed", new Dialog.Arg("error", e.getMessage()))));
+                return;
+              }
+
+              Bukkit.getScheduler()
+                  .runTask(
+                      TrialEconomy.INSTANCE,
+                      () -> sendHistory(commander, argPlayer, targetPage, entries));
+            });
+  }
+
+  /**
+   * @param commander The commander to send the page to.
+   * @param player The name of the player.
+   * @param page The page number.
+   * @param entries The entries of the page, newest first.
+   */
+  private void sendHistory(
+      CommandSender commander, String player, int page, List<HistoryEntry> entries) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+    Dialog.Arg playerArg = new Dialog.Arg("player", player);
+
+    if (entries.isEmpty()) {
+      commander.sendMessage(
+          dialog.get("command_history_empty", playerArg, new Dialog.Arg("page", page)));
+      return;
+    }
+
+    commander.sendMessage(
+        dialog.get("command_history_header", playerArg, new Dialog.Arg("page", page)));
 
-    Dialog.Arg balanceArg = new Dialog.Arg("balance", account.getBalance());
+    String primary = TrialEconomy.getCurrencies().getPrimary().getName();
 
-    commander.sendMessage(dialog.get("command_deposit_success", playerArg, amountArg, balanceArg));
+    for (HistoryEntry entry : entries) {
+      double delta = entry.getDelta();
+      String currency = entry.getCurrency() != null ? entry.getCurrency() : primary;
+      Instant time = Instant.ofEpochMilli(entry.getCreatedAt());
+      commander.sendMessage(
+          dialog.get(
+              "command_history_entry",
+              new Dialog.Arg("time", HISTORY_TIME_FORMAT.format(time)),
+              new Dialog.Arg("delta", delta >= 0 ? "+" + delta : Double.toString(delta)),
+              new Dialog.Arg("currency", currency),
+              new Dialog.Arg("balance", entry.getBalance()),
+              new Dialog.Arg("cause", entry.getCause()),
+              new Dialog.Arg("actor", entry.getActor() != null ? entry.getActor() : "-")));
+    }
+
+    if (entries.size() == PAGE_SIZE) {
+      commander.sendMessage(
+          dialog.get("command_history_next", playerArg, new Dialog.Arg("page", page + 1)));
+    }
   }
 
   /**
@@ -148,9 +819,9 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
    */
   private void onReportCommand(CommandSender commander, String[] args) {
 
-    Dialog dialog = TrialEconomy.INSTANCE.getDialog();
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
 
-    if (args.length != 2) {
+    if (args.length < 2 || args.length > 3) {
       commander.sendMessage(dialog.get("command_report_help"));
       return;
     }
@@ -165,15 +836,22 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
       return;
     }
 
+    Currency currency = getCurrency(commander, args, 2);
+    if (currency == null) return;
+
     if (!TrialEconomy.hasAccount(oPlayer.getUniqueId())) {
       commander.sendMessage(dialog.get("no_account", playerArg));
       return;
     }
 
-    PlayerAccount account = TrialEconomy.getAccount(oPlayer);
-    Dialog.Arg balanceArg = new Dialog.Arg("balance", account.getBalance());
+    Dialog.Arg balanceArg = new Dialog.Arg("balance", TrialEconomy.getBalance(oPlayer, currency));
 
-    commander.sendMessage(dialog.get("command_report_success", playerArg, balanceArg));
+    commander.sendMessage(
+        dialog.get(
+            "command_report_success",
+            playerArg,
+            new Dialog.Arg("currency", currency.getName()),
+            balanceArg));
   }
 
   /**
@@ -184,9 +862,9 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
    */
   private void onSetCommand(CommandSender commander, String[] args) {
 
-    Dialog dialog = TrialEconomy.INSTANCE.getDialog();
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
 
-    if (args.length != 3) {
+    if (args.length < 3 || args.length > 4) {
       commander.sendMessage(dialog.get("command_set_help"));
       return;
     }
@@ -217,18 +895,94 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
       return;
     }
 
+    Currency currency = getCurrency(commander, args, 3);
+    if (currency == null) return;
+    Dialog.Arg currencyArg = new Dialog.Arg("currency", currency.getName());
+
     if (!TrialEconomy.hasAccount(oPlayer.getUniqueId())) {
       commander.sendMessage(dialog.get("no_account", playerArg));
       return;
     }
 
-    PlayerAccount account = TrialEconomy.getAccount(oPlayer);
-    account.setBalance(amount);
-    account.save();
+    reply(
+        commander,
+        TrialEconomy.setBalance(oPlayer, currency, amount, CAUSE, commander.getName(), null),
+        (reply, result) ->
+            reply.get(
+                "command_set_success",
+                playerArg,
+                currencyArg,
+                new Dialog.Arg("balance", result.getBalance())));
+  }
 
-    Dialog.Arg balanceArg = new Dialog.Arg("balance", account.getBalance());
+  /**
+   * Handles the 'balance top' sub-command.
+   *
+   * @param commander The commander executing the command.
+   * @param args The arguments for the command.
+   */
+  private void onTopCommand(CommandSender commander, String[] args) {
+
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
 
-    commander.sendMessage(dialog.get("command_set_success", playerArg, balanceArg));
+    if (args.length > 2) {
+      commander.sendMessage(dialog.get("command_top_help"));
+      return;
+    }
+
+    int page = 1;
+    if (args.length == 2) {
+      try {
+        page = Integer.parseInt(args[1]);
+      } catch (NumberFormatException e) {
+        page = 0;
+      }
+      if (page < 1) {
+        commander.sendMessage(dialog.get("invalid_page_given", new Dialog.Arg("page", args[1])));
+        return;
+      }
+    }
+
+    if (!TrialEconomy.isLeaderboardReady()) {
+      commander.sendMessage(dialog.get("leaderboard_loading"));
+      return;
+    }
+
+    int pages = (TrialEconomy.getRankedAccountCount() + PAGE_SIZE - 1) / PAGE_SIZE;
+    if (pages == 0) {
+      commander.sendMessage(dialog.get("command_top_empty"));
+      return;
+    }
+
+    page = Math.min(page, pages);
+
+    List<LeaderboardEntry> entries =
+        TrialEconomy.getTopBalances((page - 1) * PAGE_SIZE, PAGE_SIZE);
+
+    commander.sendMessage(
+        dialog.get(
+            "command_top_header", new Dialog.Arg("page", page), new Dialog.Arg("pages", pages)));
+
+    for (LeaderboardEntry entry : entries) {
+      commander.sendMessage(
+          dialog.get(
+              "command_top_entry",
+              new Dialog.Arg("rank", entry.getRank()),
+              new Dialog.Arg("player", getName(entry.getPlayerId(), entry.getPlayerName())),
+              new Dialog.Arg("balance", entry.getBalance())));
+    }
+  }
+
+  /**
+   * @param playerId The ID of the player.
+   * @param storedName (Optional) The name stored with the account.
+   * @return The stored name, else the name known to the server, else the ID.
+   */
+  @NotNull
+  static String getName(@NotNull UUID playerId, @Nullable String storedName) {
+    if (storedName != null) return storedName;
+    String name = Bukkit.getOfflinePlayer(playerId).getName();
+    return name != null ? name : playerId.toString();
   }
 
   /**
@@ -239,9 +993,9 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
    */
   private void onWithdrawCommand(CommandSender commander, String[] args) {
 
-    Dialog dialog = TrialEconomy.INSTANCE.getDialog();
+    Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
 
-    if (args.length != 3) {
+    if (args.length < 3 || args.length > 4) {
       commander.sendMessage(dialog.get("command_withdraw_help"));
       return;
     }
@@ -273,25 +1027,124 @@ class BalanceCommand implements CommandExecutor, TabCompleter {
       return;
     }
 
+    Currency currency = getCurrency(commander, args, 3);
+    if (currency == null) return;
+    Dialog.Arg currencyArg = new Dialog.Arg("currency", currency.getName());
+
     if (!TrialEconomy.hasAccount(oPlayer.getUniqueId())) {
       commander.sendMessage(dialog.get("no_account", playerArg));
       return;
     }
 
-    PlayerAccount account = TrialEconomy.getAccount(oPlayer);
+    reply(
+        commander,
+        TrialEconomy.withdraw(oPlayer, currency, amount, CAUSE, commander.getName(), null),
+        (reply, result) -> {
+          Dialog.Arg balanceArg = new Dialog.Arg("balance", result.getBalance());
+          return result.isApplied()
+              ? reply.get(
+                  "command_withdraw_success", playerArg, amountArg, currencyArg, balanceArg)
+              : reply.get("insufficient_balance", playerArg, currencyArg, balanceArg);
+        });
+  }
+
+  /**
+   * Replies on the main thread once a transaction completes.
+   *
+   * @param commander The commander executing the command.
+   * @param transaction The transaction.
+   * @param reply Builds the reply from the commander's dialog and the outcome of the transaction.
+   */
+  private static void reply(
+      @NotNull CommandSender commander,
+      @NotNull CompletableFuture<TransactionResult> transaction,
+      @NotNull BiFunction<Dialog, TransactionResult, String> reply) {
+    transaction.whenComplete(
+        (result, e) ->
+            Bukkit.getScheduler()
+                .runTask(
+                    TrialEconomy.INSTANCE,
+                    () -> {
+                      Dialog dialog = TrialEconomy.INSTANCE.getDialog(commander);
+                      if (e != null) {
+                        TrialEconomy.logger.warning("Failed to change account: " + e.getMessage());
+                        commander.sendMessage(
+                            dialog.get(
+                                "transaction_failed", new Dialog.Arg("error", e.getMessage())));
+                        return;
+                      }
+                      commander.sendMessage(reply.apply(dialog, result));
+                    }));
+  }
+
+  /**
+   * <b>PageCursor</b> remembers the last row of each page a commander has viewed, so moving to a
+   * nearby page seeks from it instead of counting past every row before it. A page further on is
+   * read with one query, skipping the rows between it and the nearest page read.
+   *
+   * @param <T> The type of row paged.
+   * @author Jab
+   */
+  private static class PageCursor<T> {
 
-    Dialog.Arg balanceArg = new Dialog.Arg("balance", account.getBalance());
+    /** What is paged. (E.G: The balance range of a listing or the account of a history) */
+    @NotNull final Object subject;
 
-    if (!account.has(amount)) {
-      commander.sendMessage(dialog.get("insufficient_balance", playerArg, balanceArg));
-      return;
+    @NotNull private final PageSource<T> source;
+
+    /** The last row of each page read, by page number. */
+    private final TreeMap<Integer, T> pageEnds = new TreeMap<>();
+
+    /**
+     * @param subject What is paged.
+     * @param source Reads the rows.
+     */
+    PageCursor(@NotNull Object subject, @NotNull PageSource<T> source) {
+      this.subject = subject;
+      this.source = source;
     }
 
-    account.withdraw(amount);
-    account.save();
+    /**
+     * Reads a page, seeking from the nearest page before it already read. Blocking; run off the
+     * main thread.
+     *
+     * @param page The 1-based page to read.
+     * @return The rows of the page. Empty if there are fewer pages.
+     * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+     */
+    @NotNull
+    synchronized List<T> getPage(int page) throws SQLException {
 
-    balanceArg = new Dialog.Arg("balance", account.getBalance());
+      // Reading the first page starts over so changes are picked up.
+      if (page == 1) pageEnds.clear();
+
+      Map.Entry<Integer, T> from = pageEnds.floorEntry(page - 1);
+      int fromPage = from != null ? from.getKey() : 0;
+      T after = from != null ? from.getValue() : null;
+
+      List<T> rows = source.read(after, (long) (page - 1 - fromPage) * PAGE_SIZE, PAGE_SIZE);
+      if (!rows.isEmpty()) pageEnds.put(page, rows.get(rows.size() - 1));
+      return rows;
+    }
+  }
+
+  /**
+   * <b>PageSource</b> reads a page of rows for a {@link PageCursor}.
+   *
+   * @param <T> The type of row read.
+   * @author Jab
+   */
+  @FunctionalInterface
+  private interface PageSource<T> {
 
-    commander.sendMessage(dialog.get("command_withdraw_success", playerArg, amountArg, balanceArg));
+    /**
+     * @param after (Optional) The last row of a page read. If null, reading starts from the first.
+     * @param skip The amount of rows to skip after it.
+     * @param limit The most rows to read.
+     * @return The rows read.
+     * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+     */
+    @NotNull
+    List<T> read(@Nullable T after, long skip, int limit) throws SQLException;
   }
 }
@@ -0,0 +1,35 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * <b>BalanceListener</b> is told when the balance of a currency of an account changes, without a
+ * Bukkit event being created. Listeners are called at the same times as {@link
+ * BalanceChangeEvent}. (See {@link TrialEconomy#addBalanceListener(BalanceListener)})
+ *
+ * @author Jab
+ */
+@FunctionalInterface
+public interface BalanceListener {
+
+  /**
+   * <b>NOTE:</b> Unless changes are coalesced, this may be called off the main thread.
+   *
+   * @param playerId The player ID of the account.
+   * @param currency The currency that changed.
+   * @param oldBalance The balance before the first change.
+   * @param newBalance The balance after the last change.
+   * @param cause What the last change was for. (E.G: "shop")
+   * @param actor (Optional) Who made the last change.
+   */
+  void onBalanceChange(
+      @NotNull UUID playerId,
+      @NotNull Currency currency,
+      double oldBalance,
+      double newBalance,
+      @NotNull String cause,
+      @Nullable String actor);
+}
@@ -0,0 +1,198 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <b>BalanceNotifier</b> tells {@link BalanceListener}s and {@link BalanceChangeEvent} handlers
+ * about balance changes. While nothing listens, changes return before anything is allocated.
+ *
+ * <p>When coalescing, changes are gathered per account and sent once a tick by {@link
+ * BalanceNotifier#flush()}, so a burst of changes to an account costs listeners one notification
+ * per currency.
+ *
+ * @author Jab
+ */
+class BalanceNotifier {
+
+  /** The non-Bukkit listeners. */
+  private final List<BalanceListener> listeners = new CopyOnWriteArrayList<>();
+
+  /** The changes gathered since the last flush, by player ID. Only used when coalescing. */
+  private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+  /** The currencies held by the accounts. */
+  private final CurrencyRegistry currencies;
+
+  /** If true, changes are gathered and sent once a tick. */
+  private final boolean coalesce;
+
+  /**
+   * @param currencies The currencies held by the accounts.
+   * @param coalesce If true, changes are gathered and sent once a tick by {@link
+   *     BalanceNotifier#flush()}.
+   */
+  BalanceNotifier(@NotNull CurrencyRegistry currencies, boolean coalesce) {
+    this.currencies = currencies;
+    this.coalesce = coalesce;
+  }
+
+  /** @param listener The listener to add. */
+  void addListener(@NotNull BalanceListener listener) {
+    listeners.add(listener);
+  }
+
+  /** @param listener The listener to remove. */
+  void removeListener(@NotNull BalanceListener listener) {
+    listeners.remove(listener);
+  }
+
+  /** @return Returns true if any listener or event handler is registered. */
+  boolean hasListeners() {
+    return !listeners.isEmpty() || hasHandlers();
+  }
+
+  private static boolean hasHandlers() {
+    return BalanceChangeEvent.getHandlerList().getRegisteredListeners().length != 0;
+  }
+
+  /**
+   * @param playerId The player ID of the account.
+   * @param currency The index of the currency that changed.
+   * @param oldBalance The balance before the change.
+   * @param newBalance The balance after the change.
+   * @param cause What the change was for.
+   * @param actor (Optional) Who made the change.
+   */
+  void announce(
+      @NotNull UUID playerId,
+      int currency,
+      double oldBalance,
+      double newBalance,
+      @NotNull String cause,
+      @Nullable String actor) {
+
+    if (!hasListeners()) return;
+
+    if (!coalesce) {
+      send(playerId, currency, oldBalance, newBalance, 1, cause, actor, !Bukkit.isPrimaryThread());
+      return;
+    }
+
+    // Recorded inside compute() so a flush can't take the entry between lookup and recording.
+    pending.compute(
+        playerId,
+        (key, entry) -> {
+          Pending target = entry != null ? entry : new Pending(currencies.size());
+          target.record(currency, oldBalance, newBalance, cause, actor);
+          return target;
+        });
+  }
+
+  /** Sends the changes gathered since the last flush. Run on the main thread once a tick. */
+  void flush() {
+
+    if (pending.isEmpty()) return;
+
+    for (UUID playerId : pending.keySet()) {
+
+      Pending entry = pending.remove(playerId);
+      if (entry == null) continue;
+
+      for (int currency = 0; currency < entry.changes.length; currency++) {
+        // Changes that cancel out aren't sent.
+        if (entry.changes[currency] == 0
+            || entry.oldBalances[currency] == entry.newBalances[currency]) {
+          continue;
+        }
+        send(
+            playerId,
+            currency,
+            entry.oldBalances[currency],
+            entry.newBalances[currency],
+            entry.changes[currency],
+            entry.causes[currency],
+            entry.actors[currency],
+            false);
+      }
+    }
+  }
+
+  private void send(
+      @NotNull UUID playerId,
+      int currencyIndex,
+      double oldBalance,
+      double newBalance,
+      int changes,
+      @NotNull String cause,
+      @Nullable String actor,
+      boolean async) {
+
+    Currency currency = currencies.getAll().get(currencyIndex);
+
+    for (BalanceListener listener : listeners) {
+      try {
+        listener.onBalanceChange(playerId, currency, oldBalance, newBalance, cause, actor);
+      } catch (RuntimeException e) {
+        TrialEconomy.logger.warning("A balance listener failed: " + e);
+      }
+    }
+
+    if (hasHandlers()) {
+      Bukkit.getPluginManager()
+          .callEvent(
+              new BalanceChangeEvent(
+                  async, playerId, currency, oldBalance, newBalance, changes, cause, actor));
+    }
+  }
+
+  /**
+   * <b>Pending</b> is the changes to one account's currencies since the last flush.
+   *
+   * @author Jab
+   */
+  private static class Pending {
+
+    /** The amount of changes to each currency. */
+    final int[] changes;
+
+    /** The balance of each changed currency before its first change. */
+    final double[] oldBalances;
+
+    /** The balance of each changed currency after its last change. */
+    final double[] newBalances;
+
+    /** What the last change to each currency was for. */
+    final String[] causes;
+
+    /** Who made the last change to each currency. */
+    final String[] actors;
+
+    Pending(int currencies) {
+      this.changes = new int[currencies];
+      this.oldBalances = new double[currencies];
+      this.newBalances = new double[currencies];
+      this.causes = new String[currencies];
+      this.actors = new String[currencies];
+    }
+
+    void record(
+        int currency,
+        double oldBalance,
+        double newBalance,
+        @NotNull String cause,
+        @Nullable String actor) {
+      if (changes[currency]++ == 0) oldBalances[currency] = oldBalance;
+      newBalances[currency] = newBalance;
+      causes[currency] = cause;
+      actors[currency] = actor;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <b>Currency</b> is a named balance held by every account. (E.G: "coins", "gems") Currencies are
+ * listed in config.yml and looked up through {@link TrialEconomy#getCurrencies()}.
+ *
+ * @author Jab
+ */
+public final class Currency {
+
+  /** The name of the currency. Lower-case letters, digits and underscores. */
+  @Getter private final String name;
+
+  /** The position of the currency in the registry and in each account's balances. */
+  @Getter private final int index;
+
+  /** The column of the account tables storing the currency. */
+  @Getter(AccessLevel.PACKAGE)
+  private final String column;
+
+  /**
+   * @param name The name of the currency.
+   * @param index The position of the currency in the registry.
+   */
+  Currency(@NotNull String name, int index) {
+    this.name = name;
+    this.index = index;
+    // The first currency is the original balance column, so existing balances carry over. Its
+    // name is recorded in the database, so a different first currency is refused.
+    this.column = index == 0 ? "balance" : "balance_" + name;
+  }
+
+  /** @return Returns true if this is the first currency, used by leaderboards. */
+  public boolean isPrimary() {
+    return index == 0;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,119 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * <b>CurrencyRegistry</b> holds every currency in the order of each account's balances.
+ *
+ * @author Jab
+ */
+public final class CurrencyRegistry {
+
+  /** The most currencies in a registry. */
+  static final int MAX_CURRENCIES = 16;
+
+  /** Currency names are part of column names, so they are kept to safe identifiers. */
+  private static final Pattern NAME = Pattern.compile("[a-z][a-z0-9_]{0,15}");
+
+  /** The registry of a single 'coins' currency. */
+  static final CurrencyRegistry DEFAULT = new CurrencyRegistry(List.of("coins"));
+
+  /** Every currency, by index. */
+  private final List<Currency> currencies;
+
+  /** Every currency, by name. */
+  private final Map<String, Currency> byName = new HashMap<>();
+
+  /**
+   * @param names The names of the currencies. The first is the primary currency.
+   * @throws IllegalArgumentException Thrown if a name is invalid or repeated, or the amount of
+   *     names is out of range.
+   */
+  CurrencyRegistry(@NotNull List<String> names) {
+
+    if (names.isEmpty() || names.size() > MAX_CURRENCIES) {
+      throw new IllegalArgumentException(
+          "There must be 1 to " + MAX_CURRENCIES + " currencies. (" + names.size() + " given)");
+    }
+
+    List<Currency> currencies = new ArrayList<>(names.size());
+
+    for (String name : names) {
+      if (!NAME.matcher(name).matches()) {
+        throw new IllegalArgumentException(
+            "The currency '"
+                + name
+                + "' must be 1 to 16 lower-case letters, digits or underscores, starting with a"
+                + " letter.");
+      }
+      Currency currency = new Currency(name, currencies.size());
+      if (byName.putIfAbsent(name, currency) != null) {
+        throw new IllegalArgumentException("The currency '" + name + "' is listed twice.");
+      }
+      currencies.add(currency);
+    }
+
+    this.currencies = Collections.unmodifiableList(currencies);
+  }
+
+  /**
+   * @param cfg The settings of the plugin.
+   * @return The currencies listed under 'currencies', else the default registry.
+   * @throws YAMLException Thrown if the list is invalid.
+   */
+  @NotNull
+  static CurrencyRegistry load(@NotNull ConfigurationSection cfg) {
+
+    if (!cfg.contains("currencies")) return DEFAULT;
+    if (!cfg.isList("currencies")) {
+      throw new YAMLException("The field 'currencies' is not a list.");
+    }
+
+    try {
+      return new CurrencyRegistry(cfg.getStringList("currencies"));
+    } catch (IllegalArgumentException e) {
+      throw new YAMLException("The field 'currencies' is invalid: " + e.getMessage());
+    }
+  }
+
+  /**
+   * @param name The name of the currency. Case-insensitive.
+   * @return The currency. If none has the name, null is returned.
+   */
+  @Nullable
+  public Currency get(@NotNull String name) {
+    return byName.get(name.toLowerCase(Locale.ROOT));
+  }
+
+  /** @return The first currency, used by leaderboards. */
+  @NotNull
+  public Currency getPrimary() {
+    return currencies.get(0);
+  }
+
+  /** @return Every currency, by index. */
+  @NotNull
+  public List<Currency> getAll() {
+    return currencies;
+  }
+
+  /** @return The amount of currencies. */
+  public int size() {
+    return currencies.size();
+  }
+
+  /**
+   * @param currency The currency to test.
+   * @return Returns true if the currency is from this registry.
+   */
+  public boolean contains(@NotNull Currency currency) {
+    int index = currency.getIndex();
+    return index < currencies.size() && currencies.get(index) == currency;
+  }
+}
@@ -0,0 +1,118 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <b>DataFiles</b> holds the file handling shared by account snapshots and transfers.
+ *
+ * <p>Files are written to a temporary sibling and moved into place once complete, so a failed
+ * write never leaves a truncated file behind. Player & currency names are stored as a byte of
+ * their UTF-8 length, or -1 for none, then the bytes.
+ *
+ * @author Jab
+ */
+final class DataFiles {
+
+  /** The most UTF-8 bytes in a stored name. */
+  static final int MAX_NAME_BYTES = 127;
+
+  private DataFiles() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Writes a file through a temporary sibling, replacing the file once the write completes.
+   *
+   * @param file The file to write. If it exists, it is replaced.
+   * @param output Writes the contents to the temporary file given.
+   * @param <E> The exception the output throws, besides IOException.
+   * @throws IOException Thrown if the file cannot be written.
+   * @throws E Thrown if the output fails. The temporary file is deleted.
+   */
+  static <E extends Exception> void write(@NotNull File file, @NotNull Output<E> output)
+      throws IOException, E {
+
+    File folder = file.getParentFile();
+    if (folder != null && !folder.exists() && !folder.mkdirs()) {
+      throw new IOException("Failed to create directory: " + folder.getPath());
+    }
+
+    File temp = new File(folder, file.getName() + ".part");
+
+    try {
+      output.write(temp);
+    } catch (Exception e) {
+      Files.deleteIfExists(temp.toPath());
+      throw e;
+    }
+
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * @param out The output to write to.
+   * @param value (Optional) The name to write.
+   * @throws IOException Thrown if the name is longer than {@link #MAX_NAME_BYTES} or cannot be
+   *     written.
+   */
+  static void writeName(@NotNull DataOutput out, @Nullable String value) throws IOException {
+    if (value == null) {
+      out.writeByte(-1);
+      return;
+    }
+    byte[] name = value.getBytes(StandardCharsets.UTF_8);
+    if (name.length > MAX_NAME_BYTES) throw new IOException("Name too long: " + value);
+    out.writeByte(name.length);
+    out.write(name);
+  }
+
+  /**
+   * @param in The input to read from.
+   * @param scratch A buffer of at least {@link #MAX_NAME_BYTES}, reused between names.
+   * @return The name read. If none was written, null is returned.
+   * @throws IOException Thrown if the name cannot be read.
+   */
+  @Nullable
+  static String readName(@NotNull DataInput in, @NotNull byte[] scratch) throws IOException {
+    int length = in.readByte();
+    if (length < 0) return null;
+    in.readFully(scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param buffer The buffer to read from.
+   * @param scratch A buffer of at least {@link #MAX_NAME_BYTES}, reused between names.
+   * @return The name read. If none was written, null is returned.
+   */
+  @Nullable
+  static String readName(@NotNull ByteBuffer buffer, @NotNull byte[] scratch) {
+    int length = buffer.get();
+    if (length < 0) return null;
+    buffer.get(scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * <b>Output</b> writes the contents of a file.
+   *
+   * @param <E> The exception thrown, besides IOException.
+   * @author Jab
+   */
+  @FunctionalInterface
+  interface Output<E extends Exception> {
+
+    /** @param file The file to write. */
+    void write(@NotNull File file) throws IOException, E;
+  }
+}
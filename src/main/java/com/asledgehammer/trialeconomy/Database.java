@@ -9,8 +9,11 @@ import org.jetbrains.annotations.Nullable;
 import org.yaml.snakeyaml.error.YAMLException;
 
 import java.sql.*;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 /**
  * <b>Database</b> handles all MySQL transactions & queries for TrialEconomy.
@@ -19,62 +22,99 @@ import java.util.UUID;
  */
 class Database {
 
-  private static final String TABLE_ACCOUNTS = "trial_economy_accounts";
+  static final String TABLE_ACCOUNTS = "trial_economy_accounts";
+  static final String TABLE_HISTORY = "trial_economy_history";
+  static final String TABLE_TRANSACTIONS = "trial_economy_transactions";
+
+  /** The most partitions scanned or rebalanced at once, each on its own connection. */
+  static final int PARALLELISM = 8;
+
+  /** The amount of accounts handed from a partition scan to the visitor at a time. */
+  private static final int SCAN_CHUNK_SIZE = 512;
+
+  /** The amount of accounts examined per transaction when rebalancing. */
+  static final int REBALANCE_CHUNK_SIZE = 1_000;
 
   /** The credentials used to connect to the remote MySQL database. */
-  private final Credentials credentials;
+  @Getter private final Credentials credentials;
 
   /** The MySQL connection instance. */
   private Connection conn;
 
   /**
-   * @param credentials The credentials used to connect to the remote MySQL database.
-   * @throws NullPointerException Thrown if the credentials is null.
+   * Held while the shared connection is in use. Async readers fall back to it from replicas and
+   * relocations switch its auto-commit for their transaction, so one thread uses it at a time.
+   * Threads that use the primary a lot, such as mailbox workers, open their own connections.
    */
-  Database(@NotNull Credentials credentials) {
-    this.credentials = credentials;
-  }
+  private final Object connLock = new Object();
 
-  /**
-   * Packages a UUID as a byte array of 16 in length.
-   *
-   * @param uuid The UUID to convert.
-   * @return A byte array of 16 in length.
-   * @throws NullPointerException Thrown if the uuid is null.
-   */
-  private static byte[] toBytes(@NotNull UUID uuid) {
+  /** Routes read-only queries to replicas when any are configured. */
+  @Getter private final ReplicaRouter replicas;
 
-    byte[] first = toBytes(uuid.getMostSignificantBits());
-    byte[] second = toBytes(uuid.getLeastSignificantBits());
+  /** The amount of account partitions configured. */
+  private final int partitionCount;
 
-    byte[] bytes = new byte[16];
+  /** The layout of the account tables. Replaced whole once a rebalance completes. */
+  @Getter private volatile AccountPartitions partitions;
 
-    System.arraycopy(first, 0, bytes, 0, 8);
-    System.arraycopy(second, 0, bytes, 8, 8);
+  /** The currencies held by every account, each stored in its own column. */
+  @Getter private final CurrencyRegistry currencies;
 
-    return bytes;
-  }
+  /** Every column of the account tables, so accounts can be moved between partitions. */
+  private final String accountColumns;
+
+  /** The balance column of every currency, by index. */
+  private final String balanceColumns;
+
+  /** The balance column of every currency, by index, as parameterized assignments. */
+  private final String balanceAssignments;
+
+  /** The SQL of the hot paths of each account table, built once per table. */
+  private final Map<String, AccountSql> accountSql = new ConcurrentHashMap<>();
 
   /**
-   * Unpacks a long to an array of 8 bytes.
-   *
-   * @param value The long to unpack.
-   * @return An array of 8 bytes.
+   * @param credentials The credentials used to connect to the remote MySQL database.
+   * @throws NullPointerException Thrown if the credentials is null.
    */
-  private static byte[] toBytes(long value) {
-
-    byte[] bytes = new byte[8];
+  Database(@NotNull Credentials credentials) {
+    this(credentials, 1, CurrencyRegistry.DEFAULT);
+  }
 
-    for (int offset = 0; offset < bytes.length; offset++) {
-      bytes[offset] = Long.valueOf(value & 0xff).byteValue();
-      value = value >> 8;
+  /**
+   * @param credentials The credentials used to connect to the remote MySQL database.
+   * @param partitionCount The amount of tables to spread accounts over.
+   * @param currencies The currencies held by every account.
+   * @throws NullPointerException Thrown if the credentials or currencies are null.
+   * @throws IllegalArgumentException Thrown if the partition count is out of range.
+   */
+  Database(
+      @NotNull Credentials credentials, int partitionCount, @NotNull CurrencyRegistry currencies) {
+    if (partitionCount < 1 || partitionCount > AccountPartitions.MAX_PARTITIONS) {
+      throw new IllegalArgumentException(
+          "The partition count must be 1 to "
+              + AccountPartitions.MAX_PARTITIONS
+              + ". ("
+              + partitionCount
+              + " given)");
     }
-
-    return bytes;
+    this.credentials = credentials;
+    this.replicas = new ReplicaRouter(credentials.getReplicas(), credentials.getReplicaPolicy());
+    this.partitionCount = partitionCount;
+    this.currencies = currencies;
+
+    StringJoiner columns = new StringJoiner(", ");
+    StringJoiner assignments = new StringJoiner(", ");
+    for (Currency currency : currencies.getAll()) {
+      columns.add(currency.getColumn());
+      assignments.add(currency.getColumn() + "=?");
+    }
+    this.balanceColumns = columns.toString();
+    this.balanceAssignments = assignments.toString();
+    this.accountColumns = "player_id, " + balanceColumns + ", player_name, version, updated_at";
   }
 
   /**
-   * Connects to the MySQL database.
+   * Connects to the MySQL database and applies any pending schema migrations.
    *
    * @throws SQLException Thrown if an exception occurs while connecting to the remote MySQL
    *     database.
@@ -82,6 +122,7 @@ class Database {
   void connect() throws SQLException {
     this.conn = credentials.newConnection();
     setup();
+    replicas.connect();
   }
 
   /**
@@ -91,24 +132,95 @@ class Database {
    *     database.
    */
   void disconnect() throws SQLException {
-    this.conn.close();
+    replicas.disconnect();
+    synchronized (connLock) {
+      this.conn.close();
+    }
   }
 
   private void setup() throws SQLException {
 
+    SchemaMigrator migrator = new SchemaMigrator(conn);
+
+    // Servers sharing the database may start together, so one at a time changes the schema.
+    migrator.lock();
+    try {
+      setup(migrator);
+    } finally {
+      migrator.unlock();
+    }
+  }
+
+  private void setup(@NotNull SchemaMigrator migrator) throws SQLException {
+
     String sql =
         "CREATE TABLE IF NOT EXISTS `"
             + TABLE_ACCOUNTS
             + "`("
             + "`player_id` varbinary(16) NOT NULL,"
             + "`balance` double NOT NULL,"
-            + "PRIMARY KEY (`player_id`) USING BTREE,"
-            + "UNIQUE INDEX `player_id` (`player_id`) USING BTREE"
+            + "PRIMARY KEY (`player_id`)"
             + ") ENGINE=InnoDB";
 
     try (Statement statement = conn.createStatement()) {
       statement.execute(sql);
     }
+
+    int applied = migrator.migrate();
+    if (applied != 0) TrialEconomy.logger.info("Applied " + applied + " schema migration(s).");
+
+    partitions = AccountPartitions.load(migrator, conn, partitionCount);
+    checkPrimaryCurrency();
+
+    // Currencies removed from the config keep their column, so adding them back restores them.
+    for (String table : partitions.getTables()) {
+      for (Currency currency : currencies.getAll()) {
+        if (currency.isPrimary()) continue;
+        migrator.addColumn(table, currency.getColumn(), "double NOT NULL DEFAULT 0");
+      }
+    }
+  }
+
+  /**
+   * The primary currency is stored in the original balance column and as null in the history, by
+   * position rather than by name. Its name is recorded on the first start, and a config listing
+   * another currency first is refused rather than swapping balances.
+   *
+   * @throws YAMLException Thrown if the first currency configured isn't the one recorded.
+   * @throws SQLException Thrown if the name cannot be read or recorded.
+   */
+  private void checkPrimaryCurrency() throws SQLException {
+
+    String configured = currencies.getPrimary().getName();
+
+    // Another server may record a name at the same time, so only record over none.
+    String sql =
+        "UPDATE "
+            + AccountPartitions.TABLE_LAYOUT
+            + " SET primary_currency=? WHERE id = 1 AND primary_currency IS NULL;";
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setString(1, configured);
+      statement.executeUpdate();
+    }
+
+    String recorded;
+    sql = "SELECT primary_currency FROM " + AccountPartitions.TABLE_LAYOUT + " WHERE id = 1;";
+    try (PreparedStatement statement = conn.prepareStatement(sql);
+        ResultSet resultSet = statement.executeQuery()) {
+      if (!resultSet.next()) throw new SQLException("The partition layout is missing.");
+      recorded = resultSet.getString(1);
+    }
+
+    if (!configured.equals(recorded)) {
+      throw new YAMLException(
+          "The field 'currencies' lists '"
+              + configured
+              + "' first, but the stored balances have '"
+              + recorded
+              + "' as the primary currency. List '"
+              + recorded
+              + "' first; reordering would swap their balances.");
+    }
   }
 
   /**
@@ -120,6 +232,485 @@ class Database {
     return conn != null && !conn.isClosed();
   }
 
+  /**
+   * Runs a read-only query on a healthy replica, falling back to the primary if no replica
+   * qualifies or the replica fails.
+   *
+   * @param playerId (Optional) The account the query reads. Recently written accounts are read from
+   *     the primary.
+   * @param query The query to run.
+   * @return The result of the query.
+   * @throws SQLException Thrown if the query fails on the primary.
+   */
+  <T> T read(@Nullable UUID playerId, @NotNull Query<T> query) throws SQLException {
+
+    ReplicaRouter.Replica replica = replicas.route(playerId);
+
+    if (replica != null) {
+      try {
+        return replica.read(query);
+      } catch (SQLException e) {
+        replicas.markFailed(replica, e);
+      }
+    }
+
+    synchronized (connLock) {
+      return query.run(conn);
+    }
+  }
+
+  /**
+   * Opens a dedicated connection for long-running reads, so streaming a large result never holds
+   * up the shared connections. A healthy replica is preferred over the primary.
+   *
+   * @return A new connection. The caller must close it.
+   * @throws SQLException Thrown if the connection cannot be established.
+   */
+  @NotNull
+  Connection openReadConnection() throws SQLException {
+    ReplicaRouter.Replica replica = replicas.route(null);
+    if (replica != null) {
+      try {
+        return replica.getCredentials().newConnection();
+      } catch (SQLException e) {
+        replicas.markFailed(replica, e);
+      }
+    }
+    return credentials.newConnection();
+  }
+
+  /**
+   * Opens a dedicated connection to the primary for bulk writes, so long transactions never hold
+   * up the shared connection.
+   *
+   * @return A new connection. The caller must close it.
+   * @throws SQLException Thrown if the connection cannot be established.
+   */
+  @NotNull
+  Connection openWriteConnection() throws SQLException {
+    return credentials.newConnection();
+  }
+
+  /**
+   * Sets a statement to stream its rows rather than buffer the whole result in the heap.
+   *
+   * @param statement A forward-only, read-only statement.
+   * @throws SQLException Thrown if the fetch size is rejected.
+   */
+  static void stream(@NotNull Statement statement) throws SQLException {
+    String product = statement.getConnection().getMetaData().getDatabaseProductName();
+    // Connector/J only streams row-by-row when the fetch size is Integer.MIN_VALUE.
+    statement.setFetchSize("MySQL".equalsIgnoreCase(product) ? Integer.MIN_VALUE : 1_000);
+  }
+
+  /**
+   * Streams every account updated at or after a point in time. Partitions are read in parallel,
+   * each on its own connection, while the visitor runs on the calling thread.
+   *
+   * @param updatedSince The earliest update time to include, in epoch milliseconds. Zero includes
+   *     every account.
+   * @param visitor The visitor receiving each account. Accounts of different partitions arrive
+   *     interleaved.
+   * @return The latest update time seen, or the given time if no accounts matched.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  long forEachAccount(long updatedSince, @NotNull AccountVisitor visitor) throws SQLException {
+
+    List<String> tables = partitions.getTables();
+
+    if (tables.size() == 1) {
+      try (Connection conn = openReadConnection()) {
+        return forEachAccount(conn, tables.get(0), updatedSince, visitor);
+      }
+    }
+
+    BlockingQueue<List<AccountRow>> queue = new ArrayBlockingQueue<>(PARALLELISM * 4);
+    ExecutorService executor = newExecutor("TrialEconomy Partition Scan", tables.size());
+    List<Future<Long>> scans = new ArrayList<>();
+
+    long latest = updatedSince;
+
+    try {
+      for (String table : tables) {
+        scans.add(executor.submit(new PartitionScan(table, updatedSince, queue)));
+      }
+
+      int remaining = tables.size();
+      while (remaining > 0) {
+        List<AccountRow> rows = queue.take();
+        if (rows == PartitionScan.END) {
+          remaining--;
+          continue;
+        }
+        for (AccountRow row : rows) {
+          visitor.visit(row.playerId(), row.playerName(), row.balances(), row.updatedAt());
+        }
+      }
+
+      for (Future<Long> scan : scans) latest = Math.max(latest, scan.get());
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while reading the account partitions.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException cause) throw cause;
+      throw new SQLException("Failed to read an account partition.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return latest;
+  }
+
+  /**
+   * Streams every account of one table updated at or after a point in time.
+   *
+   * @param conn The connection to read from. (See {@link Database#openReadConnection()})
+   * @param table The account table to read.
+   * @param updatedSince The earliest update time to include, in epoch milliseconds. Zero includes
+   *     every account.
+   * @param visitor The visitor receiving each account.
+   * @return The latest update time seen, or the given time if no accounts matched.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  private long forEachAccount(
+      @NotNull Connection conn,
+      @NotNull String table,
+      long updatedSince,
+      @NotNull AccountVisitor visitor)
+      throws SQLException {
+
+    String sql =
+        "SELECT player_id, player_name, updated_at, "
+            + balanceColumns
+            + " FROM "
+            + table
+            + " WHERE updated_at >= ?;";
+
+    long latest = updatedSince;
+
+    try (PreparedStatement statement =
+        conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+      stream(statement);
+      statement.setLong(1, updatedSince);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          long updatedAt = resultSet.getLong(3);
+          double[] balances = new double[currencies.size()];
+          for (int index = 0; index < balances.length; index++) {
+            balances[index] = resultSet.getDouble(4 + index);
+          }
+          visitor.visit(
+              UuidCodec.toUUID(resultSet.getBytes(1)), resultSet.getString(2), balances, updatedAt);
+          if (updatedAt > latest) latest = updatedAt;
+        }
+      }
+    }
+
+    return latest;
+  }
+
+  /**
+   * Moves every account stored outside its partition, then records the layout change as complete.
+   * Each table is worked through in parallel on its own connection, a chunk per transaction, so
+   * servers keep reading and writing accounts meanwhile. Blocking; run off the main thread.
+   *
+   * <p>A rebalance that fails or is stopped is safe to run again. Accounts moved before it stay
+   * moved.
+   *
+   * @param progress (Optional) Receives the running total of accounts moved. Invoked off the main
+   *     thread.
+   * @return The amount of accounts moved.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL transactions.
+   */
+  long rebalance(@Nullable LongConsumer progress) throws SQLException {
+
+    AccountPartitions partitions = this.partitions;
+    List<String> tables = partitions.getTables();
+
+    AtomicLong moved = new AtomicLong();
+    ExecutorService executor = newExecutor("TrialEconomy Rebalance", tables.size());
+    List<Future<?>> tasks = new ArrayList<>();
+
+    try {
+      for (String table : tables) {
+        tasks.add(
+            executor.submit(
+                () -> {
+                  rebalance(partitions, table, moved, progress);
+                  return null;
+                }));
+      }
+      for (Future<?> task : tasks) task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while rebalancing the account partitions.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException cause) throw cause;
+      throw new SQLException("Failed to rebalance an account partition.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    try (Connection conn = openWriteConnection()) {
+      this.partitions = partitions.complete(conn);
+    }
+
+    return moved.get();
+  }
+
+  /**
+   * Moves every account of one table that belongs to another partition, walking the table by
+   * player ID so each chunk is a short index range scan.
+   */
+  private void rebalance(
+      @NotNull AccountPartitions partitions,
+      @NotNull String table,
+      @NotNull AtomicLong moved,
+      @Nullable LongConsumer progress)
+      throws SQLException {
+
+    String sqlSelect =
+        "SELECT player_id FROM " + table + " WHERE player_id > ? ORDER BY player_id LIMIT ?;";
+    String sqlDelete = "DELETE FROM " + table + " WHERE player_id = ?;";
+
+    byte[] after = new byte[0];
+
+    try (Connection conn = openWriteConnection();
+        PreparedStatement select = conn.prepareStatement(sqlSelect);
+        PreparedStatement delete = conn.prepareStatement(sqlDelete)) {
+
+      conn.setAutoCommit(false);
+      Map<String, PreparedStatement> inserts = new HashMap<>();
+
+      try {
+        int rows;
+        do {
+          rows = 0;
+          int misplaced = 0;
+
+          select.setBytes(1, after);
+          select.setInt(2, REBALANCE_CHUNK_SIZE);
+
+          try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+
+              byte[] playerIdBytes = resultSet.getBytes(1);
+              after = playerIdBytes;
+              rows++;
+
+              String home = partitions.getTable(UuidCodec.toUUID(playerIdBytes));
+              if (home.equals(table)) continue;
+
+              PreparedStatement insert = inserts.get(home);
+              if (insert == null) {
+                insert = conn.prepareStatement(toMoveSql(table, home));
+                inserts.put(home, insert);
+              }
+
+              insert.setBytes(1, playerIdBytes);
+              insert.addBatch();
+              delete.setBytes(1, playerIdBytes);
+              delete.addBatch();
+              misplaced++;
+            }
+          }
+
+          if (misplaced != 0) {
+            for (PreparedStatement insert : inserts.values()) insert.executeBatch();
+            delete.executeBatch();
+          }
+
+          conn.commit();
+
+          if (misplaced != 0) {
+            long total = moved.addAndGet(misplaced);
+            if (progress != null) progress.accept(total);
+          }
+
+        } while (rows == REBALANCE_CHUNK_SIZE);
+
+      } catch (SQLException | RuntimeException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        for (PreparedStatement insert : inserts.values()) insert.close();
+      }
+    }
+  }
+
+  /**
+   * Moves an account from the previous layout's partition to its own, if the layout is changing.
+   * Joins the caller's transaction if one is open.
+   *
+   * @param conn The connection to the primary to use.
+   * @param playerId The player ID of the account.
+   * @param playerIdBytes The player ID of the account, as stored.
+   * @return Returns true if the account was looked for in a previous partition.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL transactions.
+   */
+  private boolean relocate(
+      @NotNull Connection conn, @NotNull UUID playerId, @NotNull byte[] playerIdBytes)
+      throws SQLException {
+
+    AccountPartitions partitions = this.partitions;
+    String previous = partitions.getPreviousTable(playerId);
+    if (previous == null) return false;
+
+    String sqlDelete = "DELETE FROM " + previous + " WHERE player_id = ?;";
+    boolean autoCommit = conn.getAutoCommit();
+
+    try (PreparedStatement insert =
+            conn.prepareStatement(toMoveSql(previous, partitions.getTable(playerId)));
+        PreparedStatement delete = conn.prepareStatement(sqlDelete)) {
+
+      if (autoCommit) conn.setAutoCommit(false);
+
+      insert.setBytes(1, playerIdBytes);
+      delete.setBytes(1, playerIdBytes);
+
+      // If another server moved the account first, its copy is kept.
+      insert.executeUpdate();
+      delete.executeUpdate();
+
+      if (autoCommit) conn.commit();
+
+    } catch (SQLException e) {
+      if (autoCommit) conn.rollback();
+      throw e;
+    } finally {
+      if (autoCommit) conn.setAutoCommit(true);
+    }
+
+    return true;
+  }
+
+  /**
+   * @param from The table to copy the account from.
+   * @param to The table to copy the account to. If it has the account already, it is kept.
+   * @return A statement copying the account with the given player ID.
+   */
+  @NotNull
+  private String toMoveSql(@NotNull String from, @NotNull String to) {
+    return "INSERT IGNORE INTO "
+        + to
+        + " ("
+        + accountColumns
+        + ") SELECT "
+        + accountColumns
+        + " FROM "
+        + from
+        + " WHERE player_id = ?;";
+  }
+
+  /**
+   * @param table The account table.
+   * @return The SQL of the table's hot paths. The same strings are returned for every call, so
+   *     they key the driver's statement cache without being rebuilt.
+   */
+  @NotNull
+  private AccountSql getSql(@NotNull String table) {
+    AccountSql sql = accountSql.get(table);
+    return sql != null ? sql : accountSql.computeIfAbsent(table, this::toAccountSql);
+  }
+
+  @NotNull
+  private AccountSql toAccountSql(@NotNull String table) {
+    return new AccountSql(
+        "SELECT " + balanceColumns + " FROM " + table + " WHERE player_id = ?;",
+        "INSERT INTO "
+            + table
+            + " (player_id, balance, player_name, updated_at) VALUES (?,?,?,?);",
+        "UPDATE "
+            + table
+            + " SET "
+            + balanceAssignments
+            // The version is informational: it counts saves and isn't checked before writing.
+            + ", player_name=COALESCE(?, player_name), version=version+1, updated_at=?"
+            + " WHERE player_id = ?;");
+  }
+
+  /**
+   * @param name The name of the threads.
+   * @param tasks The amount of tasks to run.
+   * @return A daemon pool running up to {@link Database#PARALLELISM} of the tasks at once.
+   */
+  @NotNull
+  private static ExecutorService newExecutor(@NotNull String name, int tasks) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        Math.max(1, Math.min(PARALLELISM, tasks)),
+        task -> {
+          Thread thread = new Thread(task, name + " #" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Reads the balances of an account from its partition, moving it there first if it is still in
+   * the previous layout's.
+   *
+   * @param conn The connection to the primary to use.
+   * @param playerId The player ID of the account.
+   * @param playerIdBytes The player ID of the account, as stored.
+   * @param trace (Optional) Receives the SQL run.
+   * @return The balance of every currency, by index. If the account doesn't exist, null is
+   *     returned.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL transactions &
+   *     queries.
+   */
+  @Nullable
+  private double[] locate(
+      @NotNull Connection conn,
+      @NotNull UUID playerId,
+      @NotNull byte[] playerIdBytes,
+      @Nullable Diagnostics.Operation trace)
+      throws SQLException {
+    double[] balances = selectBalances(conn, partitions.getTable(playerId), playerIdBytes, trace);
+    if (balances == null && relocate(conn, playerId, playerIdBytes)) {
+      balances = selectBalances(conn, partitions.getTable(playerId), playerIdBytes, trace);
+    }
+    return balances;
+  }
+
+  /**
+   * Reads every currency of an account in one query.
+   *
+   * @param conn The connection to use.
+   * @param table The account table to read.
+   * @param playerIdBytes The player ID of the account, as stored.
+   * @param trace (Optional) Receives the SQL run.
+   * @return The balance of every currency, by index. If the table doesn't have the account, null
+   *     is returned.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  private double[] selectBalances(
+      @NotNull Connection conn,
+      @NotNull String table,
+      @NotNull byte[] playerIdBytes,
+      @Nullable Diagnostics.Operation trace)
+      throws SQLException {
+
+    String sql = getSql(table).selectBalances();
+    if (trace != null) trace.sql = sql;
+
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setBytes(1, playerIdBytes);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) return null;
+        double[] balances = new double[currencies.size()];
+        for (int index = 0; index < balances.length; index++) {
+          balances[index] = resultSet.getDouble(index + 1);
+        }
+        return balances;
+      }
+    }
+  }
+
   /**
    * Gets an account for a player. If the player doesn't have an account, one is created and saved
    * to the remote MySQL database.
@@ -132,41 +723,58 @@ class Database {
    */
   @NotNull
   PlayerAccount getOrCreateAccount(@NotNull Player player) throws SQLException {
+    synchronized (connLock) {
+      return getOrCreateAccount(conn, player);
+    }
+  }
 
-    String sql = "SELECT * FROM " + TABLE_ACCOUNTS + " WHERE player_id = ?;";
+  /**
+   * Gets an account for a player. If the player doesn't have an account, one is created.
+   *
+   * @param conn The connection to the primary to use.
+   * @param player The player associated with the account.
+   * @return The player's account.
+   * @throws NullPointerException Thrown if the connection or player is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL transactions &
+   *     queries.
+   */
+  @NotNull
+  PlayerAccount getOrCreateAccount(@NotNull Connection conn, @NotNull Player player)
+      throws SQLException {
+
+    Diagnostics.AccountLoad trace = Diagnostics.accountLoad();
 
-    double balance = 0.0;
-    boolean isNew = true;
     UUID playerId = player.getUniqueId();
-    byte[] playerIdBytes = toBytes(playerId);
+    byte[] playerIdBytes = UuidCodec.toBytes(playerId);
 
-    try (PreparedStatement statement = conn.prepareStatement(sql)) {
-      statement.setBytes(1, playerIdBytes);
+    double[] balances = locate(conn, playerId, playerIdBytes, trace);
 
-      ResultSet resultSet = statement.executeQuery();
-      if (resultSet.next()) {
-        isNew = false;
-        balance = resultSet.getDouble(2);
-      }
+    // If the account is new, insert to the database. Other currencies default to zero.
+    if (balances == null) {
 
-      resultSet.close();
-    }
+      balances = new double[currencies.size()];
 
-    // If the account is new, insert to the database.
-    if (isNew) {
-
-      sql = "INSERT INTO " + TABLE_ACCOUNTS + " (player_id, balance) VALUES (?,?);";
+      String sql = getSql(partitions.getTable(playerId)).insert();
+      if (trace != null) {
+        trace.sql = sql;
+        trace.created = true;
+      }
 
       try (PreparedStatement statement = conn.prepareStatement(sql)) {
         statement.setBytes(1, playerIdBytes);
-        statement.setDouble(2, balance);
+        statement.setDouble(2, 0.0);
+        statement.setString(3, player.getName());
+        statement.setLong(4, System.currentTimeMillis());
         statement.executeUpdate();
       }
 
+      replicas.markWritten(playerId);
+
       TrialEconomy.logger.info("Created account for player '" + player.getName() + "'.");
     }
 
-    return new PlayerAccount(player, balance);
+    if (trace != null) trace.finish(playerId, 1);
+    return new PlayerAccount(player, balances);
   }
 
   /**
@@ -177,31 +785,75 @@ class Database {
    * @throws SQLException Thrown if an exception occurs while performing MySQL transactions.
    */
   void save(@NotNull PlayerAccount account) throws SQLException {
+    synchronized (connLock) {
+      save(conn, account);
+    }
+  }
+
+  /**
+   * Saves an account.
+   *
+   * @param conn The connection to the primary to use.
+   * @param account The account to save.
+   * @throws NullPointerException Thrown if the connection or account is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL transactions.
+   */
+  void save(@NotNull Connection conn, @NotNull PlayerAccount account) throws SQLException {
 
     if (!account.isDirty()) return;
 
+    // Counted before the balances are copied, so changes landing during the save stay dirty.
+    long changes = account.getChanges();
+
+    Diagnostics.AccountSave trace = Diagnostics.accountSave();
+
     UUID playerId = account.getPlayerId();
     String playerName = account.getPlayerName();
-    byte[] playerIdBytes = toBytes(playerId);
+    byte[] playerIdBytes = UuidCodec.toBytes(playerId);
 
-    String sql = "UPDATE " + TABLE_ACCOUNTS + " SET balance=? WHERE player_id = ?;";
-
-    try (PreparedStatement statement = conn.prepareStatement(sql)) {
-      statement.setDouble(1, account.getBalance());
-      statement.setBytes(2, playerIdBytes);
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected == 0) {
-        throw new SQLException("Account does not exist for player: " + playerName);
-      }
+    int rowsAffected = update(conn, account, playerIdBytes, trace);
+    if (rowsAffected == 0 && relocate(conn, playerId, playerIdBytes)) {
+      rowsAffected = update(conn, account, playerIdBytes, trace);
+    }
+    if (rowsAffected == 0) {
+      throw new SQLException("Account does not exist for player: " + playerName);
     }
 
-    account.setDirty(false);
+    account.markSaved(changes);
+    replicas.markWritten(playerId);
+    if (trace != null) trace.finish(playerId, rowsAffected);
 
     TrialEconomy.logger.info("Saved account for player: " + playerName);
   }
 
   /**
-   * Gets an account for a player.
+   * Writes every currency of an account in one statement.
+   *
+   * @return The amount of rows updated. Zero if the account isn't in its partition.
+   */
+  private int update(
+      @NotNull Connection conn,
+      @NotNull PlayerAccount account,
+      @NotNull byte[] playerIdBytes,
+      @Nullable Diagnostics.Operation trace)
+      throws SQLException {
+
+    String sql = getSql(partitions.getTable(account.getPlayerId())).update();
+    if (trace != null) trace.sql = sql;
+
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+      double[] balances = account.copyBalances();
+      int parameter = 1;
+      for (double balance : balances) statement.setDouble(parameter++, balance);
+      statement.setString(parameter++, account.getPlayerName());
+      statement.setLong(parameter++, System.currentTimeMillis());
+      statement.setBytes(parameter, playerIdBytes);
+      return statement.executeUpdate();
+    }
+  }
+
+  /**
+   * Gets an account for a player from the primary so it is safe to modify and save.
    *
    * @param player The player associated with the account.
    * @return The account. If one doesn't exist for the player, null is returned.
@@ -210,52 +862,419 @@ class Database {
    */
   @Nullable
   PlayerAccount getAccount(@NotNull OfflinePlayer player) throws SQLException {
+    synchronized (connLock) {
+      return getAccount(conn, player);
+    }
+  }
 
-    PlayerAccount account = null;
+  /**
+   * Gets an account for a player.
+   *
+   * @param conn The connection to the primary to use.
+   * @param player The player associated with the account.
+   * @return The account. If one doesn't exist for the player, null is returned.
+   * @throws NullPointerException Thrown if the connection or player is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  PlayerAccount getAccount(@NotNull Connection conn, @NotNull OfflinePlayer player)
+      throws SQLException {
+    Diagnostics.AccountLoad trace = Diagnostics.accountLoad();
+    UUID playerId = player.getUniqueId();
+    double[] balances = locate(conn, playerId, UuidCodec.toBytes(playerId), trace);
+    if (balances == null) return null;
+    if (trace != null) trace.finish(playerId, 1);
+    return new PlayerAccount(player, balances);
+  }
 
-    String sql = "SELECT * FROM " + TABLE_ACCOUNTS + " WHERE player_id = ?;";
+  /**
+   * Reads the balance of an account. Routed to a read replica when one is available, so the
+   * balance may trail the primary by up to the configured replication lag.
+   *
+   * @param playerId The player ID of the account.
+   * @return The balance. If the account doesn't exist, null is returned.
+   * @throws NullPointerException Thrown if the playerId is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  Double getBalance(@NotNull UUID playerId) throws SQLException {
+    return getBalance(playerId, false);
+  }
 
-    UUID playerId = player.getUniqueId();
-    byte[] playerIdBytes = toBytes(playerId);
+  /**
+   * Reads the balance of an account.
+   *
+   * @param playerId The player ID of the account.
+   * @param primary If true, the balance is read from the primary. Otherwise, the read is routed to
+   *     a read replica when one is available.
+   * @return The balance. If the account doesn't exist, null is returned.
+   * @throws NullPointerException Thrown if the playerId is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  Double getBalance(@NotNull UUID playerId, boolean primary) throws SQLException {
+    return getBalance(playerId, currencies.getPrimary(), primary);
+  }
 
-    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+  /**
+   * Reads the balance of one currency of an account.
+   *
+   * @param playerId The player ID of the account.
+   * @param currency The currency to read.
+   * @param primary If true, the balance is read from the primary. Otherwise, the read is routed to
+   *     a read replica when one is available.
+   * @return The balance. If the account doesn't exist, null is returned.
+   * @throws NullPointerException Thrown if the playerId or currency is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  Double getBalance(@NotNull UUID playerId, @NotNull Currency currency, boolean primary)
+      throws SQLException {
+    double[] balances = getBalances(playerId, primary);
+    return balances != null ? balances[currency.getIndex()] : null;
+  }
 
-      statement.setBytes(1, playerIdBytes);
+  /**
+   * Reads the balance of every currency of an account from the primary, moving it to its partition
+   * if it isn't there yet.
+   *
+   * @param conn The connection to the primary to use.
+   * @param playerId The player ID of the account.
+   * @return The balance of every currency, by index. If the account doesn't exist, null is
+   *     returned.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  double[] getBalances(@NotNull Connection conn, @NotNull UUID playerId) throws SQLException {
+    Diagnostics.AccountLoad trace = Diagnostics.accountLoad();
+    double[] balances = locate(conn, playerId, UuidCodec.toBytes(playerId), trace);
+    if (trace != null) trace.finish(playerId, balances != null ? 1 : 0);
+    return balances;
+  }
 
-      ResultSet resultSet = statement.executeQuery();
+  /**
+   * Reads the balance of every currency of an account in one query.
+   *
+   * @param playerId The player ID of the account.
+   * @param primary If true, the balances are read from the primary. Otherwise, the read is routed
+   *     to a read replica when one is available.
+   * @return The balance of every currency, by index. If the account doesn't exist, null is
+   *     returned.
+   * @throws NullPointerException Thrown if the playerId is null.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @Nullable
+  double[] getBalances(@NotNull UUID playerId, boolean primary) throws SQLException {
+
+    byte[] playerIdBytes = UuidCodec.toBytes(playerId);
+    AccountPartitions partitions = this.partitions;
+    String table = partitions.getTable(playerId);
+    String previous = partitions.getPreviousTable(playerId);
+
+    // Replicas are read-only, so accounts not yet moved are read where they are.
+    Query<double[]> query =
+        connection -> {
+          double[] balances = selectBalances(connection, table, playerIdBytes, null);
+          if (balances == null && previous != null) {
+            balances = selectBalances(connection, previous, playerIdBytes, null);
+          }
+          return balances;
+        };
+
+    if (!primary) return read(playerId, query);
+    synchronized (connLock) {
+      return query.run(conn);
+    }
+  }
 
-      if (resultSet.next()) {
-        account = new PlayerAccount(player, resultSet.getDouble(2));
+  /**
+   * Reads a page of the accounts with primary balances in a range, richest first. Each page seeks
+   * the balance index from the last account of the previous page, so deep pages cost the same as
+   * the first. Partitions are merged in one query. Routed to a read replica when one is available.
+   *
+   * <p>Accounts can also be skipped past the seek, so a page far from any read costs one query
+   * rather than one per page between. Skipped accounts are still counted by the database.
+   *
+   * @param min The lowest balance to include.
+   * @param max The highest balance to include.
+   * @param after (Optional) The last account of the previous page. Null for the first page.
+   * @param skip The amount of accounts to skip after the seek.
+   * @param limit The most accounts to read.
+   * @return The accounts, richest first, ranked from after the skipped accounts.
+   * @throws IllegalArgumentException Thrown if the skip or limit is negative.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @NotNull
+  List<LeaderboardEntry> getAccountsInRange(
+      double min, double max, @Nullable LeaderboardEntry after, long skip, int limit)
+      throws SQLException {
+
+    if (limit < 0) throw new IllegalArgumentException("The limit cannot be negative.");
+    if (skip < 0) throw new IllegalArgumentException("The skip cannot be negative.");
+
+    List<String> tables = partitions.getTables();
+
+    StringBuilder sql = new StringBuilder();
+    for (String table : tables) {
+      if (sql.length() != 0) sql.append(" UNION ALL ");
+      sql.append("(SELECT player_id, player_name, balance FROM ")
+          .append(table)
+          .append(" WHERE balance >= ? AND balance <= ?");
+      if (after != null) {
+        sql.append(" AND (balance < ? OR (balance = ? AND player_id < ?))");
       }
+      // Each partition may hold every skipped account, so none are skipped until merged.
+      sql.append(" ORDER BY balance DESC, player_id DESC LIMIT ?");
+      sql.append(tables.size() == 1 ? " OFFSET ?)" : ")");
+    }
+    if (tables.size() != 1) sql.append(" ORDER BY balance DESC, player_id DESC LIMIT ? OFFSET ?");
+
+    byte[] afterIdBytes = after != null ? UuidCodec.toBytes(after.getPlayerId()) : null;
+    int firstRank = (int) ((after != null ? after.getRank() + 1 : 1) + skip);
+
+    return read(
+        null,
+        connection -> {
+          List<LeaderboardEntry> entries = new ArrayList<>(limit);
+          try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+
+            int parameter = 1;
+            for (int index = 0; index < tables.size(); index++) {
+              statement.setDouble(parameter++, min);
+              statement.setDouble(parameter++, max);
+              if (after != null) {
+                statement.setDouble(parameter++, after.getBalance());
+                statement.setDouble(parameter++, after.getBalance());
+                statement.setBytes(parameter++, afterIdBytes);
+              }
+              if (tables.size() == 1) {
+                statement.setInt(parameter++, limit);
+                statement.setLong(parameter++, skip);
+              } else {
+                statement.setLong(parameter++, skip + limit);
+              }
+            }
+            if (tables.size() != 1) {
+              statement.setInt(parameter++, limit);
+              statement.setLong(parameter, skip);
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+              while (resultSet.next()) {
+                entries.add(
+                    new LeaderboardEntry(
+                        firstRank + entries.size(),
+                        UuidCodec.toUUID(resultSet.getBytes(1)),
+                        resultSet.getString(2),
+                        resultSet.getDouble(3)));
+              }
+            }
+          }
+          return entries;
+        });
+  }
 
-      resultSet.close();
+  /**
+   * Reads a page of player IDs in stored order, starting after the last ID of the previous page.
+   * Each partition seeks its primary key, so deep pages cost the same as the first. Partitions are
+   * merged in one query. Routed to a read replica when one is available.
+   *
+   * @param after (Optional) The last player ID of the previous page. Null for the first page.
+   * @param limit The most IDs to read.
+   * @return The player IDs, in the order of their stored bytes compared unsigned.
+   * @throws IllegalArgumentException Thrown if the limit is negative.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @NotNull
+  List<UUID> getAccountIds(@Nullable UUID after, int limit) throws SQLException {
+
+    if (limit < 0) throw new IllegalArgumentException("The limit cannot be negative.");
+
+    List<String> tables = partitions.getTables();
+
+    StringBuilder sql = new StringBuilder();
+    for (String table : tables) {
+      if (sql.length() != 0) sql.append(" UNION ALL ");
+      sql.append("(SELECT player_id FROM ").append(table);
+      if (after != null) sql.append(" WHERE player_id > ?");
+      sql.append(" ORDER BY player_id LIMIT ?)");
     }
+    if (tables.size() != 1) sql.append(" ORDER BY player_id LIMIT ?");
+
+    byte[] afterIdBytes = after != null ? UuidCodec.toBytes(after) : null;
+
+    return read(
+        null,
+        connection -> {
+          List<UUID> ids = new ArrayList<>(limit);
+          try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+
+            int parameter = 1;
+            for (int index = 0; index < tables.size(); index++) {
+              if (after != null) statement.setBytes(parameter++, afterIdBytes);
+              statement.setInt(parameter++, limit);
+            }
+            if (tables.size() != 1) statement.setInt(parameter, limit);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+              UUID previous = null;
+              while (resultSet.next()) {
+                UUID playerId = UuidCodec.toUUID(resultSet.getBytes(1));
+                // An account being moved between partitions may be read from both.
+                if (!playerId.equals(previous)) ids.add(playerId);
+                previous = playerId;
+              }
+            }
+          }
+          return ids;
+        });
+  }
 
-    return account;
+  /**
+   * Reads the latest update time of any account. Each partition answers from its updated_at index
+   * without scanning rows. Routed to a read replica when one is available.
+   *
+   * @return The latest update time, in epoch milliseconds. If there are no accounts, zero is
+   *     returned.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  long getLatestUpdate() throws SQLException {
+
+    List<String> tables = partitions.getTables();
+
+    return read(
+        null,
+        connection -> {
+          long latest = 0;
+          try (Statement statement = connection.createStatement()) {
+            for (String table : tables) {
+              try (ResultSet resultSet =
+                  statement.executeQuery("SELECT MAX(updated_at) FROM " + table + ";")) {
+                if (resultSet.next()) latest = Math.max(latest, resultSet.getLong(1));
+              }
+            }
+          }
+          return latest;
+        });
   }
 
   /**
+   * Routed to a read replica when one is available.
+   *
    * @param playerId The player ID to test.
    * @return Returns true if the account exists on the remote MySQL database.
    * @throws NullPointerException Thrown if the playerId is null.
    * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
    */
   boolean hasAccount(@NotNull UUID playerId) throws SQLException {
+    return getBalance(playerId) != null;
+  }
 
-    boolean found;
-    byte[] playerIdBytes = toBytes(playerId);
+  /**
+   * <b>AccountVisitor</b> receives accounts streamed from the database.
+   *
+   * @author Jab
+   */
+  @FunctionalInterface
+  interface AccountVisitor {
 
-    String sql = "SELECT COUNT(*) from " + TABLE_ACCOUNTS + " WHERE player_id=?;";
+    /**
+     * @param playerId The player ID of the account.
+     * @param playerName The last known name of the player. Null for accounts not saved since names
+     *     were stored.
+     * @param balances The balance of every currency of the account, by index.
+     * @param updatedAt The time the account was last written, in epoch milliseconds.
+     */
+    void visit(
+        @NotNull UUID playerId,
+        @Nullable String playerName,
+        @NotNull double[] balances,
+        long updatedAt);
+  }
 
-    try (PreparedStatement statement = conn.prepareStatement(sql)) {
-      statement.setBytes(1, playerIdBytes);
-      ResultSet resultSet = statement.executeQuery();
-      resultSet.next();
-      found = resultSet.getInt(1) == 1;
-      resultSet.close();
+  /**
+   * The SQL of an account table's hot paths.
+   *
+   * @param selectBalances Reads every currency of an account.
+   * @param insert Creates an account with a zero balance.
+   * @param update Writes every currency and the name of an account.
+   */
+  private record AccountSql(
+      @NotNull String selectBalances, @NotNull String insert, @NotNull String update) {}
+
+  /** An account read by a partition scan. */
+  private record AccountRow(
+      @NotNull UUID playerId,
+      @Nullable String playerName,
+      @NotNull double[] balances,
+      long updatedAt) {}
+
+  /**
+   * <b>PartitionScan</b> reads one partition on its own connection, handing accounts to the
+   * visiting thread in chunks.
+   *
+   * @author Jab
+   */
+  private class PartitionScan implements Callable<Long>, AccountVisitor {
+
+    /** Queued once the partition is read, whether or not it succeeded. */
+    static final List<AccountRow> END = new ArrayList<>();
+
+    private final String table;
+    private final long updatedSince;
+    private final BlockingQueue<List<AccountRow>> queue;
+    private List<AccountRow> rows = new ArrayList<>(SCAN_CHUNK_SIZE);
+
+    PartitionScan(
+        @NotNull String table, long updatedSince, @NotNull BlockingQueue<List<AccountRow>> queue) {
+      this.table = table;
+      this.updatedSince = updatedSince;
+      this.queue = queue;
+    }
+
+    @Override
+    public Long call() throws SQLException, InterruptedException {
+      try (Connection conn = openReadConnection()) {
+        long latest = forEachAccount(conn, table, updatedSince, this);
+        if (!rows.isEmpty()) queue.put(rows);
+        return latest;
+      } finally {
+        queue.put(END);
+      }
     }
 
-    return found;
+    @Override
+    public void visit(
+        @NotNull UUID playerId,
+        @Nullable String playerName,
+        @NotNull double[] balances,
+        long updatedAt) {
+      rows.add(new AccountRow(playerId, playerName, balances, updatedAt));
+      if (rows.size() < SCAN_CHUNK_SIZE) return;
+      try {
+        queue.put(rows);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException("The partition scan was cancelled.");
+      }
+      rows = new ArrayList<>(SCAN_CHUNK_SIZE);
+    }
+  }
+
+  /**
+   * <b>Query</b> is a read-only JDBC operation that can run on the primary or a replica.
+   *
+   * @author Jab
+   */
+  @FunctionalInterface
+  interface Query<T> {
+
+    /**
+     * @param conn The connection to query.
+     * @return The result of the query.
+     * @throws SQLException Thrown if the query fails.
+     */
+    T run(@NotNull Connection conn) throws SQLException;
   }
 
   /**
@@ -283,6 +1302,12 @@ class Database {
     /** The compiled JDBC URL to connect to both connection instances and pooled API. */
     @Getter private final String jdbcUrl;
 
+    /** The read replicas of the service. Empty if every query goes to this service. */
+    @Getter private final List<Credentials> replicas;
+
+    /** The staleness policy for reads routed to the replicas. */
+    @Getter private final ReplicaRouter.Policy replicaPolicy;
+
     Credentials(@NotNull ConfigurationSection cfg) {
 
       this.host = getString(cfg, "host");
@@ -293,7 +1318,93 @@ class Database {
 
       if (port == 0) throw new YAMLException("The field 'port' is zero.");
 
-      this.jdbcUrl = "jdbc:mysql://" + host + ":" + port + "/" + database;
+      this.jdbcUrl = toJdbcUrl(host, port, database);
+      this.replicas = getReplicas(cfg);
+      this.replicaPolicy = ReplicaRouter.Policy.load(cfg.getConfigurationSection("replica-policy"));
+    }
+
+    /**
+     * Creates credentials for a replica. Fields it doesn't set are inherited from the primary.
+     *
+     * @param primary The credentials of the primary.
+     * @param cfg The replica's entry in the 'replicas' list.
+     * @throws YAMLException Thrown if the host is missing or the port is invalid.
+     */
+    private Credentials(@NotNull Credentials primary, @NotNull Map<?, ?> cfg) {
+
+      Object host = cfg.get("host");
+      if (!(host instanceof String) || ((String) host).isEmpty()) {
+        throw new YAMLException("A replica in 'replicas' has no 'host'.");
+      }
+
+      Object port = cfg.containsKey("port") ? cfg.get("port") : primary.port;
+      if (!(port instanceof Integer) || (int) port < 1 || (int) port > 65535) {
+        throw new YAMLException("The replica '" + host + "' has an invalid port. (" + port + ")");
+      }
+
+      this.host = (String) host;
+      this.port = (int) port;
+      this.username = getString(cfg, "username", primary.username);
+      this.password = getString(cfg, "password", primary.password);
+      this.database = getString(cfg, "database", primary.database);
+      this.jdbcUrl = toJdbcUrl(this.host, this.port, this.database);
+      this.replicas = Collections.emptyList();
+      this.replicaPolicy = primary.replicaPolicy;
+    }
+
+    /**
+     * Creates credentials for a pre-compiled JDBC URL. (E.G: An embedded database for benchmarks)
+     *
+     * @param jdbcUrl The JDBC URL to connect to.
+     * @param username The username of the database account.
+     * @param password The password for authenticating with the service.
+     * @throws NullPointerException Thrown if the jdbcUrl, username, or password are null.
+     */
+    Credentials(@NotNull String jdbcUrl, @NotNull String username, @NotNull String password) {
+      this.host = "";
+      this.port = 0;
+      this.database = "";
+      this.jdbcUrl = jdbcUrl;
+      this.username = username;
+      this.password = password;
+      this.replicas = Collections.emptyList();
+      this.replicaPolicy = ReplicaRouter.Policy.load(null);
+    }
+
+    /**
+     * Batched statements are rewritten into multi-row statements, so bulk writes take one round
+     * trip per batch instead of one per row. Statements are prepared on the server and cached by
+     * the driver per connection, keyed by their SQL, so closing and preparing a hot path's
+     * statement again doesn't cost a prepare round trip.
+     *
+     * @return The JDBC URL of a MySQL database.
+     */
+    @NotNull
+    private static String toJdbcUrl(@NotNull String host, int port, @NotNull String database) {
+      return "jdbc:mysql://"
+          + host
+          + ":"
+          + port
+          + "/"
+          + database
+          + "?rewriteBatchedStatements=true"
+          + "&useServerPrepStmts=true"
+          + "&cachePrepStmts=true"
+          + "&prepStmtCacheSize=256"
+          + "&prepStmtCacheSqlLimit=2048";
+    }
+
+    @NotNull
+    private List<Credentials> getReplicas(@NotNull ConfigurationSection cfg) {
+
+      if (!cfg.contains("replicas")) return Collections.emptyList();
+      if (!cfg.isList("replicas")) {
+        throw new YAMLException("The field 'replicas' is not a list.");
+      }
+
+      List<Credentials> replicas = new ArrayList<>();
+      for (Map<?, ?> entry : cfg.getMapList("replicas")) replicas.add(new Credentials(this, entry));
+      return Collections.unmodifiableList(replicas);
     }
 
     /**
@@ -323,6 +1434,19 @@ class Database {
       return value;
     }
 
+    /**
+     * @param cfg The map storing the field.
+     * @param field The field storing the value.
+     * @param fallback The value to use if the field isn't set.
+     * @return The string form of the value, or the fallback.
+     */
+    @NotNull
+    private static String getString(
+        @NotNull Map<?, ?> cfg, @NotNull String field, @NotNull String fallback) {
+      Object value = cfg.get(field);
+      return value != null ? value.toString() : fallback;
+    }
+
     private static int getUnsignedShort(@NotNull ConfigurationSection cfg, @NotNull String field) {
 
       if (field.isEmpty()) throw new IllegalArgumentException("The field is empty.");
@@ -0,0 +1,297 @@
+package com.asledgehammer.trialeconomy;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>Diagnostics</b> makes economy operations visible to Java Flight Recorder, so lag spikes in a
+ * recording can be traced to account loads & saves, batch writes, cache misses and commands. The
+ * events are listed under 'TrialEconomy'. Operations are only traced while a recording enables
+ * their event or slow operations are logged, so otherwise they cost a null check.
+ *
+ * <p>Operations slower than the configured threshold are also logged with their SQL and timing,
+ * whether or not a recording is running.
+ *
+ * @author Jab
+ */
+final class Diagnostics {
+
+  /** Operations at least this slow are logged, in nanoseconds. Zero if none are. */
+  private static volatile long slowThresholdNanos = 0;
+
+  private static final EventType ACCOUNT_LOAD = EventType.getEventType(AccountLoad.class);
+  private static final EventType ACCOUNT_SAVE = EventType.getEventType(AccountSave.class);
+  private static final EventType BATCH_FLUSH = EventType.getEventType(BatchFlush.class);
+  private static final EventType CACHE_MISS = EventType.getEventType(CacheMiss.class);
+  private static final EventType COMMAND = EventType.getEventType(Command.class);
+
+  private Diagnostics() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @param millis Operations at least this slow are logged, in milliseconds. Zero logs none.
+   * @throws IllegalArgumentException Thrown if the threshold is negative.
+   */
+  static void setSlowThreshold(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException(
+          "The threshold cannot be negative. (" + millis + " given)");
+    }
+    slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  /**
+   * @return A trace of an account load, or null if it wouldn't be recorded.
+   */
+  @Nullable
+  static AccountLoad accountLoad() {
+    return isTraced(ACCOUNT_LOAD) ? new AccountLoad() : null;
+  }
+
+  /**
+   * @return A trace of an account save, or null if it wouldn't be recorded.
+   */
+  @Nullable
+  static AccountSave accountSave() {
+    return isTraced(ACCOUNT_SAVE) ? new AccountSave() : null;
+  }
+
+  /**
+   * @param target What the batch is written for.
+   * @return A trace of a batch flush, or null if it wouldn't be recorded.
+   */
+  @Nullable
+  static BatchFlush batchFlush(@NotNull String target) {
+    return isTraced(BATCH_FLUSH) ? new BatchFlush(target) : null;
+  }
+
+  /**
+   * @param lookup The lookup that missed.
+   * @return A trace of a cache miss, or null if it wouldn't be recorded.
+   */
+  @Nullable
+  static CacheMiss cacheMiss(@NotNull String lookup) {
+    return isTraced(CACHE_MISS) ? new CacheMiss(lookup) : null;
+  }
+
+  /**
+   * @param subCommand The sub-command run.
+   * @param sender The name of the sender.
+   * @return A trace of a command, or null if it wouldn't be recorded.
+   */
+  @Nullable
+  static Command command(@NotNull String subCommand, @NotNull String sender) {
+    return isTraced(COMMAND) ? new Command(subCommand, sender) : null;
+  }
+
+  /**
+   * @param type The event type of an operation.
+   * @return Returns true if a recording enables the event or slow operations are logged.
+   */
+  private static boolean isTraced(@NotNull EventType type) {
+    return slowThresholdNanos != 0 || type.isEnabled();
+  }
+
+  /**
+   * Logs an operation as one line of 'key=value' fields, so slow operations can be grepped and
+   * parsed from the server log.
+   */
+  private static void logSlow(@NotNull Operation operation, long nanos) {
+
+    StringBuilder record =
+        new StringBuilder("Slow operation: type=")
+            .append(operation.getClass().getSimpleName())
+            .append(" millis=")
+            .append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0))
+            .append(" thread=\"")
+            .append(Thread.currentThread().getName())
+            .append('"');
+
+    if (operation.playerId != null) record.append(" player=").append(operation.playerId);
+    record.append(" rows=").append(operation.rows);
+    operation.appendFields(record);
+    if (operation.sql != null) record.append(" sql=\"").append(operation.sql).append('"');
+
+    TrialEconomy.logger.warning(record.toString());
+  }
+
+  /**
+   * <b>Operation</b> is a timed economy operation. Get one from its factory as the operation
+   * starts, then call {@link Operation#finish(UUID, int)} once it succeeds. Operations that fail
+   * aren't recorded. Factories return null while nothing would record the operation.
+   *
+   * @author Jab
+   */
+  @Category("TrialEconomy")
+  abstract static class Operation extends Event {
+
+    @Label("Player ID")
+    @Nullable
+    String playerId;
+
+    @Label("Rows")
+    @Description("The amount of rows read, written or batched.")
+    int rows;
+
+    @Label("SQL")
+    @Description("The last statement run by the operation.")
+    @Nullable
+    String sql;
+
+    /** When the operation started, if slow operations are logged. */
+    private final transient long start;
+
+    private Operation() {
+      start = slowThresholdNanos != 0 ? System.nanoTime() : 0;
+      begin();
+    }
+
+    /**
+     * Commits the event if a recording enables it, and logs the operation if it was slow.
+     *
+     * @param playerId (Optional) The player ID of the account operated on.
+     * @param rows The amount of rows read, written or batched.
+     */
+    void finish(@Nullable UUID playerId, int rows) {
+
+      end();
+
+      long threshold = slowThresholdNanos;
+      boolean commit = shouldCommit();
+      long nanos = start != 0 ? System.nanoTime() - start : 0;
+      boolean slow = threshold != 0 && start != 0 && nanos >= threshold;
+
+      if (!commit && !slow) return;
+
+      this.playerId = playerId != null ? playerId.toString() : null;
+      this.rows = rows;
+
+      if (commit) commit();
+      if (slow) logSlow(this, nanos);
+    }
+
+    /** Appends the fields of the operation's type to its slow operation record. */
+    void appendFields(@NotNull StringBuilder record) {}
+  }
+
+  /**
+   * Reading an account from the database, creating it if asked to and missing.
+   *
+   * @author Jab
+   */
+  @Name("com.asledgehammer.trialeconomy.AccountLoad")
+  @Label("Account Load")
+  static class AccountLoad extends Operation {
+
+    private AccountLoad() {}
+
+    @Label("Created")
+    boolean created;
+
+    @Override
+    void appendFields(@NotNull StringBuilder record) {
+      record.append(" created=").append(created);
+    }
+  }
+
+  /**
+   * Writing an account's balances to the database.
+   *
+   * @author Jab
+   */
+  @Name("com.asledgehammer.trialeconomy.AccountSave")
+  @Label("Account Save")
+  static class AccountSave extends Operation {
+
+    private AccountSave() {}
+  }
+
+  /**
+   * Writing a batch of changes in one transaction. (E.G: A mailbox drain or history flush)
+   *
+   * @author Jab
+   */
+  @Name("com.asledgehammer.trialeconomy.BatchFlush")
+  @Label("Batch Flush")
+  static class BatchFlush extends Operation {
+
+    @Label("Target")
+    @Description("What the batch was written for. (mailbox or history)")
+    @NotNull
+    final String target;
+
+    /** @param target What the batch is written for. */
+    private BatchFlush(@NotNull String target) {
+      this.target = target;
+    }
+
+    @Override
+    void appendFields(@NotNull StringBuilder record) {
+      record.append(" target=").append(target);
+    }
+  }
+
+  /**
+   * Reading an account that isn't loaded, so the read went to the database.
+   *
+   * @author Jab
+   */
+  @Name("com.asledgehammer.trialeconomy.CacheMiss")
+  @Label("Account Cache Miss")
+  static class CacheMiss extends Operation {
+
+    @Label("Lookup")
+    @Description("The lookup that missed. (E.G: getBalance)")
+    @NotNull
+    final String lookup;
+
+    /** @param lookup The lookup that missed. */
+    private CacheMiss(@NotNull String lookup) {
+      this.lookup = lookup;
+    }
+
+    @Override
+    void appendFields(@NotNull StringBuilder record) {
+      record.append(" lookup=").append(lookup);
+    }
+  }
+
+  /**
+   * Running a '/balance' sub-command on the main thread. Work the sub-command hands off to other
+   * threads is recorded by its own events.
+   *
+   * @author Jab
+   */
+  @Name("com.asledgehammer.trialeconomy.Command")
+  @Label("Balance Command")
+  static class Command extends Operation {
+
+    @Label("Sub-command")
+    @NotNull
+    final String subCommand;
+
+    @Label("Sender")
+    @NotNull
+    final String sender;
+
+    /**
+     * @param subCommand The sub-command run.
+     * @param sender The name of the sender.
+     */
+    private Command(@NotNull String subCommand, @NotNull String sender) {
+      this.subCommand = subCommand;
+      this.sender = sender;
+    }
+
+    @Override
+    void appendFields(@NotNull StringBuilder record) {
+      record.append(" command=").append(subCommand).append(" sender=\"").append(sender).append('"');
+    }
+  }
+}
@@ -6,29 +6,49 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * <b>Dialog</b> is a simple solution for grabbing text, injecting values and coloring for dialog
  * use in TrialEconomy.
  *
+ * <p>Dialog is immutable. Text is colored and split around its '%id%' placeholders once when
+ * loaded, so injecting values is a single pass without regular expressions.
+ *
  * @author Jab
  */
 class Dialog {
 
-  private final Map<String, String> dialog = new HashMap<>();
+  private final Map<String, Template> dialog;
 
   /**
    * @param cfg The cfg section storing dialog text fields.
    * @throws NullPointerException Thrown if the cfg is null.
    */
   Dialog(@NotNull ConfigurationSection cfg) {
+    this(cfg, null);
+  }
+
+  /**
+   * @param cfg The cfg section storing dialog text fields.
+   * @param fallback (Optional) The dialog to use for fields the cfg doesn't define.
+   * @throws NullPointerException Thrown if the cfg is null.
+   */
+  Dialog(@NotNull ConfigurationSection cfg, @Nullable Dialog fallback) {
+
+    Map<String, Template> dialog = new HashMap<>();
+    if (fallback != null) dialog.putAll(fallback.dialog);
+
     for (String key : cfg.getKeys(false)) {
       if (cfg.isString(key)) {
-        dialog.put(key, color(cfg.getString(key)));
+        dialog.put(key, Template.compile(color(cfg.getString(key))));
       }
     }
+
+    this.dialog = Map.copyOf(dialog);
   }
 
   /**
@@ -60,14 +80,106 @@ class Dialog {
       throw new NullPointerException("The dialog for the id '" + id + "' doesn't exist.");
     }
 
-    String dialog = this.dialog.get(id);
-    if (args.length != 0) {
-      for (Arg arg : args) {
-        dialog = dialog.replaceAll("%" + arg.getId() + "%", arg.getValue());
+    return this.dialog.get(id).render(args);
+  }
+
+  /**
+   * <b>Template</b> is dialog text split around its placeholders.
+   *
+   * @author Jab
+   */
+  private static class Template {
+
+    /** Literal text at even indices and placeholder IDs at odd indices. */
+    private final String[] segments;
+
+    /** The length of the literal text. */
+    private final int length;
+
+    private Template(@NotNull String[] segments, int length) {
+      this.segments = segments;
+      this.length = length;
+    }
+
+    /**
+     * @param text The colored text.
+     * @return The text split around placeholders. A placeholder is '%' followed by letters, digits
+     *     or underscores, then '%'. Any other '%' is literal.
+     */
+    @NotNull
+    static Template compile(@NotNull String text) {
+
+      List<String> segments = new ArrayList<>();
+      StringBuilder literal = new StringBuilder();
+      int length = 0;
+      int index = 0;
+
+      while (index < text.length()) {
+
+        char c = text.charAt(index);
+        int end = c == '%' ? findPlaceholderEnd(text, index + 1) : -1;
+
+        if (end == -1) {
+          literal.append(c);
+          index++;
+          continue;
+        }
+
+        length += literal.length();
+        segments.add(literal.toString());
+        segments.add(text.substring(index + 1, end));
+        literal.setLength(0);
+        index = end + 1;
       }
+
+      length += literal.length();
+      segments.add(literal.toString());
+      return new Template(segments.toArray(new String[0]), length);
     }
 
-    return dialog;
+    /** @return The index of the closing '%', or -1 if the text at start isn't a placeholder. */
+    private static int findPlaceholderEnd(@NotNull String text, int start) {
+      for (int index = start; index < text.length(); index++) {
+        char c = text.charAt(index);
+        if (c == '%') return index == start ? -1 : index;
+        if (!Character.isLetterOrDigit(c) && c != '_') return -1;
+      }
+      return -1;
+    }
+
+    /**
+     * @param args The values to inject. Placeholders without a value are kept as-is.
+     * @return The rendered text.
+     */
+    @NotNull
+    String render(@NotNull Arg[] args) {
+
+      if (segments.length == 1) return segments[0];
+
+      StringBuilder builder = new StringBuilder(length + 16 * args.length);
+
+      for (int index = 0; index < segments.length; index++) {
+
+        String segment = segments[index];
+        if ((index & 1) == 0) {
+          builder.append(segment);
+          continue;
+        }
+
+        Arg arg = null;
+        for (Arg candidate : args) {
+          if (candidate.getId().equals(segment)) {
+            arg = candidate;
+            break;
+          }
+        }
+
+        if (arg != null) builder.append(arg.getValue());
+        else builder.append('%').append(segment).append('%');
+      }
+
+      return builder.toString();
+    }
   }
 
   /**
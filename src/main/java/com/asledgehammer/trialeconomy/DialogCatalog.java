@@ -0,0 +1,114 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <b>DialogCatalog</b> is a snapshot of every locale's dialog. Every locale file is loaded when the
+ * catalog is built, so looking up dialog never reads a file, and only locales with a file are kept.
+ * Each player's dialog is cached until they quit or change their locale.
+ *
+ * <p>Reloading builds a new catalog off the main thread and swaps it in whole, so readers always
+ * see one consistent snapshot.
+ *
+ * @author Jab
+ */
+class DialogCatalog {
+
+  /** The locale used when a player's locale has no file. */
+  static final String DEFAULT_LOCALE = "en";
+
+  /** The name of a locale file, capturing its locale. */
+  private static final Pattern FILE_NAME = Pattern.compile("trial_economy_([a-z0-9_]+)\\.yml");
+
+  /** The folder storing the locale files. (trial_economy_[locale].yml) */
+  private final File folder;
+
+  /** The dialog of the default locale. */
+  @Getter private final Dialog defaultDialog;
+
+  /** The dialog of each locale with a file, by lower-case tag. (E.G: en_us) Never changes. */
+  private final Map<String, Dialog> locales;
+
+  /** The dialog of each player seen so far. */
+  private final Map<UUID, Dialog> players = new ConcurrentHashMap<>();
+
+  /**
+   * Loads every locale file. Blocking; run off the main thread once the server is running.
+   *
+   * @param folder The folder storing the locale files.
+   * @param bundled (Optional) The dialog shipped with the plugin, used for fields missing from the
+   *     default locale's file.
+   * @throws NullPointerException Thrown if the folder is null.
+   */
+  DialogCatalog(@NotNull File folder, @Nullable Dialog bundled) {
+    this.folder = folder;
+    this.defaultDialog = new Dialog(load(DEFAULT_LOCALE), bundled);
+
+    Map<String, Dialog> locales = new HashMap<>();
+    locales.put(DEFAULT_LOCALE, defaultDialog);
+
+    String[] names = folder.list();
+    if (names != null) {
+      for (String name : names) {
+        Matcher matcher = FILE_NAME.matcher(name);
+        if (!matcher.matches() || matcher.group(1).equals(DEFAULT_LOCALE)) continue;
+        locales.put(matcher.group(1), new Dialog(load(matcher.group(1)), defaultDialog));
+      }
+    }
+
+    this.locales = Collections.unmodifiableMap(locales);
+  }
+
+  /**
+   * @param player The player to read dialog for.
+   * @return The dialog of the player's client locale.
+   */
+  @NotNull
+  Dialog get(@NotNull Player player) {
+    return players.computeIfAbsent(player.getUniqueId(), playerId -> get(player.locale()));
+  }
+
+  /**
+   * @param locale (Optional) The locale. (E.G: en_US)
+   * @return The dialog of the locale, else of its language, else of the default locale. Fields
+   *     missing from a locale's file use the default locale's text.
+   */
+  @NotNull
+  Dialog get(@Nullable Locale locale) {
+
+    if (locale == null) return defaultDialog;
+
+    Dialog dialog = locales.get(locale.toString().toLowerCase(Locale.ROOT));
+    if (dialog == null) dialog = locales.get(locale.getLanguage().toLowerCase(Locale.ROOT));
+    return dialog != null ? dialog : defaultDialog;
+  }
+
+  /**
+   * Drops a player's cached dialog. (E.G: When they quit or change their locale)
+   *
+   * @param playerId The player ID.
+   */
+  void forget(@NotNull UUID playerId) {
+    players.remove(playerId);
+  }
+
+  @NotNull
+  private YamlConfiguration load(@NotNull String locale) {
+    return YamlConfiguration.loadConfiguration(getFile(locale));
+  }
+
+  @NotNull
+  private File getFile(@NotNull String locale) {
+    return new File(folder, "trial_economy_" + locale + ".yml");
+  }
+}
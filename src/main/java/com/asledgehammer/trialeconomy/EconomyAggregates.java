@@ -0,0 +1,149 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>EconomyAggregates</b> maintains economy-wide totals incrementally as balances change, so the
+ * money supply, account count and distribution never need a table scan.
+ *
+ * @author Jab
+ */
+class EconomyAggregates {
+
+  /** The amount of hours transaction volume is summed over. */
+  static final int VOLUME_HOURS = 24;
+
+  /** The amount of accounts counted. */
+  private long accountCount = 0;
+
+  /** The sum of every balance. */
+  private double moneySupply = 0;
+
+  /** The rounding error lost from the sum so far. (Neumaier summation) */
+  private double moneySupplyError = 0;
+
+  /** The distribution of balances. */
+  private QuantileSketch sketch = new QuantileSketch();
+
+  /** The amount of accounts in each wealth bracket. */
+  private long[] histogram = new long[EconomyStats.HISTOGRAM_BRACKETS];
+
+  /** The hour each volume slot is summing, in hours since the epoch. */
+  private final long[] volumeHours = new long[VOLUME_HOURS];
+
+  /** The transaction volume of each hour slot. */
+  private final double[] volumes = new double[VOLUME_HOURS];
+
+  /** @param balance The balance of an account now counted. */
+  synchronized void add(double balance) {
+    accountCount++;
+    sum(balance);
+    sketch.add(balance);
+    histogram[EconomyStats.getBracket(balance)]++;
+  }
+
+  /**
+   * @param from The counted balance of an account.
+   * @param to The new balance of the account.
+   */
+  synchronized void move(double from, double to) {
+    sum(to - from);
+    sketch.remove(from);
+    sketch.add(to);
+    histogram[EconomyStats.getBracket(from)]--;
+    histogram[EconomyStats.getBracket(to)]++;
+  }
+
+  /**
+   * Replaces every counted balance with those of a freshly seeded set of aggregates. Transaction
+   * volume is kept.
+   *
+   * @param seeded The aggregates to copy the balances of.
+   */
+  synchronized void replaceBalances(@NotNull EconomyAggregates seeded) {
+    synchronized (seeded) {
+      accountCount = seeded.accountCount;
+      moneySupply = seeded.moneySupply;
+      moneySupplyError = seeded.moneySupplyError;
+      sketch = seeded.sketch.copy();
+      histogram = seeded.histogram.clone();
+    }
+  }
+
+  /** @param delta The amount a balance changed by on this server. */
+  synchronized void recordVolume(double delta) {
+
+    long hour = TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+    int slot = (int) (hour % VOLUME_HOURS);
+
+    if (volumeHours[slot] != hour) {
+      volumeHours[slot] = hour;
+      volumes[slot] = 0;
+    }
+
+    volumes[slot] += Math.abs(delta);
+  }
+
+  /**
+   * @param hours Receives the hour each volume slot is summing, in hours since the epoch.
+   * @param volumes Receives the transaction volume of each hour slot.
+   */
+  synchronized void copyVolumes(@NotNull long[] hours, @NotNull double[] volumes) {
+    System.arraycopy(volumeHours, 0, hours, 0, VOLUME_HOURS);
+    System.arraycopy(this.volumes, 0, volumes, 0, VOLUME_HOURS);
+  }
+
+  /**
+   * Adds transaction volume recorded before a restart. (See {@link
+   * EconomyAggregates#copyVolumes(long[], double[])})
+   *
+   * @param hours The hour each volume slot was summing, in hours since the epoch.
+   * @param volumes The transaction volume of each hour slot.
+   */
+  synchronized void addVolumes(@NotNull long[] hours, @NotNull double[] volumes) {
+    for (int slot = 0; slot < VOLUME_HOURS; slot++) {
+      if (hours[slot] == volumeHours[slot]) {
+        this.volumes[slot] += volumes[slot];
+      } else if (hours[slot] > volumeHours[slot]) {
+        volumeHours[slot] = hours[slot];
+        this.volumes[slot] = volumes[slot];
+      }
+    }
+  }
+
+  /** @return The amount of accounts counted. */
+  synchronized long getAccountCount() {
+    return accountCount;
+  }
+
+  /** @return The sum of every balance. */
+  synchronized double getMoneySupply() {
+    return moneySupply + moneySupplyError;
+  }
+
+  /** @return An immutable copy of the aggregates. */
+  @NotNull
+  synchronized EconomyStats snapshot() {
+
+    long hour = TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+    double volume = 0;
+    for (int slot = 0; slot < VOLUME_HOURS; slot++) {
+      if (hour - volumeHours[slot] < VOLUME_HOURS) volume += volumes[slot];
+    }
+
+    return new EconomyStats(
+        accountCount, getMoneySupply(), volume, histogram.clone(), sketch.copy());
+  }
+
+  private void sum(double value) {
+    double total = moneySupply + value;
+    if (Math.abs(moneySupply) >= Math.abs(value)) {
+      moneySupplyError += (moneySupply - total) + value;
+    } else {
+      moneySupplyError += (value - total) + moneySupply;
+    }
+    moneySupply = total;
+  }
+}
@@ -0,0 +1,237 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * <b>EconomyJob</b> is a recurring deposit or withdrawal applied to a set of accounts, such as
+ * payroll, rent or upkeep. Jobs are listed under 'jobs.rules' in the config.
+ *
+ * <p>Runs start at fixed times, every interval from the epoch plus an offset, so every server
+ * sharing the database agrees on when each run is due. Each run changes an account at most once:
+ * its changes carry a transaction ID unique to the run.
+ *
+ * @author Jab
+ */
+@Getter
+class EconomyJob {
+
+  /** The cause recorded in the history of every change made by a job. The actor is its name. */
+  static final String CAUSE = "job";
+
+  /** The most characters in a job name. */
+  static final int MAX_NAME_LENGTH = 32;
+
+  /** Job names are stored and part of transaction IDs, so they are kept to safe identifiers. */
+  private static final Pattern NAME = Pattern.compile("[a-z0-9_-]{1," + MAX_NAME_LENGTH + "}");
+
+  /** The name of the job, from its key in the config. */
+  private final String name;
+
+  /** What the job does to each account. */
+  private final Action action;
+
+  /** The currency the job changes. */
+  private final Currency currency;
+
+  /** The amount deposited or withdrawn per account. */
+  private final double amount;
+
+  /** The time between runs, in milliseconds. */
+  private final long intervalMillis;
+
+  /** The time after each interval boundary a run starts, in milliseconds. */
+  private final long offsetMillis;
+
+  /**
+   * If true, only accounts of online players are changed. Permissions are only known for online
+   * players, so jobs given a permission are always online-only.
+   */
+  private final boolean online;
+
+  /** (Optional) The permission a player needs for their account to be changed. */
+  @Nullable private final String permission;
+
+  /** Accounts with a balance below this aren't changed. */
+  private final double minBalance;
+
+  /** Accounts with a balance above this aren't changed. */
+  private final double maxBalance;
+
+  private EconomyJob(
+      @NotNull String name,
+      @NotNull Action action,
+      @NotNull Currency currency,
+      double amount,
+      long intervalMillis,
+      long offsetMillis,
+      boolean online,
+      @Nullable String permission,
+      double minBalance,
+      double maxBalance) {
+    this.name = name;
+    this.action = action;
+    this.currency = currency;
+    this.amount = amount;
+    this.intervalMillis = intervalMillis;
+    this.offsetMillis = offsetMillis;
+    this.online = online;
+    this.permission = permission;
+    this.minBalance = minBalance;
+    this.maxBalance = maxBalance;
+  }
+
+  /**
+   * @param cfg The section of job rules, keyed by job name.
+   * @param currencies The currencies jobs may change.
+   * @return Every job, in the order listed.
+   * @throws YAMLException Thrown if a job is invalid.
+   */
+  @NotNull
+  static List<EconomyJob> load(
+      @NotNull ConfigurationSection cfg, @NotNull CurrencyRegistry currencies) {
+
+    List<EconomyJob> jobs = new ArrayList<>();
+
+    for (String name : cfg.getKeys(false)) {
+
+      String path = "jobs.rules." + name;
+
+      if (!NAME.matcher(name).matches()) {
+        throw new YAMLException(
+            "The job '"
+                + name
+                + "' must be named with 1 to "
+                + MAX_NAME_LENGTH
+                + " lower-case letters, digits, underscores or dashes.");
+      } else if (!cfg.isConfigurationSection(name)) {
+        throw new YAMLException("The field '" + path + "' isn't a section.");
+      }
+
+      ConfigurationSection rule = Objects.requireNonNull(cfg.getConfigurationSection(name));
+
+      Action action;
+      try {
+        action = Action.valueOf(rule.getString("action", "").toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new YAMLException("The field '" + path + ".action' must be 'deposit' or 'withdraw'.");
+      }
+
+      Currency currency = currencies.getPrimary();
+      if (rule.contains("currency")) {
+        currency = currencies.get(rule.getString("currency", ""));
+        if (currency == null) {
+          throw new YAMLException(
+              "The field '" + path + ".currency' isn't a currency listed under 'currencies'.");
+        }
+      }
+
+      double amount = rule.getDouble("amount", -1);
+      if (!(amount > 0) || Double.isInfinite(amount)) {
+        throw new YAMLException("The field '" + path + ".amount' must be a positive number.");
+      }
+
+      long intervalMinutes = rule.getLong("interval-minutes", 0);
+      long offsetMinutes = rule.getLong("offset-minutes", 0);
+      if (intervalMinutes < 1) {
+        throw new YAMLException("The field '" + path + ".interval-minutes' must be at least 1.");
+      } else if (offsetMinutes < 0 || offsetMinutes >= intervalMinutes) {
+        throw new YAMLException(
+            "The field '" + path + ".offset-minutes' must be 0 to less than the interval.");
+      }
+
+      String accounts = rule.getString("accounts", "all").toLowerCase(Locale.ROOT);
+      if (!accounts.equals("all") && !accounts.equals("online")) {
+        throw new YAMLException("The field '" + path + ".accounts' must be 'all' or 'online'.");
+      }
+
+      String permission = rule.getString("permission");
+      if (permission != null && permission.isBlank()) permission = null;
+      if (permission != null && accounts.equals("all") && rule.contains("accounts")) {
+        throw new YAMLException(
+            "The job '"
+                + name
+                + "' gives a permission, so 'accounts' must be 'online'. Permissions are only"
+                + " known for online players.");
+      }
+
+      double minBalance = rule.getDouble("min-balance", 0);
+      double maxBalance = rule.getDouble("max-balance", Double.MAX_VALUE);
+      if (minBalance > maxBalance) {
+        throw new YAMLException(
+            "The field '" + path + ".min-balance' cannot be more than 'max-balance'.");
+      }
+
+      jobs.add(
+          new EconomyJob(
+              name,
+              action,
+              currency,
+              amount,
+              TimeUnit.MINUTES.toMillis(intervalMinutes),
+              TimeUnit.MINUTES.toMillis(offsetMinutes),
+              permission != null || accounts.equals("online"),
+              permission,
+              minBalance,
+              maxBalance));
+    }
+
+    return jobs;
+  }
+
+  /**
+   * @param now The current time, in epoch milliseconds.
+   * @return The start time of the latest run due at the time, in epoch milliseconds.
+   */
+  long getRunAt(long now) {
+    return Math.floorDiv(now - offsetMillis, intervalMillis) * intervalMillis + offsetMillis;
+  }
+
+  /**
+   * @param runAt The start time of a run, in epoch milliseconds.
+   * @return The transaction ID of the run's change to each account.
+   */
+  @NotNull
+  String getTransactionId(long runAt) {
+    return "job:" + name + ":" + runAt;
+  }
+
+  /**
+   * Changes an account for a run. Runs in the account's mailbox.
+   *
+   * @param account The account to change.
+   * @return Returns true if the account was changed. False if its balance is out of the job's range
+   *     or, for withdrawals, less than the amount.
+   */
+  boolean apply(@NotNull PlayerAccount account) {
+
+    double balance = account.getBalance(currency);
+    if (balance < minBalance || balance > maxBalance) return false;
+
+    if (action == Action.DEPOSIT) {
+      account.deposit(currency, amount, CAUSE, name);
+    } else {
+      if (!account.has(currency, amount)) return false;
+      account.withdraw(currency, amount, CAUSE, name);
+    }
+
+    return true;
+  }
+
+  /**
+   * <b>Action</b> is what a job does to each account.
+   *
+   * @author Jab
+   */
+  enum Action {
+    DEPOSIT,
+    WITHDRAW
+  }
+}
@@ -0,0 +1,541 @@
+package com.asledgehammer.trialeconomy;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>EconomyJobs</b> runs each {@link EconomyJob} when it is due.
+ *
+ * <p>A run works through its accounts in chunks, in the order of their stored player IDs. Chunks
+ * are read off the main thread. Players are resolved and permissions checked on the main thread,
+ * within a time budget per tick, and the changes are queued on the account mailboxes. Once every
+ * change of a chunk is saved, its last player ID is checkpointed in the job table, so a run stopped
+ * by a restart resumes after it. Changes carry the run's transaction ID, so repeating the chunk
+ * that was in flight never changes an account twice.
+ *
+ * <p>Servers sharing the database claim a run with a lease, renewed at every checkpoint, so each
+ * run is worked by one server at a time. A server releases its leases when it stops; the leases of
+ * a server that crashed expire.
+ *
+ * @author Jab
+ */
+class EconomyJobs {
+
+  /** The table of each job's latest run and checkpoint. */
+  static final String TABLE_JOBS = "trial_economy_jobs";
+
+  /** How long a claimed run is held without a checkpoint before another server may take it. */
+  static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /** Orders player IDs like the account tables' primary keys. */
+  private static final Comparator<UUID> STORED_ORDER =
+      Comparator.comparing(UuidCodec::toBytes, Arrays::compareUnsigned);
+
+  /** The database to read accounts and checkpoints with. */
+  private final Database database;
+
+  /** The mailboxes making the changes. */
+  private final AccountMailboxes mailboxes;
+
+  /** Every job, in the order listed. */
+  private final List<EconomyJob> jobs;
+
+  /** The most accounts read and checkpointed at a time. */
+  private final int chunkSize;
+
+  /** How long each tick may spend resolving players and queueing changes, in nanoseconds. */
+  private final long tickBudgetNanos;
+
+  /** Runs tasks on the main thread. */
+  private final Executor sync;
+
+  /** Runs tasks off the main thread. */
+  private final Executor async;
+
+  /** Identifies the runs claimed by this server. */
+  private final String owner = UUID.randomUUID().toString();
+
+  /** The runs in progress on this server, by job name. */
+  private final Map<String, Run> running = new ConcurrentHashMap<>();
+
+  /** Runs with a chunk waiting to be queued, oldest first. Main thread only. */
+  private final ArrayDeque<Run> submitting = new ArrayDeque<>();
+
+  /** Set once the plugin disables. Runs stop at their next step. */
+  private volatile boolean closed;
+
+  /**
+   * @param database The database to read accounts and checkpoints with.
+   * @param mailboxes The mailboxes making the changes.
+   * @param jobs Every job.
+   * @param chunkSize The most accounts read and checkpointed at a time.
+   * @param tickBudgetNanos How long each tick may spend queueing changes, in nanoseconds.
+   * @param sync Runs tasks on the main thread.
+   * @param async Runs tasks off the main thread.
+   * @throws IllegalArgumentException Thrown if the chunk size is less than 1.
+   */
+  EconomyJobs(
+      @NotNull Database database,
+      @NotNull AccountMailboxes mailboxes,
+      @NotNull List<EconomyJob> jobs,
+      int chunkSize,
+      long tickBudgetNanos,
+      @NotNull Executor sync,
+      @NotNull Executor async) {
+
+    if (chunkSize < 1) throw new IllegalArgumentException("The chunk size must be at least 1.");
+
+    this.database = database;
+    this.mailboxes = mailboxes;
+    this.jobs = List.copyOf(jobs);
+    this.chunkSize = chunkSize;
+    this.tickBudgetNanos = tickBudgetNanos;
+    this.sync = sync;
+    this.async = async;
+  }
+
+  /** @return Returns true if no jobs are configured. */
+  boolean isEmpty() {
+    return jobs.isEmpty();
+  }
+
+  /**
+   * Claims and starts every due run not already in progress. Blocking; run off the main thread.
+   *
+   * @throws SQLException Thrown if the job table cannot be read or written.
+   */
+  void check() throws SQLException {
+
+    if (closed) return;
+
+    try (Connection conn = database.openWriteConnection()) {
+      for (EconomyJob job : jobs) {
+        if (running.containsKey(job.getName())) continue;
+        Run run = claim(conn, job, System.currentTimeMillis());
+        if (run == null) continue;
+        running.put(job.getName(), run);
+        run.start();
+      }
+    }
+  }
+
+  /** Queues the changes of waiting chunks until the tick's budget is spent. Main thread only. */
+  void tick() {
+
+    if (submitting.isEmpty()) return;
+
+    long deadline = System.nanoTime() + tickBudgetNanos;
+    while (!submitting.isEmpty() && System.nanoTime() < deadline) {
+      if (submitting.peekFirst().submit(deadline)) submitting.pollFirst();
+    }
+  }
+
+  /**
+   * Stops every run and releases its lease, so the next start resumes it without waiting for the
+   * lease to expire. Changes already queued are saved by the mailboxes as they close.
+   */
+  void close() {
+
+    closed = true;
+    submitting.clear();
+
+    if (running.isEmpty()) return;
+
+    String sql =
+        "UPDATE " + TABLE_JOBS + " SET owner=NULL, lease_until=0 WHERE name = ? AND owner = ?;";
+
+    try (Connection conn = database.openWriteConnection();
+        PreparedStatement statement = conn.prepareStatement(sql)) {
+      for (String name : running.keySet()) {
+        statement.setString(1, name);
+        statement.setString(2, owner);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } catch (SQLException e) {
+      TrialEconomy.logger.warning(
+          "Failed to release economy jobs. They resume once their lease expires: "
+              + e.getMessage());
+    }
+
+    running.clear();
+  }
+
+  /**
+   * Claims a job's latest run if it isn't complete and no other server holds it. A run claimed
+   * again resumes from its checkpoint; a newer run starts over.
+   *
+   * @param conn The connection to the primary.
+   * @param job The job to claim.
+   * @param now The current time, in epoch milliseconds.
+   * @return The run. If the run is complete or held by another server, null is returned.
+   * @throws SQLException Thrown if the job table cannot be read or written.
+   */
+  @Nullable
+  private Run claim(@NotNull Connection conn, @NotNull EconomyJob job, long now)
+      throws SQLException {
+
+    long runAt = job.getRunAt(now);
+
+    // A new job waits for its next start rather than running as soon as it's added.
+    String insert =
+        "INSERT IGNORE INTO "
+            + TABLE_JOBS
+            + " (name, run_at, cursor_id, processed, applied, completed, owner, lease_until)"
+            + " VALUES (?,?,NULL,0,0,true,NULL,0);";
+
+    try (PreparedStatement statement = conn.prepareStatement(insert)) {
+      statement.setString(1, job.getName());
+      statement.setLong(2, runAt);
+      statement.executeUpdate();
+    }
+
+    // MySQL assigns left to right, seeing earlier assignments, so run_at is assigned last.
+    String update =
+        "UPDATE "
+            + TABLE_JOBS
+            + " SET cursor_id=CASE WHEN run_at = ? THEN cursor_id ELSE NULL END,"
+            + " processed=CASE WHEN run_at = ? THEN processed ELSE 0 END,"
+            + " applied=CASE WHEN run_at = ? THEN applied ELSE 0 END,"
+            + " completed=false, owner=?, lease_until=?, run_at=?"
+            + " WHERE name = ? AND (run_at < ? OR (run_at = ? AND NOT completed))"
+            + " AND (owner IS NULL OR owner = ? OR lease_until < ?);";
+
+    try (PreparedStatement statement = conn.prepareStatement(update)) {
+      statement.setLong(1, runAt);
+      statement.setLong(2, runAt);
+      statement.setLong(3, runAt);
+      statement.setString(4, owner);
+      statement.setLong(5, now + LEASE_MILLIS);
+      statement.setLong(6, runAt);
+      statement.setString(7, job.getName());
+      statement.setLong(8, runAt);
+      statement.setLong(9, runAt);
+      statement.setString(10, owner);
+      statement.setLong(11, now);
+      if (statement.executeUpdate() != 1) return null;
+    }
+
+    String select =
+        "SELECT cursor_id, processed, applied FROM " + TABLE_JOBS + " WHERE name = ?;";
+
+    try (PreparedStatement statement = conn.prepareStatement(select)) {
+      statement.setString(1, job.getName());
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) return null;
+        byte[] cursor = resultSet.getBytes(1);
+        return new Run(
+            job,
+            runAt,
+            cursor != null ? UuidCodec.toUUID(cursor) : null,
+            resultSet.getLong(2),
+            resultSet.getLong(3));
+      }
+    }
+  }
+
+  /**
+   * A run of a job claimed by this server. Steps alternate between threads but never overlap: a
+   * chunk is read, queued, then checkpointed before the next is read.
+   */
+  private final class Run {
+
+    private final EconomyJob job;
+
+    /** The start time of the run, in epoch milliseconds. */
+    private final long runAt;
+
+    /** The transaction ID of the run's change to each account. */
+    private final String transactionId;
+
+    /** The start of the run on this server, from {@link System#nanoTime()}. */
+    private final long started = System.nanoTime();
+
+    /** The last player ID checkpointed. Null before the first chunk. */
+    @Nullable private volatile UUID cursor;
+
+    /** The amount of accounts examined. */
+    private volatile long processed;
+
+    /** The amount of accounts changed. */
+    private volatile long applied;
+
+    /** The online players at the start of an online-only run, in stored order. */
+    private List<UUID> online;
+
+    /** The index of the next online player to read. */
+    private int onlinePosition;
+
+    /** The accounts of the current chunk. */
+    private volatile List<UUID> chunk;
+
+    /** The index of the next account of the chunk to queue. Main thread only. */
+    private int index;
+
+    /** The changes queued for the chunk. */
+    private volatile List<CompletableFuture<TransactionResult>> pending;
+
+    private Run(
+        @NotNull EconomyJob job,
+        long runAt,
+        @Nullable UUID cursor,
+        long processed,
+        long applied) {
+      this.job = job;
+      this.runAt = runAt;
+      this.transactionId = job.getTransactionId(runAt);
+      this.cursor = cursor;
+      this.processed = processed;
+      this.applied = applied;
+    }
+
+    private void start() {
+
+      TrialEconomy.logger.info(
+          "Running the economy job '"
+              + job.getName()
+              + "'"
+              + (cursor != null ? " from its checkpoint. (" + processed + " accounts done)" : "."));
+
+      if (!job.isOnline()) {
+        async.execute(this::next);
+        return;
+      }
+
+      sync.execute(
+          () -> {
+            List<UUID> players = new ArrayList<>();
+            for (Player player : Bukkit.getOnlinePlayers()) players.add(player.getUniqueId());
+            players.sort(STORED_ORDER);
+
+            UUID after = cursor;
+            if (after != null) {
+              while (onlinePosition < players.size()
+                  && STORED_ORDER.compare(players.get(onlinePosition), after) <= 0) {
+                onlinePosition++;
+              }
+            }
+
+            online = players;
+            async.execute(this::next);
+          });
+    }
+
+    /** Reads the next chunk, or completes the run if there is none. Off the main thread. */
+    private void next() {
+
+      if (closed) return;
+
+      List<UUID> ids;
+      try {
+        ids = job.isOnline() ? nextOnline() : database.getAccountIds(cursor, chunkSize);
+      } catch (SQLException e) {
+        stop(e);
+        return;
+      }
+
+      if (ids.isEmpty()) {
+        complete();
+        return;
+      }
+
+      chunk = ids;
+      pending = new ArrayList<>(ids.size());
+      sync.execute(
+          () -> {
+            index = 0;
+            if (!closed) submitting.addLast(this);
+          });
+    }
+
+    @NotNull
+    private List<UUID> nextOnline() {
+      int end = Math.min(onlinePosition + chunkSize, online.size());
+      List<UUID> ids = List.copyOf(online.subList(onlinePosition, end));
+      onlinePosition = end;
+      return ids;
+    }
+
+    /**
+     * Queues the changes of the chunk until the deadline. Main thread only.
+     *
+     * @param deadline The end of the tick's budget, from {@link System#nanoTime()}.
+     * @return Returns true once every change of the chunk is queued.
+     */
+    private boolean submit(long deadline) {
+
+      String permission = job.getPermission();
+
+      while (index < chunk.size()) {
+
+        UUID playerId = chunk.get(index++);
+
+        OfflinePlayer player;
+        if (job.isOnline()) {
+          Player onlinePlayer = Bukkit.getPlayer(playerId);
+          if (onlinePlayer == null) continue;
+          if (permission != null && !onlinePlayer.hasPermission(permission)) continue;
+          player = onlinePlayer;
+        } else {
+          player = Bukkit.getOfflinePlayer(playerId);
+        }
+
+        pending.add(
+            mailboxes.transactIfPresent(player, job.getCurrency(), transactionId, job::apply));
+
+        if (index < chunk.size() && System.nanoTime() >= deadline) return false;
+      }
+
+      CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+          .whenComplete(
+              (ignored, e) -> {
+                if (!closed) async.execute(this::checkpoint);
+              });
+      return true;
+    }
+
+    /** Records the chunk once its changes are saved, then reads the next. Off the main thread. */
+    private void checkpoint() {
+
+      if (closed) return;
+
+      long changed = 0;
+      for (CompletableFuture<TransactionResult> future : pending) {
+        TransactionResult result;
+        try {
+          result = future.join();
+        } catch (CompletionException e) {
+          stop(e.getCause());
+          return;
+        }
+        // Null if the player has no account. (E.G: They joined and it isn't created yet)
+        if (result != null && result.isApplied()) changed++;
+      }
+
+      cursor = chunk.get(chunk.size() - 1);
+      processed += chunk.size();
+      applied += changed;
+
+      try {
+        if (!save(false)) {
+          lost();
+          return;
+        }
+      } catch (SQLException e) {
+        stop(e);
+        return;
+      }
+
+      next();
+    }
+
+    private void complete() {
+
+      try {
+        if (!save(true)) {
+          lost();
+          return;
+        }
+      } catch (SQLException e) {
+        stop(e);
+        return;
+      }
+
+      running.remove(job.getName());
+      TrialEconomy.logger.info(
+          "Finished the economy job '"
+              + job.getName()
+              + "': "
+              + applied
+              + " of "
+              + processed
+              + " accounts changed in "
+              + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+              + " ms.");
+    }
+
+    /**
+     * Checkpoints the run and renews its lease.
+     *
+     * @param completed If true, the run is recorded as complete and its lease released.
+     * @return Returns true if this server still held the run.
+     * @throws SQLException Thrown if the job table cannot be written.
+     */
+    private boolean save(boolean completed) throws SQLException {
+
+      String sql =
+          "UPDATE "
+              + TABLE_JOBS
+              + " SET cursor_id=?, processed=?, applied=?, completed=?, owner=?, lease_until=?"
+              + " WHERE name = ? AND owner = ? AND run_at = ?;";
+
+      UUID cursor = this.cursor;
+
+      try (Connection conn = database.openWriteConnection();
+          PreparedStatement statement = conn.prepareStatement(sql)) {
+        statement.setBytes(1, cursor != null ? UuidCodec.toBytes(cursor) : null);
+        statement.setLong(2, processed);
+        statement.setLong(3, applied);
+        statement.setBoolean(4, completed);
+        statement.setString(5, completed ? null : owner);
+        statement.setLong(6, completed ? 0 : System.currentTimeMillis() + LEASE_MILLIS);
+        statement.setString(7, job.getName());
+        statement.setString(8, owner);
+        statement.setLong(9, runAt);
+        return statement.executeUpdate() == 1;
+      }
+    }
+
+    /** Abandons the run after another server took it over. */
+    private void lost() {
+      running.remove(job.getName());
+      TrialEconomy.logger.warning(
+          "The economy job '" + job.getName() + "' was taken over by another server.");
+    }
+
+    /**
+     * Stops the run at its last checkpoint. The next check claims it again and resumes.
+     *
+     * @param cause What stopped the run.
+     */
+    private void stop(@NotNull Throwable cause) {
+
+      TrialEconomy.logger.warning(
+          "The economy job '"
+              + job.getName()
+              + "' stopped after "
+              + processed
+              + " accounts and will resume: "
+              + cause.getMessage());
+
+      String sql =
+          "UPDATE " + TABLE_JOBS + " SET owner=NULL, lease_until=0 WHERE name = ? AND owner = ?;";
+
+      try (Connection conn = database.openWriteConnection();
+          PreparedStatement statement = conn.prepareStatement(sql)) {
+        statement.setString(1, job.getName());
+        statement.setString(2, owner);
+        statement.executeUpdate();
+      } catch (SQLException e) {
+        // The lease expires instead.
+      }
+
+      // Released first, so the next check can't claim the run before the release lands.
+      running.remove(job.getName());
+    }
+  }
+}
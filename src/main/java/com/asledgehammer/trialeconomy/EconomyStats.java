@@ -0,0 +1,178 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <b>EconomyStats</b> is an immutable snapshot of economy-wide aggregates.
+ *
+ * <p>Snapshots from servers tracking separate sets of accounts can be combined with {@link
+ * EconomyStats#merge(EconomyStats)}, exchanged as bytes with {@link EconomyStats#toBytes()}.
+ *
+ * @author Jab
+ */
+public class EconomyStats {
+
+  /** The amount of wealth brackets: 0, under 1, then one per power of 10 up to 1T and over. */
+  public static final int HISTOGRAM_BRACKETS = 15;
+
+  private static final byte FORMAT_VERSION = 1;
+
+  /** The amount of accounts. */
+  @Getter private final long accountCount;
+
+  /** The sum of every balance. */
+  @Getter private final double moneySupply;
+
+  /** The amount moved in and out of accounts on this server over the last 24 hours. */
+  @Getter private final double volume;
+
+  /** The amount of accounts in each wealth bracket. */
+  private final long[] histogram;
+
+  /** The distribution of balances. */
+  private final QuantileSketch sketch;
+
+  EconomyStats(
+      long accountCount,
+      double moneySupply,
+      double volume,
+      @NotNull long[] histogram,
+      @NotNull QuantileSketch sketch) {
+    this.accountCount = accountCount;
+    this.moneySupply = moneySupply;
+    this.volume = volume;
+    this.histogram = histogram;
+    this.sketch = sketch;
+  }
+
+  /**
+   * @param balance A balance.
+   * @return The wealth bracket of the balance.
+   */
+  public static int getBracket(double balance) {
+    if (balance <= 0) return 0;
+    if (balance < 1) return 1;
+    return Math.min(2 + (int) Math.log10(balance), HISTOGRAM_BRACKETS - 1);
+  }
+
+  /**
+   * @param bracket The wealth bracket.
+   * @return The smallest balance in the bracket.
+   * @throws IndexOutOfBoundsException Thrown if the bracket doesn't exist.
+   */
+  public static double getBracketMinimum(int bracket) {
+    if (bracket < 0 || bracket >= HISTOGRAM_BRACKETS) {
+      throw new IndexOutOfBoundsException("No wealth bracket: " + bracket);
+    }
+    return bracket < 2 ? 0 : Math.pow(10, bracket - 2);
+  }
+
+  /**
+   * @param bracket The wealth bracket. (See {@link EconomyStats#getBracket(double)})
+   * @return The amount of accounts in the bracket.
+   * @throws IndexOutOfBoundsException Thrown if the bracket doesn't exist.
+   */
+  public long getBracketCount(int bracket) {
+    return histogram[bracket];
+  }
+
+  /** @return The mean balance. If there are no accounts, 0 is returned. */
+  public double getMean() {
+    return accountCount == 0 ? 0 : moneySupply / accountCount;
+  }
+
+  /** @return The estimated median balance, within 1%. */
+  public double getMedian() {
+    return sketch.getQuantile(0.5);
+  }
+
+  /**
+   * @param percentile The percentile, from 0 to 100.
+   * @return The estimated balance at the percentile, within 1%.
+   * @throws IllegalArgumentException Thrown if the percentile is outside of 0 to 100.
+   */
+  public double getPercentile(double percentile) {
+    return sketch.getQuantile(percentile / 100.0);
+  }
+
+  /**
+   * @return The 24 hour volume as a fraction of the money supply. (How many times the money supply
+   *     changed hands) If the money supply is 0, 0 is returned.
+   */
+  public double getVelocity() {
+    return moneySupply == 0 ? 0 : volume / moneySupply;
+  }
+
+  /**
+   * @param other The stats of a server tracking a separate set of accounts.
+   * @return The combined stats.
+   */
+  @NotNull
+  public EconomyStats merge(@NotNull EconomyStats other) {
+
+    long[] mergedHistogram = histogram.clone();
+    for (int bracket = 0; bracket < HISTOGRAM_BRACKETS; bracket++) {
+      mergedHistogram[bracket] += other.histogram[bracket];
+    }
+
+    QuantileSketch mergedSketch = sketch.copy();
+    mergedSketch.merge(other.sketch);
+
+    return new EconomyStats(
+        accountCount + other.accountCount,
+        moneySupply + other.moneySupply,
+        volume + other.volume,
+        mergedHistogram,
+        mergedSketch);
+  }
+
+  /** @return The stats as bytes. (See {@link EconomyStats#fromBytes(byte[])}) */
+  @NotNull
+  public byte[] toBytes() {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(1 + 24 + HISTOGRAM_BRACKETS * 8 + sketch.getSerializedSize());
+    buffer.put(FORMAT_VERSION);
+    buffer.putLong(accountCount);
+    buffer.putDouble(moneySupply);
+    buffer.putDouble(volume);
+    for (long count : histogram) buffer.putLong(count);
+    sketch.writeTo(buffer);
+    return buffer.array();
+  }
+
+  /**
+   * @param bytes Stats written by {@link EconomyStats#toBytes()}.
+   * @return The stats.
+   * @throws IllegalArgumentException Thrown if the bytes are malformed or from a newer version.
+   */
+  @NotNull
+  public static EconomyStats fromBytes(@NotNull byte[] bytes) {
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    try {
+      byte version = buffer.get();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unsupported stats version: " + version);
+      }
+
+      long accountCount = buffer.getLong();
+      double moneySupply = buffer.getDouble();
+      double volume = buffer.getDouble();
+      long[] histogram = new long[HISTOGRAM_BRACKETS];
+      for (int bracket = 0; bracket < HISTOGRAM_BRACKETS; bracket++) {
+        histogram[bracket] = buffer.getLong();
+      }
+
+      return new EconomyStats(
+          accountCount, moneySupply, volume, histogram, QuantileSketch.readFrom(buffer));
+
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("The stats are truncated.");
+    }
+  }
+}
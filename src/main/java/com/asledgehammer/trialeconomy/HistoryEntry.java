@@ -0,0 +1,59 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * <b>HistoryEntry</b> is a single recorded change to an account's balance.
+ *
+ * @author Jab
+ */
+@Getter
+public class HistoryEntry {
+
+  /** The ID of the entry. Increases in the order entries are recorded. */
+  private final long id;
+
+  /** The player ID of the account. */
+  private final UUID playerId;
+
+  /** (Optional) The name of the currency that changed. Null for the primary currency. */
+  @Nullable private final String currency;
+
+  /** The amount the balance changed by. Negative for withdrawals. */
+  private final double delta;
+
+  /** The balance after the change. */
+  private final double balance;
+
+  /** What the change was for. (E.G: "command", "api") */
+  private final String cause;
+
+  /** (Optional) Who made the change. (E.G: A player or plugin name) */
+  @Nullable private final String actor;
+
+  /** The time of the change, in epoch milliseconds. */
+  private final long createdAt;
+
+  HistoryEntry(
+      long id,
+      @NotNull UUID playerId,
+      @Nullable String currency,
+      double delta,
+      double balance,
+      @NotNull String cause,
+      @Nullable String actor,
+      long createdAt) {
+    this.id = id;
+    this.playerId = playerId;
+    this.currency = currency;
+    this.delta = delta;
+    this.balance = balance;
+    this.cause = cause;
+    this.actor = actor;
+    this.createdAt = createdAt;
+  }
+}
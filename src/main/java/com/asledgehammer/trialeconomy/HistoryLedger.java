@@ -0,0 +1,354 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <b>HistoryLedger</b> records every change to account balances in the history table.
+ *
+ * <p>Changes are buffered in memory when they happen and written in batches off the main thread,
+ * so recording adds no database round trips to the mutation itself.
+ *
+ * @author Jab
+ */
+class HistoryLedger {
+
+  /** The most characters stored for a cause. */
+  static final int MAX_CAUSE_LENGTH = 32;
+
+  /** The most characters stored for an actor. */
+  static final int MAX_ACTOR_LENGTH = 64;
+
+  /** The amount of entries inserted per batch & transaction. */
+  static final int BATCH_SIZE = 500;
+
+  /** The most entries buffered while the database is unreachable. Older entries are dropped. */
+  static final int MAX_PENDING = 100_000;
+
+  /** The amount of entries deleted per statement when pruning. */
+  static final int PRUNE_CHUNK_SIZE = 5_000;
+
+  /** The database to write to. */
+  private final Database database;
+
+  /** How long entries are kept, in milliseconds. Zero keeps entries forever. */
+  private final long retentionMillis;
+
+  /** Entries waiting to be written, oldest first. */
+  private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+  /** Serializes flushes and guards the write connection. */
+  private final Object flushLock = new Object();
+
+  /** The dedicated connection for batched inserts. */
+  private Connection conn;
+
+  /** The amount of entries dropped since the last warning. */
+  private long dropped = 0;
+
+  /**
+   * @param database The database to write to.
+   * @param retentionMillis How long entries are kept, in milliseconds. Zero keeps entries forever.
+   * @throws NullPointerException Thrown if the database is null.
+   */
+  HistoryLedger(@NotNull Database database, long retentionMillis) {
+    this.database = database;
+    this.retentionMillis = retentionMillis;
+  }
+
+  /**
+   * @param cause The cause to test.
+   * @param actor (Optional) The actor to test.
+   * @throws IllegalArgumentException Thrown if the cause is empty or either is too long to store.
+   */
+  static void validate(@NotNull String cause, @Nullable String actor) {
+    if (cause.isEmpty() || cause.length() > MAX_CAUSE_LENGTH) {
+      throw new IllegalArgumentException(
+          "The cause must be 1 to " + MAX_CAUSE_LENGTH + " characters. (" + cause + " given)");
+    } else if (actor != null && actor.length() > MAX_ACTOR_LENGTH) {
+      throw new IllegalArgumentException(
+          "The actor cannot be longer than " + MAX_ACTOR_LENGTH + " characters. (" + actor + ")");
+    }
+  }
+
+  /**
+   * Buffers a change to be written by the next flush.
+   *
+   * @param playerId The player ID of the account.
+   * @param currency The currency that changed.
+   * @param delta The amount the balance changed by.
+   * @param balance The balance after the change.
+   * @param cause What the change was for.
+   * @param actor (Optional) Who made the change.
+   */
+  void record(
+      @NotNull UUID playerId,
+      @NotNull Currency currency,
+      double delta,
+      double balance,
+      @NotNull String cause,
+      @Nullable String actor) {
+
+    // The primary currency is stored as null, as it was before currencies were added.
+    String currencyName = currency.isPrimary() ? null : currency.getName();
+    Pending entry =
+        new Pending(
+            playerId, currencyName, delta, balance, cause, actor, System.currentTimeMillis());
+
+    synchronized (pending) {
+      if (pending.size() >= MAX_PENDING) {
+        pending.pollFirst();
+        dropped++;
+      }
+      pending.addLast(entry);
+    }
+  }
+
+  /**
+   * Writes every buffered entry in batches. If a batch fails, it is kept for the next flush.
+   * Blocking; run off the main thread.
+   *
+   * @return The amount of entries written.
+   * @throws SQLException Thrown if a batch fails. Batches written before it stay written.
+   */
+  int flush() throws SQLException {
+
+    long droppedNow;
+    synchronized (pending) {
+      droppedNow = dropped;
+      dropped = 0;
+    }
+
+    if (droppedNow != 0) {
+      TrialEconomy.logger.warning(
+          "Dropped " + droppedNow + " history entries while the database was unreachable.");
+    }
+
+    String sql =
+        "INSERT INTO "
+            + Database.TABLE_HISTORY
+            + " (player_id, currency, delta, balance, cause, actor, created_at)"
+            + " VALUES (?,?,?,?,?,?,?);";
+
+    synchronized (flushLock) {
+
+      int total = 0;
+      List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+
+      while (true) {
+
+        synchronized (pending) {
+          while (batch.size() < BATCH_SIZE && !pending.isEmpty()) batch.add(pending.pollFirst());
+        }
+
+        if (batch.isEmpty()) return total;
+
+        Diagnostics.BatchFlush trace = Diagnostics.batchFlush("history");
+        if (trace != null) trace.sql = sql;
+
+        try {
+          if (conn == null || conn.isClosed()) {
+            conn = database.openWriteConnection();
+            conn.setAutoCommit(false);
+          }
+
+          try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            for (Pending entry : batch) {
+              statement.setBytes(1, UuidCodec.toBytes(entry.playerId));
+              statement.setString(2, entry.currency);
+              statement.setDouble(3, entry.delta);
+              statement.setDouble(4, entry.balance);
+              statement.setString(5, entry.cause);
+              statement.setString(6, entry.actor);
+              statement.setLong(7, entry.createdAt);
+              statement.addBatch();
+            }
+            statement.executeBatch();
+          }
+          conn.commit();
+
+        } catch (SQLException e) {
+          requeue(batch);
+          closeConnection();
+          throw e;
+        }
+
+        if (trace != null) trace.finish(null, batch.size());
+        total += batch.size();
+        if (batch.size() < BATCH_SIZE) return total;
+        batch.clear();
+      }
+    }
+  }
+
+  /** Puts a failed batch back at the front of the buffer, keeping its order. */
+  private void requeue(@NotNull List<Pending> batch) {
+    synchronized (pending) {
+      for (int index = batch.size() - 1; index >= 0; index--) {
+        if (pending.size() >= MAX_PENDING) {
+          dropped++;
+          continue;
+        }
+        pending.addFirst(batch.get(index));
+      }
+    }
+  }
+
+  /**
+   * Deletes entries older than the retention period, one bounded chunk per statement so the table
+   * is never locked for long. Blocking; run off the main thread.
+   *
+   * @return The amount of entries deleted.
+   * @throws SQLException Thrown if a chunk fails. Chunks deleted before it stay deleted.
+   */
+  long prune() throws SQLException {
+
+    if (retentionMillis <= 0) return 0;
+
+    long cutoff = System.currentTimeMillis() - retentionMillis;
+    String sql = "DELETE FROM " + Database.TABLE_HISTORY + " WHERE created_at < ? LIMIT ?;";
+
+    long total = 0;
+
+    try (Connection conn = database.openWriteConnection();
+        PreparedStatement statement = conn.prepareStatement(sql)) {
+
+      statement.setLong(1, cutoff);
+      statement.setInt(2, PRUNE_CHUNK_SIZE);
+
+      int rows;
+      do {
+        rows = statement.executeUpdate();
+        total += rows;
+      } while (rows == PRUNE_CHUNK_SIZE);
+    }
+
+    return total;
+  }
+
+  /**
+   * Reads a page of an account's history, newest first. Pages are found by seeking the (account,
+   * time) index past the last entry of the previous page, so deep pages cost the same as the
+   * first. Entries can also be skipped past the seek, so a page far from any read costs one query
+   * rather than one per page between. Routed to a read replica when one is available.
+   *
+   * <p><b>NOTE:</b> Entries recorded since the last flush aren't included.
+   *
+   * @param playerId The player ID of the account.
+   * @param after (Optional) The last entry of the previous page. If null, the newest page is read.
+   * @param skip The amount of entries to skip after the seek.
+   * @param limit The most entries to read.
+   * @return The entries, newest first.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @NotNull
+  List<HistoryEntry> getPage(
+      @NotNull UUID playerId, @Nullable HistoryEntry after, long skip, int limit)
+      throws SQLException {
+
+    if (limit < 0) throw new IllegalArgumentException("The limit cannot be negative.");
+    if (skip < 0) throw new IllegalArgumentException("The skip cannot be negative.");
+
+    String sql =
+        "SELECT id, currency, delta, balance, cause, actor, created_at FROM "
+            + Database.TABLE_HISTORY
+            + " WHERE player_id = ? AND (created_at < ? OR (created_at = ? AND id < ?))"
+            + " ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?;";
+
+    byte[] playerIdBytes = UuidCodec.toBytes(playerId);
+    long createdAt = after != null ? after.getCreatedAt() : Long.MAX_VALUE;
+    long id = after != null ? after.getId() : Long.MAX_VALUE;
+
+    return database.read(
+        playerId,
+        connection -> {
+          List<HistoryEntry> entries = new ArrayList<>(limit);
+          try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setBytes(1, playerIdBytes);
+            statement.setLong(2, createdAt);
+            statement.setLong(3, createdAt);
+            statement.setLong(4, id);
+            statement.setInt(5, limit);
+            statement.setLong(6, skip);
+            try (ResultSet resultSet = statement.executeQuery()) {
+              while (resultSet.next()) {
+                entries.add(
+                    new HistoryEntry(
+                        resultSet.getLong(1),
+                        playerId,
+                        resultSet.getString(2),
+                        resultSet.getDouble(3),
+                        resultSet.getDouble(4),
+                        resultSet.getString(5),
+                        resultSet.getString(6),
+                        resultSet.getLong(7)));
+              }
+            }
+          }
+          return entries;
+        });
+  }
+
+  /**
+   * Writes every buffered entry and closes the write connection.
+   *
+   * @throws SQLException Thrown if the final flush fails.
+   */
+  void close() throws SQLException {
+    try {
+      flush();
+    } finally {
+      synchronized (flushLock) {
+        closeConnection();
+      }
+    }
+  }
+
+  private void closeConnection() {
+    if (conn == null) return;
+    try {
+      conn.close();
+    } catch (SQLException ignored) {
+      // The connection is being discarded.
+    }
+    conn = null;
+  }
+
+  /** A change waiting to be written. */
+  private static class Pending {
+
+    final UUID playerId;
+    final String currency;
+    final double delta;
+    final double balance;
+    final String cause;
+    final String actor;
+    final long createdAt;
+
+    Pending(
+        @NotNull UUID playerId,
+        @Nullable String currency,
+        double delta,
+        double balance,
+        @NotNull String cause,
+        @Nullable String actor,
+        long createdAt) {
+      this.playerId = playerId;
+      this.currency = currency;
+      this.delta = delta;
+      this.balance = balance;
+      this.cause = cause;
+      this.actor = actor;
+      this.createdAt = createdAt;
+    }
+  }
+}
@@ -0,0 +1,472 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * <b>Leaderboard</b> keeps every known account ordered by balance in an order-statistic treap, so
+ * updates, rank lookups and page reads are O(log n) instead of a sorted table scan.
+ *
+ * <p>The leaderboard is seeded once from the database and then updated on every balance change.
+ * Changes made by other servers are picked up by periodic reconciliation. Economy-wide aggregates
+ * are maintained alongside, since every change to a ranked balance passes through here.
+ *
+ * @author Jab
+ */
+class Leaderboard {
+
+  /** The nodes of every ranked account. */
+  private Map<UUID, Node> nodes = new HashMap<>();
+
+  /** The root of the treap. Ordered by balance descending, then player ID. */
+  private Node root;
+
+  /** Node priorities. Only used under the leaderboard's lock. */
+  private final SplittableRandom random = new SplittableRandom();
+
+  /** The economy-wide aggregates of every ranked balance. */
+  @Getter private final EconomyAggregates aggregates = new EconomyAggregates();
+
+  /** If true, the leaderboard has been seeded from the database. */
+  @Getter private volatile boolean ready = false;
+
+  /** The latest update time read from the database, in epoch milliseconds. */
+  private volatile long syncedAt = 0;
+
+  /**
+   * Inserts or moves an account.
+   *
+   * @param playerId The player ID of the account.
+   * @param playerName (Optional) The name of the player. If null, any known name is kept.
+   * @param balance The balance of the account.
+   * @throws NullPointerException Thrown if the playerId is null.
+   */
+  synchronized void update(@NotNull UUID playerId, @Nullable String playerName, double balance) {
+
+    Node node = nodes.get(playerId);
+
+    if (node == null) {
+      node = new Node(playerId, playerName, balance, random.nextInt());
+      nodes.put(playerId, node);
+      aggregates.add(balance);
+    } else {
+      if (playerName != null) node.playerName = playerName;
+      if (node.balance == balance) return;
+      root = remove(root, node);
+      aggregates.move(node.balance, balance);
+      node.reset(balance);
+    }
+
+    root = insert(root, node);
+  }
+
+  /**
+   * @param playerId The player ID of the account.
+   * @return The 1-based rank of the account. If the account isn't ranked, -1 is returned.
+   */
+  synchronized int getRank(@NotNull UUID playerId) {
+
+    Node node = nodes.get(playerId);
+    if (node == null) return -1;
+
+    int rank = 1;
+    Node current = root;
+
+    while (current != null) {
+      int compare = compare(node, current);
+      if (compare < 0) {
+        current = current.left;
+      } else {
+        rank += size(current.left);
+        if (compare == 0) break;
+        rank++;
+        current = current.right;
+      }
+    }
+
+    return rank;
+  }
+
+  /**
+   * @param offset The amount of top entries to skip.
+   * @param limit The most entries to return.
+   * @return The entries ranked from offset + 1, in order.
+   * @throws IllegalArgumentException Thrown if the offset or limit is negative.
+   */
+  @NotNull
+  synchronized List<LeaderboardEntry> getRange(int offset, int limit) {
+
+    if (offset < 0 || limit < 0) {
+      throw new IllegalArgumentException("The offset and limit cannot be negative.");
+    }
+
+    int end = (int) Math.min((long) offset + limit, size(root));
+    List<LeaderboardEntry> entries = new ArrayList<>(Math.max(0, end - offset));
+
+    for (int index = offset; index < end; index++) {
+      Node node = select(index);
+      entries.add(new LeaderboardEntry(index + 1, node.playerId, node.playerName, node.balance));
+    }
+
+    return entries;
+  }
+
+  /** @return The amount of ranked accounts. */
+  synchronized int size() {
+    return size(root);
+  }
+
+  /**
+   * Seeds the leaderboard with a bulk snapshot. The snapshot is built without holding the lock;
+   * updates that arrive meanwhile are newer than the snapshot and are re-applied over it.
+   *
+   * @param database The database to read from.
+   * @throws SQLException Thrown if the accounts cannot be read.
+   */
+  void seed(@NotNull Database database) throws SQLException {
+    seed(database, new HashMap<>(), 0, 0);
+  }
+
+  /**
+   * Seeds the leaderboard from a snapshot taken before a restart, reading only the accounts written
+   * since it was taken. (See {@link Leaderboard#seed(Database)})
+   *
+   * @param database The database to read from.
+   * @param snapshot The snapshot to start from. Must be validated against the database.
+   * @param marginMillis How far before the snapshot's update time to read again, covering clock
+   *     skew between servers and replication lag.
+   * @return The amount of accounts read from the database.
+   * @throws IOException Thrown if an account of the snapshot is malformed.
+   * @throws SQLException Thrown if the accounts cannot be read.
+   */
+  long seed(@NotNull Database database, @NotNull AccountSnapshot snapshot, long marginMillis)
+      throws IOException, SQLException {
+
+    Map<UUID, Node> seeded = new HashMap<>(Math.max(16, snapshot.getCount() * 4 / 3 + 1));
+    snapshot.forEach(
+        (playerId, playerName, balance) ->
+            seeded.put(playerId, new Node(playerId, playerName, balance, 0)));
+
+    long since = Math.max(0, snapshot.getSyncedAt() - marginMillis);
+    long read = seed(database, seeded, since, snapshot.getSyncedAt());
+    snapshot.restoreVolumes(aggregates);
+    return read;
+  }
+
+  /**
+   * @param seeded The accounts to start from. Accounts read from the database replace them.
+   * @param since The earliest update time to read, in epoch milliseconds.
+   * @param syncedAt The latest update time the seeded accounts include, in epoch milliseconds.
+   * @return The amount of accounts read from the database.
+   */
+  private long seed(
+      @NotNull Database database, @NotNull Map<UUID, Node> seeded, long since, long syncedAt)
+      throws SQLException {
+
+    long[] read = new long[1];
+    long latest;
+
+    latest =
+        database.forEachAccount(
+            since,
+            (playerId, playerName, balances, updatedAt) -> {
+              // Leaderboards rank the primary currency, the first of every account's balances.
+              double balance = balances[0];
+              read[0]++;
+              Node node = seeded.get(playerId);
+              if (node == null) {
+                seeded.put(playerId, new Node(playerId, playerName, balance, 0));
+              } else {
+                if (playerName != null) node.playerName = playerName;
+                node.balance = balance;
+              }
+            });
+
+    Node[] sorted = seeded.values().toArray(new Node[0]);
+    Arrays.sort(sorted, Leaderboard::compare);
+
+    SplittableRandom seedRandom = new SplittableRandom();
+    for (Node node : sorted) node.priority = seedRandom.nextInt();
+    Node seededRoot = build(sorted, 0, sorted.length);
+
+    EconomyAggregates seededAggregates = new EconomyAggregates();
+    for (Node node : sorted) seededAggregates.add(node.balance);
+
+    synchronized (this) {
+
+      Map<UUID, Node> live = nodes;
+      nodes = seeded;
+      root = seededRoot;
+      aggregates.replaceBalances(seededAggregates);
+
+      for (Node node : live.values()) update(node.playerId, node.playerName, node.balance);
+
+      this.syncedAt = Math.max(syncedAt, latest);
+      ready = true;
+    }
+
+    return read[0];
+  }
+
+  /** @return The latest update time read from the database, in epoch milliseconds. */
+  long getSyncedAt() {
+    return syncedAt;
+  }
+
+  /**
+   * Visits every ranked account under the leaderboard's lock.
+   *
+   * @param visitor The visitor receiving each account, richest first.
+   * @throws IOException Thrown if the visitor fails.
+   */
+  synchronized void forEach(@NotNull EntryVisitor visitor) throws IOException {
+    forEach(root, visitor);
+  }
+
+  private static void forEach(@Nullable Node node, @NotNull EntryVisitor visitor)
+      throws IOException {
+    if (node == null) return;
+    forEach(node.left, visitor);
+    visitor.visit(node.playerId, node.playerName, node.balance);
+    forEach(node.right, visitor);
+  }
+
+  /**
+   * Reads the accounts written since the last seed or reconciliation, including those written by
+   * other servers, and applies them on the main thread. Blocking; run off the main thread.
+   *
+   * @param database The database to read from.
+   * @param marginMillis How far before the last update seen to read again, covering clock skew
+   *     between servers and replication lag.
+   * @param mainThread Runs the changes on the main thread.
+   * @param isLocallyDirty Tests if an account has unsaved changes on this server, which are newer
+   *     than the database. Called on the main thread.
+   * @throws SQLException Thrown if the accounts cannot be read.
+   */
+  void reconcile(
+      @NotNull Database database,
+      long marginMillis,
+      @NotNull Executor mainThread,
+      @NotNull Predicate<UUID> isLocallyDirty)
+      throws SQLException {
+
+    long since = Math.max(0, syncedAt - marginMillis);
+    List<Node> changes = new ArrayList<>();
+    long latest;
+
+    latest =
+        database.forEachAccount(
+            since,
+            (playerId, playerName, balances, updatedAt) ->
+                changes.add(new Node(playerId, playerName, balances[0], 0)));
+
+    syncedAt = Math.max(syncedAt, latest);
+
+    if (changes.isEmpty()) return;
+
+    mainThread.execute(
+        () -> {
+          for (Node change : changes) {
+            if (isLocallyDirty.test(change.playerId)) continue;
+            update(change.playerId, change.playerName, change.balance);
+          }
+        });
+  }
+
+  /**
+   * Builds a balanced treap from sorted nodes, restoring the heap order on priorities.
+   */
+  @Nullable
+  private static Node build(@NotNull Node[] sorted, int from, int to) {
+
+    if (from >= to) return null;
+
+    int mid = (from + to) >>> 1;
+    Node node = sorted[mid];
+    node.left = build(sorted, from, mid);
+    node.right = build(sorted, mid + 1, to);
+
+    // Bubble the highest priority up so the subtree is a valid heap.
+    Node top = node;
+    if (node.left != null && node.left.priority > top.priority) top = node.left;
+    if (node.right != null && node.right.priority > top.priority) top = node.right;
+    if (top != node) {
+      int priority = node.priority;
+      node.priority = top.priority;
+      top.priority = priority;
+      siftDown(top);
+    }
+
+    node.size = 1 + size(node.left) + size(node.right);
+    return node;
+  }
+
+  private static void siftDown(@NotNull Node node) {
+    while (true) {
+      Node top = node;
+      if (node.left != null && node.left.priority > top.priority) top = node.left;
+      if (node.right != null && node.right.priority > top.priority) top = node.right;
+      if (top == node) return;
+      int priority = node.priority;
+      node.priority = top.priority;
+      top.priority = priority;
+      node = top;
+    }
+  }
+
+  @NotNull
+  private Node select(int index) {
+
+    Node current = root;
+
+    while (true) {
+      int leftSize = size(current.left);
+      if (index < leftSize) {
+        current = current.left;
+      } else if (index == leftSize) {
+        return current;
+      } else {
+        index -= leftSize + 1;
+        current = current.right;
+      }
+    }
+  }
+
+  @NotNull
+  private static Node insert(@Nullable Node tree, @NotNull Node node) {
+
+    if (tree == null) return node;
+
+    if (node.priority > tree.priority) {
+      Node[] split = split(tree, node);
+      node.left = split[0];
+      node.right = split[1];
+      node.size = 1 + size(node.left) + size(node.right);
+      return node;
+    }
+
+    if (compare(node, tree) < 0) {
+      tree.left = insert(tree.left, node);
+    } else {
+      tree.right = insert(tree.right, node);
+    }
+
+    tree.size++;
+    return tree;
+  }
+
+  @Nullable
+  private static Node remove(@Nullable Node tree, @NotNull Node node) {
+
+    if (tree == null) return null;
+
+    if (tree == node) return merge(tree.left, tree.right);
+
+    if (compare(node, tree) < 0) {
+      tree.left = remove(tree.left, node);
+    } else {
+      tree.right = remove(tree.right, node);
+    }
+
+    tree.size = 1 + size(tree.left) + size(tree.right);
+    return tree;
+  }
+
+  /** @return The nodes ordered before the key, and the nodes ordered after it. */
+  @NotNull
+  private static Node[] split(@Nullable Node tree, @NotNull Node key) {
+
+    if (tree == null) return new Node[2];
+
+    Node[] split;
+    if (compare(tree, key) < 0) {
+      split = split(tree.right, key);
+      tree.right = split[0];
+      split[0] = tree;
+    } else {
+      split = split(tree.left, key);
+      tree.left = split[1];
+      split[1] = tree;
+    }
+
+    tree.size = 1 + size(tree.left) + size(tree.right);
+    return split;
+  }
+
+  @Nullable
+  private static Node merge(@Nullable Node left, @Nullable Node right) {
+
+    if (left == null) return right;
+    if (right == null) return left;
+
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      left.size = 1 + size(left.left) + size(left.right);
+      return left;
+    }
+
+    right.left = merge(left, right.left);
+    right.size = 1 + size(right.left) + size(right.right);
+    return right;
+  }
+
+  private static int compare(@NotNull Node a, @NotNull Node b) {
+    int compare = Double.compare(b.balance, a.balance);
+    return compare != 0 ? compare : a.playerId.compareTo(b.playerId);
+  }
+
+  private static int size(@Nullable Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  /**
+   * <b>EntryVisitor</b> receives ranked accounts.
+   *
+   * @author Jab
+   */
+  @FunctionalInterface
+  interface EntryVisitor {
+
+    /**
+     * @param playerId The player ID of the account.
+     * @param playerName (Optional) The last known name of the player.
+     * @param balance The balance of the account.
+     * @throws IOException Thrown if the account cannot be handled.
+     */
+    void visit(@NotNull UUID playerId, @Nullable String playerName, double balance)
+        throws IOException;
+  }
+
+  /** A ranked account. */
+  private static class Node {
+
+    final UUID playerId;
+    String playerName;
+    double balance;
+    int priority;
+    int size = 1;
+    Node left;
+    Node right;
+
+    Node(@NotNull UUID playerId, @Nullable String playerName, double balance, int priority) {
+      this.playerId = playerId;
+      this.playerName = playerName;
+      this.balance = balance;
+      this.priority = priority;
+    }
+
+    void reset(double balance) {
+      this.balance = balance;
+      this.size = 1;
+      this.left = null;
+      this.right = null;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * <b>LeaderboardEntry</b> is an immutable snapshot of an account's position on the balance
+ * leaderboard.
+ *
+ * @author Jab
+ */
+@Getter
+public class LeaderboardEntry {
+
+  /** The 1-based rank of the account. */
+  private final int rank;
+
+  /** The player's unique ID. */
+  private final UUID playerId;
+
+  /** The last known name of the player. Null if the name was never stored. */
+  @Nullable private final String playerName;
+
+  /** The balance of the account when the snapshot was taken. */
+  private final double balance;
+
+  LeaderboardEntry(int rank, @NotNull UUID playerId, @Nullable String playerName, double balance) {
+    this.rank = rank;
+    this.playerId = playerId;
+    this.playerName = playerName;
+    this.balance = balance;
+  }
+}
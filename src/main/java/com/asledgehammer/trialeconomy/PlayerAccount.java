@@ -2,11 +2,16 @@ package com.asledgehammer.trialeconomy;
 
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <b>PlayerAccount</b> contains all data for player accounts in TrialEconomy.
@@ -16,27 +21,60 @@ import java.util.UUID;
 @Getter
 public class PlayerAccount {
 
+  /** The history cause of changes made without one. */
+  static final String DEFAULT_CAUSE = "api";
+
+  /** The cause given to listeners for changes found when an account is reloaded. */
+  static final String RELOAD_CAUSE = "reload";
+
   /** The player's unique ID. */
   private final UUID playerId;
 
   /** The name of the player. */
   private final String playerName;
 
-  /** The balance of the account. */
-  private double balance;
+  /** The balance of each currency, by currency index. Accessed through {@link #BALANCES}. */
+  @Getter(AccessLevel.NONE)
+  private final double[] balances;
+
+  /** The amount of changes made to the balances. Counted once each change lands. */
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong changes = new AtomicLong();
+
+  /** The amount of changes included in the latest save. */
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong savedChanges = new AtomicLong();
+
+  /** The journal of the mailbox draining on the current thread, if any. */
+  private static final ThreadLocal<Journal> JOURNAL = new ThreadLocal<>();
 
-  /** If true, the account can save. */
-  @Setter(AccessLevel.PACKAGE)
-  private boolean dirty = false;
+  /**
+   * Reads and writes balances with the visibility of a volatile field. Loaded accounts are changed
+   * from both the main thread and the mailbox workers, so every change is a compare-and-set retried
+   * until no other change landed between its read and write.
+   */
+  private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(double[].class);
 
   /**
+   * Creates an account holding only the primary currency.
+   *
    * @param player the player associated with the account.
    * @throws NullPointerException Thrown if the player is null.
    */
   PlayerAccount(@NotNull OfflinePlayer player, double balance) {
+    this(player, new double[] {balance});
+  }
+
+  /**
+   * @param player the player associated with the account.
+   * @param balances The balance of each currency, by currency index. The account takes ownership
+   *     of the array.
+   * @throws NullPointerException Thrown if the player or balances are null.
+   */
+  PlayerAccount(@NotNull OfflinePlayer player, @NotNull double[] balances) {
     this.playerId = player.getUniqueId();
     this.playerName = player.getName();
-    this.balance = balance;
+    this.balances = balances;
   }
 
   /**
@@ -46,11 +84,25 @@ public class PlayerAccount {
    */
   public void save() {
 
-    if (!dirty) return;
+    if (!isDirty()) return;
 
     TrialEconomy.INSTANCE.save(this);
   }
 
+  /** @return The balance of the primary currency. */
+  public double getBalance() {
+    return (double) BALANCES.getVolatile(balances, 0);
+  }
+
+  /**
+   * @param currency The currency to read.
+   * @return The balance of the currency.
+   * @throws IndexOutOfBoundsException Thrown if the account doesn't hold the currency.
+   */
+  public double getBalance(@NotNull Currency currency) {
+    return (double) BALANCES.getVolatile(balances, currency.getIndex());
+  }
+
   /**
    * Deposits an amount to the account.
    *
@@ -58,13 +110,51 @@ public class PlayerAccount {
    * @throws IllegalArgumentException Thrown if the amount is negative.
    */
   public void deposit(double amount) {
+    deposit(0, amount, DEFAULT_CAUSE, null);
+  }
+
+  /**
+   * Deposits an amount to the account.
+   *
+   * @param amount The amount to deposit.
+   * @param cause What the deposit is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the deposit, recorded in the account's history.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, or the actor is longer than 64 characters.
+   */
+  public void deposit(double amount, @NotNull String cause, @Nullable String actor) {
+    deposit(0, amount, cause, actor);
+  }
+
+  /**
+   * Deposits an amount of a currency to the account.
+   *
+   * @param currency The currency to deposit.
+   * @param amount The amount to deposit.
+   * @param cause What the deposit is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the deposit, recorded in the account's history.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, or the actor is longer than 64 characters.
+   * @throws IndexOutOfBoundsException Thrown if the account doesn't hold the currency.
+   */
+  public void deposit(
+      @NotNull Currency currency, double amount, @NotNull String cause, @Nullable String actor) {
+    deposit(currency.getIndex(), amount, cause, actor);
+  }
+
+  private void deposit(int currency, double amount, @NotNull String cause, @Nullable String actor) {
 
     if (amount < 0) {
       throw new IllegalArgumentException("The amount cannot be negative. (" + amount + " given)");
     }
 
-    balance += amount;
-    dirty = true;
+    HistoryLedger.validate(cause, actor);
+
+    double balance;
+    do {
+      balance = (double) BALANCES.getVolatile(balances, currency);
+    } while (!BALANCES.compareAndSet(balances, currency, balance, balance + amount));
+    onChanged(currency, balance, balance + amount, amount, cause, actor);
   }
 
   /**
@@ -75,16 +165,62 @@ public class PlayerAccount {
    *     balance.
    */
   public void withdraw(double amount) {
+    withdraw(0, amount, DEFAULT_CAUSE, null);
+  }
+
+  /**
+   * Withdraws an amount to the account.
+   *
+   * @param amount The amount to withdraw.
+   * @param cause What the withdrawal is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the withdrawal, recorded in the account's history.
+   * @throws IllegalArgumentException Thrown if the amount is negative or more than the current
+   *     balance, the cause is empty or longer than 32 characters, or the actor is longer than 64
+   *     characters.
+   */
+  public void withdraw(double amount, @NotNull String cause, @Nullable String actor) {
+    withdraw(0, amount, cause, actor);
+  }
+
+  /**
+   * Withdraws an amount of a currency from the account.
+   *
+   * @param currency The currency to withdraw.
+   * @param amount The amount to withdraw.
+   * @param cause What the withdrawal is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the withdrawal, recorded in the account's history.
+   * @throws IllegalArgumentException Thrown if the amount is negative or more than the current
+   *     balance, the cause is empty or longer than 32 characters, or the actor is longer than 64
+   *     characters.
+   * @throws IndexOutOfBoundsException Thrown if the account doesn't hold the currency.
+   */
+  public void withdraw(
+      @NotNull Currency currency, double amount, @NotNull String cause, @Nullable String actor) {
+    withdraw(currency.getIndex(), amount, cause, actor);
+  }
+
+  private void withdraw(
+      int currency, double amount, @NotNull String cause, @Nullable String actor) {
 
     if (amount < 0) {
       throw new IllegalArgumentException("The amount cannot be negative. (" + amount + " given)");
-    } else if (amount > balance) {
-      throw new IllegalArgumentException(
-          "Cannot withdraw " + amount + " from " + playerName + "'s account. (insufficient funds)");
     }
 
-    balance -= amount;
-    dirty = true;
+    HistoryLedger.validate(cause, actor);
+
+    double balance;
+    do {
+      balance = (double) BALANCES.getVolatile(balances, currency);
+      if (amount > balance) {
+        throw new IllegalArgumentException(
+            "Cannot withdraw "
+                + amount
+                + " from "
+                + playerName
+                + "'s account. (insufficient funds)");
+      }
+    } while (!BALANCES.compareAndSet(balances, currency, balance, balance - amount));
+    onChanged(currency, balance, balance - amount, -amount, cause, actor);
   }
 
   /**
@@ -92,22 +228,306 @@ public class PlayerAccount {
    * @throws IllegalArgumentException Thrown if the amount is negative.
    */
   public void setBalance(double amount) {
+    setBalance(0, amount, DEFAULT_CAUSE, null);
+  }
 
-    if (this.balance == amount) {
-      return;
-    } else if (amount < 0) {
+  /**
+   * @param amount The balance to set.
+   * @param cause What the change is for, recorded in the account's history. (E.G: "reset")
+   * @param actor (Optional) Who made the change, recorded in the account's history.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, or the actor is longer than 64 characters.
+   */
+  public void setBalance(double amount, @NotNull String cause, @Nullable String actor) {
+    setBalance(0, amount, cause, actor);
+  }
+
+  /**
+   * @param currency The currency to set.
+   * @param amount The balance to set.
+   * @param cause What the change is for, recorded in the account's history. (E.G: "reset")
+   * @param actor (Optional) Who made the change, recorded in the account's history.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, or the actor is longer than 64 characters.
+   * @throws IndexOutOfBoundsException Thrown if the account doesn't hold the currency.
+   */
+  public void setBalance(
+      @NotNull Currency currency, double amount, @NotNull String cause, @Nullable String actor) {
+    setBalance(currency.getIndex(), amount, cause, actor);
+  }
+
+  /**
+   * @param currency The index of the currency to set.
+   * @param amount The balance to set.
+   * @param cause What the change is for, recorded in the account's history.
+   * @param actor (Optional) Who made the change, recorded in the account's history.
+   */
+  void setBalance(int currency, double amount, @NotNull String cause, @Nullable String actor) {
+
+    if (amount < 0) {
       throw new IllegalArgumentException("The amount cannot be negative. (" + amount + " given)");
     }
 
-    this.balance = amount;
-    this.dirty = true;
+    HistoryLedger.validate(cause, actor);
+
+    double balance;
+    do {
+      balance = (double) BALANCES.getVolatile(balances, currency);
+      if (balance == amount) return;
+    } while (!BALANCES.compareAndSet(balances, currency, balance, amount));
+    onChanged(currency, balance, amount, amount - balance, cause, actor);
+  }
+
+  /**
+   * Counts a change that landed, then records it. Changes made by a draining mailbox are held in
+   * its journal until they're saved.
+   */
+  private void onChanged(
+      int currency,
+      double previous,
+      double balance,
+      double delta,
+      @NotNull String cause,
+      @Nullable String actor) {
+
+    changes.incrementAndGet();
+
+    Journal journal = JOURNAL.get();
+    if (journal != null && journal.playerId.equals(playerId)) {
+      journal.add(this, currency, previous, balance, delta, cause, actor);
+    } else {
+      TrialEconomy.onBalanceChanged(this, currency, previous, balance, delta, cause, actor);
+    }
+  }
+
+  /**
+   * Adds an amount to a balance without recording it. Used to undo a change that failed. An undo
+   * that would leave the balance negative is refused, since other threads may have spent the
+   * amount meanwhile.
+   *
+   * @param currency The index of the currency.
+   * @param amount The amount to add. Negative to subtract.
+   * @return Returns true if the amount was added. False if it was refused.
+   */
+  private boolean revert(int currency, double amount) {
+    double balance;
+    do {
+      balance = (double) BALANCES.getVolatile(balances, currency);
+      if (balance + amount < 0) return false;
+    } while (!BALANCES.compareAndSet(balances, currency, balance, balance + amount));
+    changes.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Replaces the balances with the ones stored in the database, discarding unsaved changes.
+   *
+   * @param balances The stored balance of each currency, by currency index.
+   */
+  void reload(@NotNull double[] balances) {
+    reload(balances, copyBalances());
+  }
+
+  /**
+   * Replaces the balances with the ones stored in the database, discarding unsaved changes.
+   *
+   * @param balances The stored balance of each currency, by currency index.
+   * @param previous The balances listeners were last told of, by currency index. Differences from
+   *     the stored balances are announced from these.
+   */
+  void reload(@NotNull double[] balances, @NotNull double[] previous) {
+
+    long stored = changes.get();
+
+    for (int currency = 0; currency < this.balances.length; currency++) {
+      BALANCES.setVolatile(this.balances, currency, balances[currency]);
+    }
+    markSaved(stored);
+
+    TrialEconomy.onBalanceChanged(this);
+
+    for (int currency = 0; currency < previous.length; currency++) {
+      if (previous[currency] == balances[currency]) continue;
+      TrialEconomy.onBalanceReloaded(this, currency, previous[currency]);
+    }
+  }
+
+  /** @return Returns true if the account has changes not yet saved. */
+  public boolean isDirty() {
+    return changes.get() != savedChanges.get();
+  }
+
+  /**
+   * Read before copying the balances to save, so a change landing during the save is counted
+   * after it and keeps the account dirty.
+   *
+   * @return The amount of changes made to the balances.
+   */
+  long getChanges() {
+    return changes.get();
+  }
+
+  /**
+   * Marks the changes counted before a save as saved. Changes made since stay dirty.
+   *
+   * @param saved The amount of changes read before the balances were copied. (See {@link
+   *     PlayerAccount#getChanges()})
+   */
+  void markSaved(long saved) {
+    savedChanges.accumulateAndGet(saved, Math::max);
+  }
+
+  /** @return A copy of the balance of each currency, by currency index. */
+  @NotNull
+  double[] copyBalances() {
+    double[] copy = new double[balances.length];
+    for (int currency = 0; currency < copy.length; currency++) {
+      copy[currency] = (double) BALANCES.getVolatile(balances, currency);
+    }
+    return copy;
   }
 
   /**
    * @param amount The amount to test.
-   * @return Returns true if the amount is <= the balance of the account.
+   * @return Returns true if the amount is <= the primary balance of the account.
    */
   public boolean has(double amount) {
-    return amount <= balance;
+    return amount <= getBalance();
+  }
+
+  /**
+   * @param currency The currency to test.
+   * @param amount The amount to test.
+   * @return Returns true if the amount is <= the account's balance of the currency.
+   * @throws IndexOutOfBoundsException Thrown if the account doesn't hold the currency.
+   */
+  public boolean has(@NotNull Currency currency, double amount) {
+    return amount <= getBalance(currency);
+  }
+
+  /**
+   * <b>Journal</b> holds the changes a mailbox drain makes to one account until they're saved. Once
+   * saved, they're recorded in the history and announced, and the leaderboard is updated once for
+   * the drain. If the save fails, nothing is recorded; the mailbox reloads the stored balances.
+   *
+   * @author Jab
+   */
+  static final class Journal {
+
+    /** The player ID of the account journaled. */
+    private final UUID playerId;
+
+    /** The changes, in the order made. */
+    private final List<Change> changes = new ArrayList<>();
+
+    /** The account changed. Null until the first change. */
+    @Nullable private PlayerAccount account;
+
+    /** @param playerId The player ID of the account to journal. */
+    Journal(@NotNull UUID playerId) {
+      this.playerId = playerId;
+    }
+
+    /** Starts journaling the changes to the account made by the current thread. */
+    void begin() {
+      JOURNAL.set(this);
+    }
+
+    /** Stops journaling on the current thread. */
+    void end() {
+      if (JOURNAL.get() == this) JOURNAL.remove();
+    }
+
+    /**
+     * Records every change in the history and announces it, once the changes are saved. Everything
+     * derived from the balance is updated once, rather than per change.
+     */
+    void publish() {
+
+      double volume = 0;
+      boolean primary = false;
+
+      for (Change change : changes) {
+        TrialEconomy.onBalanceRecorded(
+            change.account,
+            change.currency,
+            change.previous,
+            change.balance,
+            change.delta,
+            change.cause,
+            change.actor);
+        if (change.currency == 0) {
+          volume += Math.abs(change.delta);
+          primary = true;
+        }
+      }
+      changes.clear();
+
+      if (primary && account != null) TrialEconomy.onBalanceChanged(account, volume);
+    }
+
+    /** @return A mark to undo the changes made after it. (See {@link Journal#revert(int)}) */
+    int mark() {
+      return changes.size();
+    }
+
+    /**
+     * Undoes the changes made after a mark, newest first. Nothing is recorded or announced. An undo
+     * that would leave a balance negative is refused and logged.
+     *
+     * @param mark The mark. (See {@link Journal#mark()})
+     */
+    void revert(int mark) {
+      for (int index = changes.size() - 1; index >= mark; index--) {
+        Change change = changes.remove(index);
+        if (!change.account.revert(change.currency, -change.delta)) {
+          TrialEconomy.logger.warning(
+              "Could not undo a change of "
+                  + change.delta
+                  + " to "
+                  + change.account.getPlayerName()
+                  + "'s account: it was spent meanwhile.");
+        }
+      }
+    }
+
+    /**
+     * @param balances The balances of the account, by currency index.
+     * @return The balances without the journal's changes, keeping the changes made meanwhile by
+     *     other threads. These are the balances listeners were last told of.
+     */
+    @NotNull
+    double[] unpublished(@NotNull double[] balances) {
+      double[] previous = balances.clone();
+      for (Change change : changes) previous[change.currency] -= change.delta;
+      return previous;
+    }
+
+    /** Drops every change without recording it, once the account is reloaded. */
+    void discard() {
+      changes.clear();
+    }
+
+    private void add(
+        @NotNull PlayerAccount account,
+        int currency,
+        double previous,
+        double balance,
+        double delta,
+        @NotNull String cause,
+        @Nullable String actor) {
+      this.account = account;
+      changes.add(new Change(account, currency, previous, balance, delta, cause, actor));
+    }
+
+    /** A change held by a journal. */
+    private record Change(
+        @NotNull PlayerAccount account,
+        int currency,
+        double previous,
+        double balance,
+        double delta,
+        @NotNull String cause,
+        @Nullable String actor) {}
   }
 }
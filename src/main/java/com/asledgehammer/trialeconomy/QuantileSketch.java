@@ -0,0 +1,180 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <b>QuantileSketch</b> estimates percentiles of non-negative values within a fixed relative error.
+ *
+ * <p>Values are counted in logarithmic buckets that are identical for every sketch, so values can
+ * be removed exactly when a balance changes and sketches from several servers merge by adding
+ * their counts. Memory and percentile reads are constant regardless of how many values are counted.
+ *
+ * @author Jab
+ */
+class QuantileSketch {
+
+  /** The most relative error of an estimated percentile. */
+  static final double RELATIVE_ACCURACY = 0.01;
+
+  /** Values smaller than this are counted as zero. */
+  static final double MIN_VALUE = 1e-4;
+
+  /** Values larger than this are counted in the last bucket. */
+  static final double MAX_VALUE = 1e15;
+
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  private static final int MIN_INDEX = index(MIN_VALUE);
+  private static final int BUCKETS = index(MAX_VALUE) - MIN_INDEX + 1;
+
+  /** The amount of values in each bucket. */
+  private final long[] counts;
+
+  /** The amount of values counted as zero. */
+  private long zeroCount = 0;
+
+  /** The amount of values counted. */
+  private long count = 0;
+
+  QuantileSketch() {
+    this.counts = new long[BUCKETS];
+  }
+
+  private QuantileSketch(@NotNull QuantileSketch other) {
+    this.counts = other.counts.clone();
+    this.zeroCount = other.zeroCount;
+    this.count = other.count;
+  }
+
+  /** @return The bucket of a value of at least {@link QuantileSketch#MIN_VALUE}. */
+  private static int index(double value) {
+    return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+  }
+
+  /** @return The bucket slot of a value, or -1 for values counted as zero. */
+  private static int slot(double value) {
+    if (value < MIN_VALUE) return -1;
+    return Math.min(index(value) - MIN_INDEX, BUCKETS - 1);
+  }
+
+  /** @param value The value to count. */
+  void add(double value) {
+    int slot = slot(value);
+    if (slot == -1) zeroCount++;
+    else counts[slot]++;
+    count++;
+  }
+
+  /**
+   * @param value A value previously counted.
+   * @throws IllegalStateException Thrown if no value in the value's bucket is counted.
+   */
+  void remove(double value) {
+    int slot = slot(value);
+    if (slot == -1) {
+      if (zeroCount == 0) throw new IllegalStateException("The value isn't counted: " + value);
+      zeroCount--;
+    } else {
+      if (counts[slot] == 0) throw new IllegalStateException("The value isn't counted: " + value);
+      counts[slot]--;
+    }
+    count--;
+  }
+
+  /** @param other The sketch whose counts to add. */
+  void merge(@NotNull QuantileSketch other) {
+    for (int slot = 0; slot < BUCKETS; slot++) counts[slot] += other.counts[slot];
+    zeroCount += other.zeroCount;
+    count += other.count;
+  }
+
+  /** @return The amount of values counted. */
+  long getCount() {
+    return count;
+  }
+
+  /**
+   * @param quantile The quantile to estimate, from 0 to 1. (E.G: 0.5 for the median)
+   * @return The estimated value, within {@link QuantileSketch#RELATIVE_ACCURACY} of the true
+   *     value. If no values are counted, 0 is returned.
+   * @throws IllegalArgumentException Thrown if the quantile is outside of 0 to 1.
+   */
+  double getQuantile(double quantile) {
+
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException(
+          "The quantile must be between 0 and 1. (" + quantile + ")");
+    }
+
+    if (count == 0) return 0;
+
+    long rank = (long) (quantile * (count - 1));
+    if (rank < zeroCount) return 0;
+
+    long seen = zeroCount;
+    for (int slot = 0; slot < BUCKETS; slot++) {
+      seen += counts[slot];
+      if (seen > rank) return 2 * Math.pow(GAMMA, slot + MIN_INDEX) / (GAMMA + 1);
+    }
+
+    return MAX_VALUE;
+  }
+
+  /** @return An independent copy of the sketch. */
+  @NotNull
+  QuantileSketch copy() {
+    return new QuantileSketch(this);
+  }
+
+  /**
+   * Writes the non-empty buckets of the sketch.
+   *
+   * @param buffer The buffer to write to. Needs {@link QuantileSketch#getSerializedSize()} bytes.
+   */
+  void writeTo(@NotNull ByteBuffer buffer) {
+    int used = (int) Arrays.stream(counts).filter(value -> value != 0).count();
+    buffer.putLong(zeroCount);
+    buffer.putInt(used);
+    for (int slot = 0; slot < BUCKETS; slot++) {
+      if (counts[slot] == 0) continue;
+      buffer.putShort((short) slot);
+      buffer.putLong(counts[slot]);
+    }
+  }
+
+  /** @return The amount of bytes {@link QuantileSketch#writeTo(ByteBuffer)} writes. */
+  int getSerializedSize() {
+    int used = (int) Arrays.stream(counts).filter(value -> value != 0).count();
+    return 12 + used * 10;
+  }
+
+  /**
+   * @param buffer The buffer to read a sketch written by {@link QuantileSketch#writeTo(ByteBuffer)}
+   *     from.
+   * @return The sketch.
+   * @throws IllegalArgumentException Thrown if the data is malformed.
+   */
+  @NotNull
+  static QuantileSketch readFrom(@NotNull ByteBuffer buffer) {
+
+    QuantileSketch sketch = new QuantileSketch();
+    sketch.zeroCount = buffer.getLong();
+    sketch.count = sketch.zeroCount;
+
+    int used = buffer.getInt();
+    for (int index = 0; index < used; index++) {
+      int slot = buffer.getShort();
+      long value = buffer.getLong();
+      if (slot < 0 || slot >= BUCKETS || value < 0) {
+        throw new IllegalArgumentException("Malformed sketch bucket: " + slot);
+      }
+      sketch.counts[slot] += value;
+      sketch.count += value;
+    }
+
+    return sketch;
+  }
+}
@@ -0,0 +1,360 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <b>ReplicaRouter</b> balances read-only queries across MySQL read replicas, keeping replicas that
+ * are down or lagging out of rotation and sending reads of recently written accounts to the
+ * primary.
+ *
+ * @author Jab
+ */
+class ReplicaRouter {
+
+  /** The replicas to balance reads across. */
+  private final List<Replica> replicas = new ArrayList<>();
+
+  /** The staleness policy for routed reads. */
+  @Getter private final Policy policy;
+
+  /** The time each recently written account was last written, in milliseconds. */
+  private final Map<UUID, Long> recentWrites = new ConcurrentHashMap<>();
+
+  /** The round-robin cursor. */
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * @param replicas The credentials of each replica.
+   * @param policy The staleness policy for routed reads.
+   * @throws NullPointerException Thrown if the replicas or policy are null.
+   */
+  ReplicaRouter(@NotNull List<Database.Credentials> replicas, @NotNull Policy policy) {
+    this.policy = policy;
+    for (Database.Credentials credentials : replicas) this.replicas.add(new Replica(credentials));
+  }
+
+  /** @return Returns true if any replicas are configured. */
+  boolean isEnabled() {
+    return !replicas.isEmpty();
+  }
+
+  /**
+   * Connects to every replica. Replicas that cannot be reached or lag too far behind start out of
+   * rotation and are retried by {@link ReplicaRouter#checkHealth()}.
+   */
+  void connect() {
+    for (Replica replica : replicas) {
+      replica.healthy = replica.check(policy.maxLagSeconds);
+      if (!replica.healthy) {
+        TrialEconomy.logger.warning("Read replica " + replica.name + " is not ready for reads.");
+      }
+    }
+  }
+
+  /** Disconnects from every replica. */
+  void disconnect() {
+    for (Replica replica : replicas) replica.close();
+  }
+
+  /**
+   * @param playerId (Optional) The account the read is for. If it was written recently, the read
+   *     stays on the primary so it observes the write.
+   * @return A healthy replica to read from. If none qualifies, null is returned and the caller
+   *     should read from the primary.
+   */
+  @Nullable
+  Replica route(@Nullable UUID playerId) {
+
+    if (replicas.isEmpty()) return null;
+
+    if (playerId != null) {
+      Long writtenAt = recentWrites.get(playerId);
+      long now = System.currentTimeMillis();
+      if (writtenAt != null && now - writtenAt < policy.readYourWritesMillis) return null;
+    }
+
+    int size = replicas.size();
+    int start = Math.floorMod(next.getAndIncrement(), size);
+
+    for (int offset = 0; offset < size; offset++) {
+      Replica replica = replicas.get((start + offset) % size);
+      if (replica.healthy) return replica;
+    }
+
+    return null;
+  }
+
+  /**
+   * Records a write to an account so its reads stay on the primary for the read-your-writes
+   * window.
+   *
+   * @param playerId The account written.
+   */
+  void markWritten(@NotNull UUID playerId) {
+    if (replicas.isEmpty()) return;
+    recentWrites.put(playerId, System.currentTimeMillis());
+  }
+
+  /**
+   * Takes a replica out of rotation after a failed query. It rejoins after a successful health
+   * check.
+   *
+   * @param replica The replica that failed.
+   * @param e The failure.
+   */
+  void markFailed(@NotNull Replica replica, @NotNull SQLException e) {
+    if (replica.healthy) {
+      TrialEconomy.logger.warning(
+          "Read replica " + replica.name + " failed and left rotation: " + e.getMessage());
+    }
+    replica.healthy = false;
+  }
+
+  /**
+   * Checks the connection and replication lag of every replica and expires read-your-writes
+   * entries. Blocking; run off the main thread.
+   */
+  void checkHealth() {
+
+    long expiry = System.currentTimeMillis() - policy.readYourWritesMillis;
+    recentWrites.values().removeIf(writtenAt -> writtenAt < expiry);
+
+    for (Replica replica : replicas) {
+
+      boolean wasHealthy = replica.healthy;
+      replica.healthy = replica.check(policy.maxLagSeconds);
+
+      if (wasHealthy != replica.healthy) {
+        TrialEconomy.logger.info(
+            "Read replica "
+                + replica.name
+                + (replica.healthy ? " joined rotation." : " left rotation.")
+                + " (lag: "
+                + (replica.lagSeconds < 0 ? "unknown" : replica.lagSeconds + "s")
+                + ")");
+      }
+    }
+  }
+
+  /**
+   * <b>Replica</b> is a single read replica and its last known health.
+   *
+   * @author Jab
+   */
+  static class Replica {
+
+    /** The credentials of the replica. */
+    @Getter private final Database.Credentials credentials;
+
+    /** The display name of the replica. (host:port) */
+    private final String name;
+
+    /** Held to query the connection, and exclusively to replace or close it. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The connection to the replica. Replaced only while holding the write lock. */
+    private Connection connection;
+
+    /** If true, the replica is in rotation. */
+    private volatile boolean healthy = false;
+
+    /** The last measured replication lag in seconds. -1 if the server doesn't report it. */
+    private volatile long lagSeconds = -1;
+
+    /** If true, the server rejected both replica status statements. */
+    private boolean lagUnsupported = false;
+
+    Replica(@NotNull Database.Credentials credentials) {
+      this.credentials = credentials;
+      this.name = credentials.getHost() + ":" + credentials.getPort();
+    }
+
+    /**
+     * Runs a read-only query on the replica. The connection isn't closed or replaced while the
+     * query runs.
+     *
+     * @param query The query to run.
+     * @return The result of the query.
+     * @throws SQLException Thrown if the query fails or the replica is disconnected.
+     */
+    <T> T read(@NotNull Database.Query<T> query) throws SQLException {
+      lock.readLock().lock();
+      try {
+        if (connection == null) {
+          throw new SQLException("Read replica " + name + " is disconnected.");
+        }
+        return query.run(connection);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * Opens a new connection before swapping it in, so reads keep using the old one meanwhile. The
+     * old connection is closed once the queries using it have finished.
+     */
+    private void reconnect() throws SQLException {
+      replace(credentials.newConnection());
+    }
+
+    private void close() {
+      replace(null);
+    }
+
+    private void replace(@Nullable Connection replacement) {
+
+      Connection replaced;
+
+      lock.writeLock().lock();
+      try {
+        replaced = connection;
+        connection = replacement;
+      } finally {
+        lock.writeLock().unlock();
+      }
+
+      if (replaced == null) return;
+      try {
+        replaced.close();
+      } catch (SQLException ignored) {
+        // The connection is being discarded.
+      }
+    }
+
+    /** @return Returns true if the replica is connected and the connection responds. */
+    private boolean isValid() throws SQLException {
+      lock.readLock().lock();
+      try {
+        return connection != null && connection.isValid(2);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * @param maxLagSeconds The most replication lag tolerated.
+     * @return Returns true if the replica is reachable and within the lag bound.
+     */
+    private boolean check(long maxLagSeconds) {
+
+      try {
+        if (!isValid()) reconnect();
+        lagSeconds = read(this::readLagSeconds);
+      } catch (SQLException e) {
+        return false;
+      }
+
+      // A stopped replication thread reports NULL lag; never serve reads from it.
+      return lagSeconds == -1 ? lagUnsupported : lagSeconds <= maxLagSeconds;
+    }
+
+    /**
+     * @return The replication lag in seconds, or -1 if stopped or not reported.
+     */
+    private long readLagSeconds(@NotNull Connection conn) throws SQLException {
+
+      if (lagUnsupported) return -1;
+
+      try (Statement statement = conn.createStatement();
+          ResultSet resultSet = queryStatus(statement)) {
+
+        if (resultSet == null) return -1;
+
+        // Not configured as a replica. (E.G: A proxy or managed endpoint)
+        if (!resultSet.next()) return 0;
+
+        long lag;
+        try {
+          lag = resultSet.getLong("Seconds_Behind_Source");
+        } catch (SQLException e) {
+          lag = resultSet.getLong("Seconds_Behind_Master");
+        }
+        return resultSet.wasNull() ? -1 : lag;
+      }
+    }
+
+    /**
+     * @return The replica status, or null if the server supports neither status statement.
+     */
+    @Nullable
+    private ResultSet queryStatus(@NotNull Statement statement) {
+      try {
+        return statement.executeQuery("SHOW REPLICA STATUS");
+      } catch (SQLException e) {
+        try {
+          // MySQL before 8.0.22 and MariaDB.
+          return statement.executeQuery("SHOW SLAVE STATUS");
+        } catch (SQLException e2) {
+          lagUnsupported = true;
+          TrialEconomy.logger.info(
+              "Read replica " + name + " doesn't report replication lag. Using pings only.");
+          return null;
+        }
+      }
+    }
+  }
+
+  /**
+   * <b>Policy</b> is the staleness policy for reads routed to replicas.
+   *
+   * @author Jab
+   */
+  static class Policy {
+
+    /** The most replication lag a replica can have and stay in rotation. */
+    @Getter private final long maxLagSeconds;
+
+    /** How long reads of an account stay on the primary after this server writes it. */
+    private final long readYourWritesMillis;
+
+    /** The interval between health checks. */
+    @Getter private final long healthCheckSeconds;
+
+    Policy(long maxLagSeconds, long readYourWritesSeconds, long healthCheckSeconds) {
+      this.maxLagSeconds = maxLagSeconds;
+      this.readYourWritesMillis = TimeUnit.SECONDS.toMillis(readYourWritesSeconds);
+      this.healthCheckSeconds = healthCheckSeconds;
+    }
+
+    /**
+     * @param cfg (Optional) The 'replica-policy' section. If null, the defaults are used.
+     * @return The parsed policy.
+     * @throws YAMLException Thrown if a field is negative or the health check interval is zero.
+     */
+    @NotNull
+    static Policy load(@Nullable ConfigurationSection cfg) {
+
+      if (cfg == null) return new Policy(5, 10, 5);
+
+      long maxLag = cfg.getLong("max-lag-seconds", 5);
+      long readYourWrites = cfg.getLong("read-your-writes-seconds", 10);
+      long healthCheck = cfg.getLong("health-check-seconds", 5);
+
+      if (maxLag < 0 || readYourWrites < 0) {
+        throw new YAMLException("The fields in 'replica-policy' cannot be negative.");
+      } else if (healthCheck < 1) {
+        throw new YAMLException("The field 'health-check-seconds' must be at least 1.");
+      }
+
+      return new Policy(maxLag, readYourWrites, healthCheck);
+    }
+  }
+}
@@ -0,0 +1,405 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <b>SchemaMigrator</b> evolves the TrialEconomy tables through ordered, versioned migrations.
+ *
+ * <p>Applied versions are recorded in the schema table. Every migration checks the live schema
+ * before changing it, so a migration interrupted before its version is recorded is safe to run
+ * again. Servers sharing the database take a named lock first, so only one migrates at a time.
+ *
+ * @author Jab
+ */
+class SchemaMigrator {
+
+  static final String TABLE_SCHEMA = "trial_economy_schema";
+
+  /** The named lock held while a server changes the schema. */
+  static final String LOCK_NAME = "trial_economy_schema";
+
+  /** How long a server waits for another to finish changing the schema, in seconds. */
+  static final int LOCK_TIMEOUT_SECONDS = 600;
+
+  /** All migrations in the order they are applied. Never reorder or renumber applied entries. */
+  private static final List<Migration> MIGRATIONS =
+      List.of(
+          new Migration(
+              1,
+              "Drop the redundant unique index on player_id",
+              migrator -> {
+                if (migrator.hasIndex(Database.TABLE_ACCOUNTS, "player_id")) {
+                  migrator.execute(
+                      "ALTER TABLE `" + Database.TABLE_ACCOUNTS + "` DROP INDEX `player_id`");
+                }
+              }),
+          new Migration(
+              2,
+              "Add player_name and version columns",
+              migrator -> {
+                migrator.addColumn(Database.TABLE_ACCOUNTS, "player_name", "varchar(16) NULL");
+                migrator.addColumn(Database.TABLE_ACCOUNTS, "version", "bigint NOT NULL DEFAULT 0");
+              }),
+          new Migration(
+              3,
+              "Add an indexed updated_at column for incremental reconciliation",
+              migrator -> {
+                migrator.addColumn(
+                    Database.TABLE_ACCOUNTS, "updated_at", "bigint NOT NULL DEFAULT 0");
+                migrator.addIndex(Database.TABLE_ACCOUNTS, "updated_at", "updated_at");
+              }),
+          new Migration(
+              4,
+              "Add the transaction history table",
+              migrator -> {
+                migrator.execute(
+                    "CREATE TABLE IF NOT EXISTS `"
+                        + Database.TABLE_HISTORY
+                        + "`("
+                        + "`id` bigint NOT NULL AUTO_INCREMENT,"
+                        + "`player_id` varbinary(16) NOT NULL,"
+                        + "`delta` double NOT NULL,"
+                        + "`balance` double NOT NULL,"
+                        + "`cause` varchar(32) NOT NULL,"
+                        + "`actor` varchar(64) NULL,"
+                        + "`created_at` bigint NOT NULL,"
+                        + "PRIMARY KEY (`id`)"
+                        + ") ENGINE=InnoDB");
+                // Pages of an account's history seek this index. (InnoDB appends the id)
+                migrator.addIndex(Database.TABLE_HISTORY, "account_time", "player_id, created_at");
+                // Pruning deletes the oldest entries in bounded chunks.
+                migrator.addIndex(Database.TABLE_HISTORY, "created_at", "created_at");
+              }),
+          new Migration(
+              5,
+              "Add the transaction outcome table for idempotent retries",
+              migrator -> {
+                migrator.execute(
+                    "CREATE TABLE IF NOT EXISTS `"
+                        + Database.TABLE_TRANSACTIONS
+                        + "`("
+                        + "`player_id` varbinary(16) NOT NULL,"
+                        + "`transaction_id` varchar(64) NOT NULL,"
+                        + "`applied` boolean NOT NULL,"
+                        + "`delta` double NOT NULL,"
+                        + "`balance` double NOT NULL,"
+                        + "`created_at` bigint NOT NULL,"
+                        + "PRIMARY KEY (`player_id`, `transaction_id`)"
+                        + ") ENGINE=InnoDB");
+                // Pruning deletes the oldest outcomes in bounded chunks.
+                migrator.addIndex(
+                    Database.TABLE_TRANSACTIONS, "transaction_created_at", "created_at");
+              }),
+          new Migration(
+              6,
+              "Add the account partition layout table",
+              migrator -> {
+                migrator.execute(
+                    "CREATE TABLE IF NOT EXISTS `"
+                        + AccountPartitions.TABLE_LAYOUT
+                        + "`("
+                        + "`id` int NOT NULL,"
+                        + "`partitions` int NOT NULL,"
+                        + "`previous_partitions` int NOT NULL,"
+                        + "PRIMARY KEY (`id`)"
+                        + ") ENGINE=InnoDB");
+                // Existing accounts are in the original, single table.
+                migrator.execute(
+                    "INSERT IGNORE INTO `"
+                        + AccountPartitions.TABLE_LAYOUT
+                        + "` (id, partitions, previous_partitions) VALUES (1, 1, 0)");
+              }),
+          new Migration(
+              7,
+              "Add the currency column to the transaction history table",
+              migrator ->
+                  // Null is the primary currency, so existing entries keep their meaning.
+                  migrator.addColumn(Database.TABLE_HISTORY, "currency", "varchar(16) NULL")),
+          new Migration(
+              8,
+              "Add a balance index to the account table for range listings",
+              migrator ->
+                  // Listings seek this index by (balance, player_id) from the previous page.
+                  migrator.addIndex(Database.TABLE_ACCOUNTS, "balance", "balance, player_id")),
+          new Migration(
+              9,
+              "Add the economy job checkpoint table",
+              migrator ->
+                  migrator.execute(
+                      "CREATE TABLE IF NOT EXISTS `"
+                          + EconomyJobs.TABLE_JOBS
+                          + "`("
+                          + "`name` varchar(32) NOT NULL,"
+                          + "`run_at` bigint NOT NULL,"
+                          + "`cursor_id` varbinary(16) NULL,"
+                          + "`processed` bigint NOT NULL,"
+                          + "`applied` bigint NOT NULL,"
+                          + "`completed` boolean NOT NULL,"
+                          + "`owner` varchar(36) NULL,"
+                          + "`lease_until` bigint NOT NULL,"
+                          + "PRIMARY KEY (`name`)"
+                          + ") ENGINE=InnoDB")),
+          new Migration(
+              10,
+              "Record the primary currency in the account partition layout table",
+              migrator ->
+                  // Null until the next start records the primary currency configured.
+                  migrator.addColumn(
+                      AccountPartitions.TABLE_LAYOUT, "primary_currency", "varchar(16) NULL")));
+
+  /** The connection to migrate. */
+  private final Connection conn;
+
+  /** If true, this connection holds the named lock. */
+  private boolean locked = false;
+
+  /**
+   * @param conn The connection to migrate.
+   * @throws NullPointerException Thrown if the connection is null.
+   */
+  SchemaMigrator(@NotNull Connection conn) {
+    this.conn = conn;
+  }
+
+  /**
+   * Takes the named schema lock, waiting while another server sharing the database holds it. Named
+   * locks belong to MySQL and MariaDB; other databases are embedded and serve one server, so
+   * nothing is taken.
+   *
+   * @throws SQLException Thrown if the lock isn't taken within {@link
+   *     SchemaMigrator#LOCK_TIMEOUT_SECONDS}.
+   */
+  void lock() throws SQLException {
+
+    String product = conn.getMetaData().getDatabaseProductName();
+    if (!"MySQL".equalsIgnoreCase(product) && !"MariaDB".equalsIgnoreCase(product)) return;
+
+    try (PreparedStatement statement = conn.prepareStatement("SELECT GET_LOCK(?, ?);")) {
+      statement.setString(1, LOCK_NAME);
+      statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        // 0 if the wait timed out; null if the server failed to take it.
+        if (!resultSet.next() || resultSet.getInt(1) != 1) {
+          throw new SQLException(
+              "Another server didn't finish changing the schema within "
+                  + LOCK_TIMEOUT_SECONDS
+                  + " seconds.");
+        }
+      }
+    }
+
+    locked = true;
+  }
+
+  /** Releases the named schema lock, if taken. */
+  void unlock() {
+
+    if (!locked) return;
+    locked = false;
+
+    try (PreparedStatement statement = conn.prepareStatement("SELECT RELEASE_LOCK(?);")) {
+      statement.setString(1, LOCK_NAME);
+      statement.executeQuery().close();
+    } catch (SQLException ignored) {
+      // The lock is released with the session.
+    }
+  }
+
+  /**
+   * Applies every migration newer than the recorded schema version, in order. Hold the lock (See
+   * {@link SchemaMigrator#lock()}) so servers starting together don't apply the same migration.
+   *
+   * @return The amount of migrations applied.
+   * @throws SQLException Thrown if a migration fails. Migrations applied before it stay recorded.
+   */
+  int migrate() throws SQLException {
+
+    execute(
+        "CREATE TABLE IF NOT EXISTS `"
+            + TABLE_SCHEMA
+            + "`("
+            + "`version` int NOT NULL,"
+            + "`description` varchar(255) NOT NULL,"
+            + "`applied_at` bigint NOT NULL,"
+            + "PRIMARY KEY (`version`)"
+            + ") ENGINE=InnoDB");
+
+    Set<Integer> applied = getAppliedVersions();
+    int count = 0;
+
+    for (Migration migration : MIGRATIONS) {
+
+      if (applied.contains(migration.version)) continue;
+
+      TrialEconomy.logger.info(
+          "Applying schema migration " + migration.version + ": " + migration.description);
+
+      migration.step.apply(this);
+      record(migration);
+      count++;
+    }
+
+    return count;
+  }
+
+  @NotNull
+  private Set<Integer> getAppliedVersions() throws SQLException {
+
+    Set<Integer> versions = new HashSet<>();
+
+    try (Statement statement = conn.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT version FROM " + TABLE_SCHEMA)) {
+      while (resultSet.next()) versions.add(resultSet.getInt(1));
+    }
+
+    return versions;
+  }
+
+  private void record(@NotNull Migration migration) throws SQLException {
+
+    String sql =
+        "INSERT INTO " + TABLE_SCHEMA + " (version, description, applied_at) VALUES (?,?,?);";
+
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+      statement.setInt(1, migration.version);
+      statement.setString(2, migration.description);
+      statement.setLong(3, System.currentTimeMillis());
+      statement.executeUpdate();
+    }
+  }
+
+  /**
+   * @param sql The statement to execute.
+   * @throws SQLException Thrown if the statement fails.
+   */
+  void execute(@NotNull String sql) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  /**
+   * Adds a column if it doesn't exist. The server picks its least-locking algorithm, which for
+   * InnoDB is an instant or in-place change that doesn't block reads or writes.
+   *
+   * @param table The table to alter.
+   * @param column The column to add.
+   * @param definition The SQL type & constraints of the column.
+   * @throws SQLException Thrown if the table cannot be altered.
+   */
+  void addColumn(@NotNull String table, @NotNull String column, @NotNull String definition)
+      throws SQLException {
+    if (hasColumn(table, column)) return;
+    execute("ALTER TABLE `" + table + "` ADD COLUMN `" + column + "` " + definition);
+  }
+
+  /**
+   * Adds a secondary index if it doesn't exist. InnoDB builds secondary indexes in place without
+   * blocking reads or writes.
+   *
+   * @param table The table to index.
+   * @param index The name of the index.
+   * @param columns The comma-separated columns of the index.
+   * @throws SQLException Thrown if the index cannot be created.
+   */
+  void addIndex(@NotNull String table, @NotNull String index, @NotNull String columns)
+      throws SQLException {
+    if (hasIndex(table, index)) return;
+    execute("CREATE INDEX `" + index + "` ON `" + table + "` (" + columns + ")");
+  }
+
+  /**
+   * Creates a partition of the account table if it doesn't exist. Partitions are created at the
+   * latest schema, so migrations that change the account table must change this too.
+   *
+   * @param table The name of the partition.
+   * @throws SQLException Thrown if the table cannot be created.
+   */
+  void createAccountTable(@NotNull String table) throws SQLException {
+
+    // The original table is created by Database and brought up to date by the migrations.
+    if (table.equals(Database.TABLE_ACCOUNTS)) return;
+
+    execute(
+        "CREATE TABLE IF NOT EXISTS `"
+            + table
+            + "`("
+            + "`player_id` varbinary(16) NOT NULL,"
+            + "`balance` double NOT NULL,"
+            + "`player_name` varchar(16) NULL,"
+            + "`version` bigint NOT NULL DEFAULT 0,"
+            + "`updated_at` bigint NOT NULL DEFAULT 0,"
+            + "PRIMARY KEY (`player_id`)"
+            + ") ENGINE=InnoDB");
+    addIndex(table, table + "_updated_at", "updated_at");
+    addIndex(table, table + "_balance", "balance, player_id");
+  }
+
+  /**
+   * @param table The table to inspect.
+   * @param index The name of the index.
+   * @return Returns true if the table has the named index.
+   * @throws SQLException Thrown if the metadata cannot be read.
+   */
+  boolean hasIndex(@NotNull String table, @NotNull String index) throws SQLException {
+
+    DatabaseMetaData metaData = conn.getMetaData();
+
+    try (ResultSet resultSet = metaData.getIndexInfo(conn.getCatalog(), null, table, false, true)) {
+      while (resultSet.next()) {
+        if (index.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @param table The table to inspect.
+   * @param column The name of the column.
+   * @return Returns true if the table has the named column.
+   * @throws SQLException Thrown if the metadata cannot be read.
+   */
+  boolean hasColumn(@NotNull String table, @NotNull String column) throws SQLException {
+
+    DatabaseMetaData metaData = conn.getMetaData();
+
+    try (ResultSet resultSet = metaData.getColumns(conn.getCatalog(), null, table, null)) {
+      while (resultSet.next()) {
+        if (column.equalsIgnoreCase(resultSet.getString("COLUMN_NAME"))) return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** A single step of a migration. */
+  @FunctionalInterface
+  interface Step {
+
+    /**
+     * @param migrator The migrator applying the step.
+     * @throws SQLException Thrown if the step fails.
+     */
+    void apply(@NotNull SchemaMigrator migrator) throws SQLException;
+  }
+
+  /** A versioned schema change. */
+  static class Migration {
+
+    final int version;
+    final String description;
+    final Step step;
+
+    Migration(int version, @NotNull String description, @NotNull Step step) {
+      this.version = version;
+      this.description = description;
+      this.step = step;
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * <b>TransactionLog</b> remembers the outcome of every transaction given a client transaction ID,
+ * so a retried transaction returns its first outcome instead of applying twice.
+ *
+ * <p>Outcomes are inserted in the same database transaction as the balance they changed, so an
+ * outcome is stored if and only if its change is. Recent outcomes are kept in a bounded window in
+ * memory, so most replays and every first run of a new ID cost at most one indexed lookup per
+ * drain of the account's mailbox.
+ *
+ * @author Jab
+ */
+class TransactionLog {
+
+  /** The most characters in a transaction ID. */
+  static final int MAX_TRANSACTION_ID_LENGTH = 64;
+
+  /** The amount of outcomes deleted per statement when pruning. */
+  static final int PRUNE_CHUNK_SIZE = 5_000;
+
+  /** The database to read and prune outcomes with. */
+  private final Database database;
+
+  /** How long outcomes are kept, in milliseconds. Zero keeps outcomes forever. */
+  private final long retentionMillis;
+
+  /** The most recently used outcomes. */
+  private final Map<Key, TransactionResult> window;
+
+  /**
+   * @param database The database to read and prune outcomes with.
+   * @param windowSize The most outcomes kept in memory.
+   * @param retentionMillis How long outcomes are kept, in milliseconds. Zero keeps outcomes
+   *     forever.
+   * @throws NullPointerException Thrown if the database is null.
+   */
+  TransactionLog(@NotNull Database database, int windowSize, long retentionMillis) {
+    this.database = database;
+    this.retentionMillis = retentionMillis;
+    this.window =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, TransactionResult> eldest) {
+            return size() > windowSize;
+          }
+        };
+  }
+
+  /**
+   * @param transactionId The transaction ID to test.
+   * @throws IllegalArgumentException Thrown if the transaction ID is empty or too long to store.
+   */
+  static void validate(@NotNull String transactionId) {
+    if (transactionId.isEmpty() || transactionId.length() > MAX_TRANSACTION_ID_LENGTH) {
+      throw new IllegalArgumentException(
+          "The transaction ID must be 1 to "
+              + MAX_TRANSACTION_ID_LENGTH
+              + " characters. ("
+              + transactionId
+              + " given)");
+    }
+  }
+
+  /**
+   * Finds the stored outcomes of transaction IDs, reading every ID missing from the window in one
+   * query.
+   *
+   * @param conn The connection to the primary to read with.
+   * @param playerId The player ID of the account.
+   * @param transactionIds The transaction IDs to find.
+   * @return The outcome of each transaction ID found, by ID.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL queries.
+   */
+  @NotNull
+  Map<String, TransactionResult> find(
+      @NotNull Connection conn, @NotNull UUID playerId, @NotNull Collection<String> transactionIds)
+      throws SQLException {
+
+    Map<String, TransactionResult> found = new HashMap<>();
+    if (transactionIds.isEmpty()) return found;
+
+    List<String> missing = new ArrayList<>();
+    synchronized (window) {
+      for (String transactionId : transactionIds) {
+        TransactionResult result = window.get(new Key(playerId, transactionId));
+        if (result != null) found.put(transactionId, result);
+        else missing.add(transactionId);
+      }
+    }
+
+    if (missing.isEmpty()) return found;
+
+    StringBuilder sql =
+        new StringBuilder("SELECT transaction_id, applied, delta, balance, created_at FROM ")
+            .append(Database.TABLE_TRANSACTIONS)
+            .append(" WHERE player_id = ? AND transaction_id IN (?");
+    for (int index = 1; index < missing.size(); index++) sql.append(",?");
+    sql.append(");");
+
+    List<TransactionResult> read = new ArrayList<>();
+
+    try (PreparedStatement statement = conn.prepareStatement(sql.toString())) {
+      statement.setBytes(1, UuidCodec.toBytes(playerId));
+      for (int index = 0; index < missing.size(); index++) {
+        statement.setString(index + 2, missing.get(index));
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          read.add(
+              new TransactionResult(
+                  playerId,
+                  resultSet.getString(1),
+                  resultSet.getBoolean(2),
+                  resultSet.getDouble(3),
+                  resultSet.getDouble(4),
+                  resultSet.getLong(5),
+                  false));
+        }
+      }
+    }
+
+    for (TransactionResult result : read) found.put(result.getTransactionId(), result);
+    remember(read);
+
+    return found;
+  }
+
+  /**
+   * Inserts outcomes without committing, so they join the caller's transaction.
+   *
+   * @param conn The connection to the primary, in a transaction.
+   * @param results The outcomes to insert. Each must have a transaction ID.
+   * @throws SQLException Thrown if an exception occurs while performing MySQL transactions.
+   */
+  void insert(@NotNull Connection conn, @NotNull List<TransactionResult> results)
+      throws SQLException {
+
+    String sql =
+        "INSERT INTO "
+            + Database.TABLE_TRANSACTIONS
+            + " (player_id, transaction_id, applied, delta, balance, created_at)"
+            + " VALUES (?,?,?,?,?,?);";
+
+    try (PreparedStatement statement = conn.prepareStatement(sql)) {
+      for (TransactionResult result : results) {
+        statement.setBytes(1, UuidCodec.toBytes(result.getPlayerId()));
+        statement.setString(2, result.getTransactionId());
+        statement.setBoolean(3, result.isApplied());
+        statement.setDouble(4, result.getDelta());
+        statement.setDouble(5, result.getBalance());
+        statement.setLong(6, result.getCreatedAt());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+
+  /**
+   * Adds stored outcomes to the window.
+   *
+   * @param results The outcomes. Each must have a transaction ID.
+   */
+  void remember(@NotNull List<TransactionResult> results) {
+    synchronized (window) {
+      for (TransactionResult result : results) {
+        window.put(new Key(result.getPlayerId(), result.getTransactionId()), result);
+      }
+    }
+  }
+
+  /**
+   * Deletes outcomes older than the retention period, one bounded chunk per statement so the table
+   * is never locked for long. Blocking; run off the main thread.
+   *
+   * @return The amount of outcomes deleted.
+   * @throws SQLException Thrown if a chunk fails. Chunks deleted before it stay deleted.
+   */
+  long prune() throws SQLException {
+
+    if (retentionMillis <= 0) return 0;
+
+    long cutoff = System.currentTimeMillis() - retentionMillis;
+    String sql = "DELETE FROM " + Database.TABLE_TRANSACTIONS + " WHERE created_at < ? LIMIT ?;";
+
+    long total = 0;
+
+    try (Connection conn = database.openWriteConnection();
+        PreparedStatement statement = conn.prepareStatement(sql)) {
+
+      statement.setLong(1, cutoff);
+      statement.setInt(2, PRUNE_CHUNK_SIZE);
+
+      int rows;
+      do {
+        rows = statement.executeUpdate();
+        total += rows;
+      } while (rows == PRUNE_CHUNK_SIZE);
+    }
+
+    return total;
+  }
+
+  /** The key of an outcome in the window. Transaction IDs are scoped to their account. */
+  private record Key(@NotNull UUID playerId, @NotNull String transactionId) {}
+}
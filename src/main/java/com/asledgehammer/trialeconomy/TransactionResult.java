@@ -0,0 +1,63 @@
+package com.asledgehammer.trialeconomy;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * <b>TransactionResult</b> is the outcome of a deposit, withdrawal or set made through {@link
+ * TrialEconomy}. Replaying a transaction ID returns the outcome of its first run.
+ *
+ * @author Jab
+ */
+@Getter
+public class TransactionResult {
+
+  /** The player ID of the account. */
+  private final UUID playerId;
+
+  /** (Optional) The ID the client gave the transaction. */
+  @Nullable private final String transactionId;
+
+  /** If false, the transaction was refused. (E.G: Insufficient balance) */
+  private final boolean applied;
+
+  /** The amount the balance changed by. Negative for withdrawals. */
+  private final double delta;
+
+  /** The balance after the transaction. */
+  private final double balance;
+
+  /** The time of the first run of the transaction, in epoch milliseconds. */
+  private final long createdAt;
+
+  /** If true, the transaction ID was seen before and this is the outcome of its first run. */
+  private final boolean replayed;
+
+  TransactionResult(
+      @NotNull UUID playerId,
+      @Nullable String transactionId,
+      boolean applied,
+      double delta,
+      double balance,
+      long createdAt,
+      boolean replayed) {
+    this.playerId = playerId;
+    this.transactionId = transactionId;
+    this.applied = applied;
+    this.delta = delta;
+    this.balance = balance;
+    this.createdAt = createdAt;
+    this.replayed = replayed;
+  }
+
+  /** @return A copy of the result marked as replayed. */
+  @NotNull
+  TransactionResult replay() {
+    if (replayed) return this;
+    return new TransactionResult(
+        playerId, transactionId, applied, delta, balance, createdAt, true);
+  }
+}
@@ -4,6 +4,7 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -11,18 +12,28 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
 import java.util.logging.Logger;
 
 /**
@@ -35,15 +46,87 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
   public static TrialEconomy INSTANCE;
   static Logger logger;
 
+  /** The interval between leaderboard reconciliations with the database, in seconds. */
+  private static final long LEADERBOARD_RECONCILE_SECONDS = 30;
+
+  /** The clock skew tolerated between servers writing the same database, in milliseconds. */
+  private static final long CLOCK_SKEW_MILLIS = 5_000;
+
+  /** The interval between writes of buffered history entries, in ticks. */
+  private static final long HISTORY_FLUSH_TICKS = 20;
+
+  /** The interval between prunes of expired history entries, in ticks. */
+  private static final long HISTORY_PRUNE_TICKS = 20 * 60 * 60;
+
+  /** The interval between prunes of expired transaction outcomes, in ticks. */
+  private static final long TRANSACTION_PRUNE_TICKS = 20 * 60 * 60;
+
+  /** The most time queued account operations get to finish when disabling, in milliseconds. */
+  private static final long MAILBOX_CLOSE_MILLIS = 30_000;
+
+  /** The interval between checks for due economy jobs, in ticks. */
+  private static final long JOB_CHECK_TICKS = 20 * 60;
+
   /** All online-player accounts are stored here. */
-  private final Map<UUID, PlayerAccount> accounts = new HashMap<>();
+  private final Map<UUID, PlayerAccount> accounts = new ConcurrentHashMap<>();
+
+  /** Runs the operations of each account in order. */
+  private AccountMailboxes mailboxes;
+
+  /** The outcomes of transactions given IDs, so retries never apply twice. */
+  private TransactionLog transactions;
 
   /** The internal database management. */
   @Getter(AccessLevel.PACKAGE)
   private Database database;
 
-  /** All dialog for the plugin. */
-  @Getter private Dialog dialog;
+  /** All dialog for the plugin. Replaced whole when reloaded. */
+  private volatile DialogCatalog dialogs;
+
+  /** The settings of the plugin. (config.yml) */
+  private ConfigurationSection config;
+
+  /** Every currency held by the accounts. */
+  private CurrencyRegistry currencies = CurrencyRegistry.DEFAULT;
+
+  /** Tells other plugins about balance changes. */
+  private BalanceNotifier notifier;
+
+  /** Records every change to account balances. */
+  @Getter(AccessLevel.PACKAGE)
+  private HistoryLedger ledger;
+
+  /** Runs the configured payroll, rent & upkeep jobs. */
+  private EconomyJobs jobs;
+
+  /** All accounts ordered by balance. */
+  @Getter(AccessLevel.PACKAGE)
+  private final Leaderboard leaderboard = new Leaderboard();
+
+  /** If true, the leaderboard is kept in a snapshot between restarts. */
+  private boolean warmStart;
+
+  /** If true, an export, import or rebalance is running. */
+  private final AtomicBoolean transferring = new AtomicBoolean();
+
+  public TrialEconomy() {}
+
+  /**
+   * Creates the plugin outside of a server's plugin class loader. (E.G: Headless load harnesses)
+   *
+   * @param loader The loader to register the plugin with.
+   * @param description The description of the plugin.
+   * @param dataFolder The folder storing the plugin's files.
+   * @param file The file of the plugin.
+   * @throws IllegalStateException Thrown if invoked by a plugin class loader.
+   */
+  TrialEconomy(
+      @NotNull JavaPluginLoader loader,
+      @NotNull PluginDescriptionFile description,
+      @NotNull File dataFolder,
+      @NotNull File file) {
+    super(loader, description, dataFolder, file);
+  }
 
   /**
    * Gets the account for a player.
@@ -64,7 +147,9 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
 
     try {
 
+      Diagnostics.CacheMiss trace = Diagnostics.cacheMiss("getAccount");
       account = INSTANCE.database.getAccount(offlinePlayer);
+      if (trace != null) trace.finish(offlinePlayer.getUniqueId(), account != null ? 1 : 0);
 
       if (account == null) {
         throw new NullPointerException(
@@ -83,6 +168,741 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
   }
 
   /**
+   * Reads the balance of a player's account without loading the account.
+   *
+   * <p><b>NOTE:</b> For offline players, the read may be served by a read replica and trail the
+   * latest balance by up to the configured replication lag. Use {@link
+   * TrialEconomy#getAccount(OfflinePlayer)} to read a balance before modifying it.
+   *
+   * @param offlinePlayer The player associated with the account.
+   * @return The balance of the account.
+   * @throws NullPointerException Thrown if the player doesn't have an account.
+   */
+  public static double getBalance(@NotNull OfflinePlayer offlinePlayer) {
+
+    PlayerAccount account = INSTANCE.accounts.get(offlinePlayer.getUniqueId());
+
+    if (account != null) return account.getBalance();
+
+    try {
+
+      Diagnostics.CacheMiss trace = Diagnostics.cacheMiss("getBalance");
+      Double balance = INSTANCE.database.getBalance(offlinePlayer.getUniqueId());
+      if (trace != null) trace.finish(offlinePlayer.getUniqueId(), balance != null ? 1 : 0);
+
+      if (balance == null) {
+        throw new NullPointerException(
+            "No account exists for the player: " + offlinePlayer.getName());
+      }
+
+      return balance;
+
+    } catch (SQLException e) {
+      INSTANCE.disable("A MySQL error occurred.");
+      e.printStackTrace();
+    }
+
+    return 0.0;
+  }
+
+  /**
+   * Reads the balance of a currency of a player's account without loading the account. (See
+   * {@link TrialEconomy#getBalance(OfflinePlayer)})
+   *
+   * @param offlinePlayer The player associated with the account.
+   * @param currency The currency to read.
+   * @return The balance of the currency.
+   * @throws NullPointerException Thrown if the player doesn't have an account.
+   * @throws IllegalArgumentException Thrown if the currency isn't registered.
+   */
+  public static double getBalance(
+      @NotNull OfflinePlayer offlinePlayer, @NotNull Currency currency) {
+
+    validate(currency);
+
+    PlayerAccount account = INSTANCE.accounts.get(offlinePlayer.getUniqueId());
+
+    if (account != null) return account.getBalance(currency);
+
+    try {
+
+      Diagnostics.CacheMiss trace = Diagnostics.cacheMiss("getBalance");
+      Double balance = INSTANCE.database.getBalance(offlinePlayer.getUniqueId(), currency, false);
+      if (trace != null) trace.finish(offlinePlayer.getUniqueId(), balance != null ? 1 : 0);
+
+      if (balance == null) {
+        throw new NullPointerException(
+            "No account exists for the player: " + offlinePlayer.getName());
+      }
+
+      return balance;
+
+    } catch (SQLException e) {
+      INSTANCE.disable("A MySQL error occurred.");
+      e.printStackTrace();
+    }
+
+    return 0.0;
+  }
+
+  /** @return Every currency held by the accounts. */
+  @NotNull
+  public static CurrencyRegistry getCurrencies() {
+    return INSTANCE.currencies;
+  }
+
+  /**
+   * Queues an operation on a player's account. Operations on the same account run one at a time in
+   * the order they were submitted, off the main thread. Operations on different accounts run in
+   * parallel.
+   *
+   * <p>Changes made by consecutive operations are saved together in one write. Use this rather than
+   * changing the account from {@link TrialEconomy#getAccount(OfflinePlayer)} when the account may
+   * be changed from more than one thread.
+   *
+   * @param player The player associated with the account.
+   * @param operation The operation to run.
+   * @return The result of the operation. Completes off the main thread once the changes made by the
+   *     operation are saved. If the player doesn't have an account, it completes exceptionally with
+   *     a {@link NullPointerException}.
+   */
+  @NotNull
+  public static <T> CompletableFuture<T> submit(
+      @NotNull OfflinePlayer player, @NotNull AccountOperation<T> operation) {
+    return INSTANCE.mailboxes.submit(player, operation);
+  }
+
+  /**
+   * Deposits an amount to a player's account through the account's mailbox. (See {@link
+   * TrialEconomy#submit(OfflinePlayer, AccountOperation)})
+   *
+   * <p>Give a transaction ID to make retries safe: if a deposit with the same ID was already made
+   * to the account, it isn't made again and the outcome of the first deposit is returned. IDs are
+   * remembered for the configured retention period.
+   *
+   * @param player The player associated with the account.
+   * @param amount The amount to deposit.
+   * @param cause What the deposit is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the deposit, recorded in the account's history.
+   * @param transactionId (Optional) The ID of the deposit, unique for the account.
+   * @return The outcome of the deposit. Completes off the main thread once it is saved.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, the actor is longer than 64 characters, or the transaction ID is empty
+   *     or longer than 64 characters.
+   */
+  @NotNull
+  public static CompletableFuture<TransactionResult> deposit(
+      @NotNull OfflinePlayer player,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+    return deposit(player, INSTANCE.currencies.getPrimary(), amount, cause, actor, transactionId);
+  }
+
+  /**
+   * Deposits an amount of a currency to a player's account through the account's mailbox. (See
+   * {@link TrialEconomy#deposit(OfflinePlayer, double, String, String, String)})
+   *
+   * @param player The player associated with the account.
+   * @param currency The currency to deposit.
+   * @param amount The amount to deposit.
+   * @param cause What the deposit is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the deposit, recorded in the account's history.
+   * @param transactionId (Optional) The ID of the deposit, unique for the account.
+   * @return The outcome of the deposit, in the currency. Completes off the main thread once it is
+   *     saved.
+   * @throws IllegalArgumentException Thrown if the currency isn't registered, the amount is
+   *     negative, the cause is empty or longer than 32 characters, the actor is longer than 64
+   *     characters, or the transaction ID is empty or longer than 64 characters.
+   */
+  @NotNull
+  public static CompletableFuture<TransactionResult> deposit(
+      @NotNull OfflinePlayer player,
+      @NotNull Currency currency,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+
+    validate(currency, amount, cause, actor, transactionId);
+
+    return INSTANCE.mailboxes.transact(
+        player,
+        currency,
+        transactionId,
+        account -> {
+          account.deposit(currency, amount, cause, actor);
+          return true;
+        });
+  }
+
+  /**
+   * Withdraws an amount from a player's account through the account's mailbox. If the balance is
+   * less than the amount, nothing is withdrawn and the outcome isn't applied. (See {@link
+   * TrialEconomy#deposit(OfflinePlayer, double, String, String, String)} for transaction IDs)
+   *
+   * @param player The player associated with the account.
+   * @param amount The amount to withdraw.
+   * @param cause What the withdrawal is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the withdrawal, recorded in the account's history.
+   * @param transactionId (Optional) The ID of the withdrawal, unique for the account.
+   * @return The outcome of the withdrawal. Completes off the main thread once it is saved.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, the actor is longer than 64 characters, or the transaction ID is empty
+   *     or longer than 64 characters.
+   */
+  @NotNull
+  public static CompletableFuture<TransactionResult> withdraw(
+      @NotNull OfflinePlayer player,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+    return withdraw(player, INSTANCE.currencies.getPrimary(), amount, cause, actor, transactionId);
+  }
+
+  /**
+   * Withdraws an amount of a currency from a player's account through the account's mailbox. (See
+   * {@link TrialEconomy#withdraw(OfflinePlayer, double, String, String, String)})
+   *
+   * @param player The player associated with the account.
+   * @param currency The currency to withdraw.
+   * @param amount The amount to withdraw.
+   * @param cause What the withdrawal is for, recorded in the account's history. (E.G: "shop")
+   * @param actor (Optional) Who made the withdrawal, recorded in the account's history.
+   * @param transactionId (Optional) The ID of the withdrawal, unique for the account.
+   * @return The outcome of the withdrawal, in the currency. Completes off the main thread once it
+   *     is saved.
+   * @throws IllegalArgumentException Thrown if the currency isn't registered, the amount is
+   *     negative, the cause is empty or longer than 32 characters, the actor is longer than 64
+   *     characters, or the transaction ID is empty or longer than 64 characters.
+   */
+  @NotNull
+  public static CompletableFuture<TransactionResult> withdraw(
+      @NotNull OfflinePlayer player,
+      @NotNull Currency currency,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+
+    validate(currency, amount, cause, actor, transactionId);
+
+    return INSTANCE.mailboxes.transact(
+        player,
+        currency,
+        transactionId,
+        account -> {
+          // Checked in the mailbox so no other change can land between the check and withdrawal.
+          if (!account.has(currency, amount)) return false;
+          account.withdraw(currency, amount, cause, actor);
+          return true;
+        });
+  }
+
+  /**
+   * Sets the balance of a player's account through the account's mailbox. (See {@link
+   * TrialEconomy#deposit(OfflinePlayer, double, String, String, String)} for transaction IDs)
+   *
+   * @param player The player associated with the account.
+   * @param amount The balance to set.
+   * @param cause What the change is for, recorded in the account's history. (E.G: "reset")
+   * @param actor (Optional) Who made the change, recorded in the account's history.
+   * @param transactionId (Optional) The ID of the change, unique for the account.
+   * @return The outcome of the change. Completes off the main thread once it is saved.
+   * @throws IllegalArgumentException Thrown if the amount is negative, the cause is empty or longer
+   *     than 32 characters, the actor is longer than 64 characters, or the transaction ID is empty
+   *     or longer than 64 characters.
+   */
+  @NotNull
+  public static CompletableFuture<TransactionResult> setBalance(
+      @NotNull OfflinePlayer player,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+    return setBalance(
+        player, INSTANCE.currencies.getPrimary(), amount, cause, actor, transactionId);
+  }
+
+  /**
+   * Sets the balance of a currency of a player's account through the account's mailbox. (See
+   * {@link TrialEconomy#setBalance(OfflinePlayer, double, String, String, String)})
+   *
+   * @param player The player associated with the account.
+   * @param currency The currency to set.
+   * @param amount The balance to set.
+   * @param cause What the change is for, recorded in the account's history. (E.G: "reset")
+   * @param actor (Optional) Who made the change, recorded in the account's history.
+   * @param transactionId (Optional) The ID of the change, unique for the account.
+   * @return The outcome of the change, in the currency. Completes off the main thread once it is
+   *     saved.
+   * @throws IllegalArgumentException Thrown if the currency isn't registered, the amount is
+   *     negative, the cause is empty or longer than 32 characters, the actor is longer than 64
+   *     characters, or the transaction ID is empty or longer than 64 characters.
+   */
+  @NotNull
+  public static CompletableFuture<TransactionResult> setBalance(
+      @NotNull OfflinePlayer player,
+      @NotNull Currency currency,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+
+    validate(currency, amount, cause, actor, transactionId);
+
+    return INSTANCE.mailboxes.transact(
+        player,
+        currency,
+        transactionId,
+        account -> {
+          account.setBalance(currency, amount, cause, actor);
+          return true;
+        });
+  }
+
+  private static void validate(@NotNull Currency currency) {
+    if (!INSTANCE.currencies.contains(currency)) {
+      throw new IllegalArgumentException("The currency '" + currency + "' isn't registered.");
+    }
+  }
+
+  private static void validate(
+      @NotNull Currency currency,
+      double amount,
+      @NotNull String cause,
+      @Nullable String actor,
+      @Nullable String transactionId) {
+    validate(currency);
+    if (amount < 0) {
+      throw new IllegalArgumentException("The amount cannot be negative. (" + amount + " given)");
+    }
+    HistoryLedger.validate(cause, actor);
+    if (transactionId != null) TransactionLog.validate(transactionId);
+  }
+
+  /**
+   * Gets a page of the balance leaderboard.
+   *
+   * <p><b>NOTE:</b> The leaderboard is loaded asynchronously on enable. Until {@link
+   * TrialEconomy#isLeaderboardReady()} returns true, only accounts changed since then are ranked.
+   *
+   * @param offset The amount of top entries to skip.
+   * @param limit The most entries to return.
+   * @return The entries ranked from offset + 1, in order.
+   * @throws IllegalArgumentException Thrown if the offset or limit is negative.
+   */
+  @NotNull
+  public static List<LeaderboardEntry> getTopBalances(int offset, int limit) {
+    return INSTANCE.leaderboard.getRange(offset, limit);
+  }
+
+  /**
+   * @param playerId The player ID of the account.
+   * @return The 1-based balance rank of the account. If the account isn't ranked, -1 is returned.
+   */
+  public static int getBalanceRank(@NotNull UUID playerId) {
+    return INSTANCE.leaderboard.getRank(playerId);
+  }
+
+  /** @return The amount of accounts ranked on the balance leaderboard. */
+  public static int getRankedAccountCount() {
+    return INSTANCE.leaderboard.size();
+  }
+
+  /** @return Returns true if the balance leaderboard has been loaded from the database. */
+  public static boolean isLeaderboardReady() {
+    return INSTANCE.leaderboard.isReady();
+  }
+
+  /**
+   * <b>NOTE:</b> Until {@link TrialEconomy#isLeaderboardReady()} returns true, only accounts
+   * changed since the plugin enabled are counted.
+   *
+   * @return The sum of every account's balance.
+   */
+  public static double getMoneySupply() {
+    return INSTANCE.leaderboard.getAggregates().getMoneySupply();
+  }
+
+  /**
+   * <b>NOTE:</b> Until {@link TrialEconomy#isLeaderboardReady()} returns true, only accounts
+   * changed since the plugin enabled are counted.
+   *
+   * @return The amount of accounts.
+   */
+  public static long getAccountCount() {
+    return INSTANCE.leaderboard.getAggregates().getAccountCount();
+  }
+
+  /**
+   * <b>NOTE:</b> Until {@link TrialEconomy#isLeaderboardReady()} returns true, only accounts
+   * changed since the plugin enabled are counted.
+   *
+   * @return A snapshot of the economy-wide aggregates, including the balance distribution.
+   */
+  @NotNull
+  public static EconomyStats getEconomyStats() {
+    return INSTANCE.leaderboard.getAggregates().snapshot();
+  }
+
+  /** @return The dialog of the default locale. */
+  @NotNull
+  public Dialog getDialog() {
+    return dialogs.getDefaultDialog();
+  }
+
+  /**
+   * @param sender The sender to read dialog for.
+   * @return The dialog of the sender's client locale. Senders that aren't players get the default
+   *     locale.
+   */
+  @NotNull
+  public Dialog getDialog(@NotNull CommandSender sender) {
+    DialogCatalog dialogs = this.dialogs;
+    return sender instanceof Player player ? dialogs.get(player) : dialogs.getDefaultDialog();
+  }
+
+  /** @return The folder that '/balance export' and '/balance import' files are kept in. */
+  @NotNull
+  public static File getTransferFolder() {
+    return new File(INSTANCE.getDataFolder(), "transfers");
+  }
+
+  /**
+   * Exports every account to a file off the main thread.
+   *
+   * @param file The file to write. If it exists, it is replaced once the export completes.
+   * @param format The format of the file.
+   * @param progress (Optional) Receives the running total of accounts exported. Invoked off the
+   *     main thread.
+   * @return The amount of accounts exported. Completes on the main thread. If another transfer is
+   *     running, it completes exceptionally with an {@link IllegalStateException}.
+   */
+  @NotNull
+  public static CompletableFuture<Long> exportAccounts(
+      @NotNull File file, @NotNull AccountTransfer.Format format, @Nullable LongConsumer progress) {
+    return INSTANCE.transfer(
+        () -> AccountTransfer.exportAccounts(INSTANCE.database, file, format, progress), false);
+  }
+
+  /**
+   * Imports accounts from a file off the main thread. Accounts in the file are created or have the
+   * balances of the file's currencies overwritten. Loaded accounts are reloaded afterwards,
+   * discarding unsaved changes.
+   *
+   * @param file The file to read.
+   * @param format The format of the file.
+   * @param progress (Optional) Receives the running total of accounts imported. Invoked off the
+   *     main thread.
+   * @return The amount of accounts imported. Completes on the main thread. If another transfer is
+   *     running, it completes exceptionally with an {@link IllegalStateException}.
+   */
+  @NotNull
+  public static CompletableFuture<Long> importAccounts(
+      @NotNull File file, @NotNull AccountTransfer.Format format, @Nullable LongConsumer progress) {
+    return INSTANCE.transfer(
+        () -> AccountTransfer.importAccounts(INSTANCE.database, file, format, progress), true);
+  }
+
+  /**
+   * Moves every account stored outside its partition off the main thread, completing a change of
+   * 'storage.partitions'. Accounts stay readable and writable throughout.
+   *
+   * @param progress (Optional) Receives the running total of accounts moved. Invoked off the main
+   *     thread.
+   * @return The amount of accounts moved. Completes on the main thread. If a transfer is running,
+   *     it completes exceptionally with an {@link IllegalStateException}.
+   */
+  @NotNull
+  public static CompletableFuture<Long> rebalanceAccounts(@Nullable LongConsumer progress) {
+    return INSTANCE.transfer(() -> INSTANCE.database.rebalance(progress), false);
+  }
+
+  /**
+   * @param task The transfer to run off the main thread.
+   * @param reload If true, loaded accounts are reloaded from the database once the task completes.
+   * @return The result of the task, completed on the main thread.
+   */
+  @NotNull
+  private CompletableFuture<Long> transfer(@NotNull Transfer task, boolean reload) {
+
+    CompletableFuture<Long> future = new CompletableFuture<>();
+
+    if (!transferring.compareAndSet(false, true)) {
+      future.completeExceptionally(new IllegalStateException("A transfer is already running."));
+      return future;
+    }
+
+    Bukkit.getScheduler()
+        .runTaskAsynchronously(
+            this,
+            () -> {
+              long count;
+              try {
+                count = task.run();
+              } catch (IOException | SQLException | RuntimeException e) {
+                transferring.set(false);
+                Bukkit.getScheduler().runTask(this, () -> future.completeExceptionally(e));
+                return;
+              }
+
+              Bukkit.getScheduler()
+                  .runTask(
+                      this,
+                      () -> {
+                        transferring.set(false);
+                        if (reload) reloadAccounts();
+                        future.complete(count);
+                      });
+            });
+
+    return future;
+  }
+
+  /** Queues reloading the balances of every loaded account from the primary. */
+  private void reloadAccounts() {
+    for (UUID playerId : accounts.keySet()) {
+      mailboxes
+          .reload(playerId)
+          .whenComplete(
+              (ignored, e) -> {
+                if (e == null) return;
+                e.printStackTrace(System.err);
+                Bukkit.getScheduler().runTask(this, () -> disable("A MySQL error occurred."));
+              });
+    }
+  }
+
+  /**
+   * Reads a page of an account's history, newest first, off the main thread.
+   *
+   * <p><b>NOTE:</b> Changes are written to the history in batches every second, so the most recent
+   * changes may not be included yet.
+   *
+   * @param playerId The player ID of the account.
+   * @param after (Optional) The last entry of the previous page. If null, the newest page is read.
+   * @param limit The most entries to read.
+   * @return The entries, newest first. Completes on the main thread.
+   * @throws IllegalArgumentException Thrown if the limit is negative.
+   */
+  @NotNull
+  public static CompletableFuture<List<HistoryEntry>> getHistory(
+      @NotNull UUID playerId, @Nullable HistoryEntry after, int limit) {
+
+    if (limit < 0) throw new IllegalArgumentException("The limit cannot be negative.");
+
+    TrialEconomy plugin = INSTANCE;
+    CompletableFuture<List<HistoryEntry>> future = new CompletableFuture<>();
+
+    Bukkit.getScheduler()
+        .runTaskAsynchronously(
+            plugin,
+            () -> {
+              try {
+                List<HistoryEntry> entries = plugin.ledger.getPage(playerId, after, 0, limit);
+                Bukkit.getScheduler().runTask(plugin, () -> future.complete(entries));
+              } catch (SQLException e) {
+                Bukkit.getScheduler().runTask(plugin, () -> future.completeExceptionally(e));
+              }
+            });
+
+    return future;
+  }
+
+  /**
+   * Reads a page of the accounts with primary balances in a range, richest first, off the main
+   * thread. Pages seek from the last account of the previous page, so deep pages stay cheap.
+   *
+   * <p><b>NOTE:</b> The read may be served by a read replica and trail the latest balances by up to
+   * the configured replication lag.
+   *
+   * @param min The lowest balance to include.
+   * @param max The highest balance to include.
+   * @param after (Optional) The last account of the previous page. If null, the first page is read.
+   * @param limit The most accounts to read.
+   * @return The accounts, richest first, ranked within the range. Completes on the main thread.
+   * @throws IllegalArgumentException Thrown if the limit is negative or the range is empty.
+   */
+  @NotNull
+  public static CompletableFuture<List<LeaderboardEntry>> listAccounts(
+      double min, double max, @Nullable LeaderboardEntry after, int limit) {
+
+    if (limit < 0) throw new IllegalArgumentException("The limit cannot be negative.");
+    if (!(min <= max)) {
+      throw new IllegalArgumentException("The range is empty. (" + min + " to " + max + ")");
+    }
+
+    TrialEconomy plugin = INSTANCE;
+    CompletableFuture<List<LeaderboardEntry>> future = new CompletableFuture<>();
+
+    Bukkit.getScheduler()
+        .runTaskAsynchronously(
+            plugin,
+            () -> {
+              try {
+                List<LeaderboardEntry> entries =
+                    plugin.database.getAccountsInRange(min, max, after, 0, limit);
+                Bukkit.getScheduler().runTask(plugin, () -> future.complete(entries));
+              } catch (SQLException e) {
+                Bukkit.getScheduler().runTask(plugin, () -> future.completeExceptionally(e));
+              }
+            });
+
+    return future;
+  }
+
+  /**
+   * Reloads every locale's dialog off the main thread, then swaps it in. Commands keep using the
+   * old dialog until the swap. The database isn't touched.
+   *
+   * @return Completes on the main thread once the new dialog is in use.
+   */
+  @NotNull
+  public static CompletableFuture<Void> reloadDialog() {
+
+    TrialEconomy plugin = INSTANCE;
+    CompletableFuture<Void> future = new CompletableFuture<>();
+
+    Bukkit.getScheduler()
+        .runTaskAsynchronously(
+            plugin,
+            () -> {
+              try {
+                plugin.dialogs = plugin.createDialogCatalog();
+                Bukkit.getScheduler().runTask(plugin, () -> future.complete(null));
+              } catch (RuntimeException e) {
+                Bukkit.getScheduler().runTask(plugin, () -> future.completeExceptionally(e));
+              }
+            });
+
+    return future;
+  }
+
+  /**
+   * Records a change to an account's balance in its history, then updates everything derived from
+   * the balance. Called by the account's mutators.
+   *
+   * @param account The account that changed.
+   * @param currency The index of the currency that changed.
+   * @param previous The balance before the change.
+   * @param balance The balance after the change.
+   * @param delta The amount the balance changed by.
+   * @param cause What the change was for.
+   * @param actor (Optional) Who made the change.
+   */
+  static void onBalanceChanged(
+      @NotNull PlayerAccount account,
+      int currency,
+      double previous,
+      double balance,
+      double delta,
+      @NotNull String cause,
+      @Nullable String actor) {
+
+    onBalanceRecorded(account, currency, previous, balance, delta, cause, actor);
+
+    // The leaderboard and economy statistics follow the primary currency.
+    if (currency == 0) onBalanceChanged(account, Math.abs(delta));
+  }
+
+  /**
+   * Records a change to an account's balance in its history and announces it, without updating
+   * what is derived from the balance. Mailbox drains update that once per drain instead. (See
+   * {@link TrialEconomy#onBalanceChanged(PlayerAccount, double)})
+   *
+   * @param account The account that changed.
+   * @param currency The index of the currency that changed.
+   * @param previous The balance before the change.
+   * @param balance The balance after the change.
+   * @param delta The amount the balance changed by.
+   * @param cause What the change was for.
+   * @param actor (Optional) Who made the change.
+   */
+  static void onBalanceRecorded(
+      @NotNull PlayerAccount account,
+      int currency,
+      double previous,
+      double balance,
+      double delta,
+      @NotNull String cause,
+      @Nullable String actor) {
+
+    TrialEconomy plugin = INSTANCE;
+    if (plugin == null) return;
+
+    if (plugin.ledger != null) {
+      Currency changed = plugin.currencies.getAll().get(currency);
+      plugin.ledger.record(account.getPlayerId(), changed, delta, balance, cause, actor);
+    }
+
+    if (plugin.notifier != null) {
+      plugin.notifier.announce(account.getPlayerId(), currency, previous, balance, cause, actor);
+    }
+  }
+
+  /**
+   * Updates everything derived from an account's balance.
+   *
+   * @param account The account that changed.
+   */
+  static void onBalanceChanged(@NotNull PlayerAccount account) {
+    onBalanceChanged(account, 0);
+  }
+
+  /**
+   * Updates everything derived from an account's primary balance.
+   *
+   * @param account The account that changed.
+   * @param volume The amount of the primary currency moved, added to the transaction volume.
+   */
+  static void onBalanceChanged(@NotNull PlayerAccount account, double volume) {
+
+    TrialEconomy plugin = INSTANCE;
+    if (plugin == null) return;
+
+    if (volume != 0) plugin.leaderboard.getAggregates().recordVolume(volume);
+    plugin.leaderboard.update(account.getPlayerId(), account.getPlayerName(), account.getBalance());
+  }
+
+  /**
+   * Tells balance listeners about a change made by another server, found when an account is
+   * reloaded.
+   *
+   * @param account The account that changed.
+   * @param currency The index of the currency that changed.
+   * @param previous The balance before the account was reloaded.
+   */
+  static void onBalanceReloaded(@NotNull PlayerAccount account, int currency, double previous) {
+
+    TrialEconomy plugin = INSTANCE;
+    if (plugin == null || plugin.notifier == null) return;
+
+    double balance = account.getBalance(plugin.currencies.getAll().get(currency));
+    plugin.notifier.announce(
+        account.getPlayerId(), currency, previous, balance, PlayerAccount.RELOAD_CAUSE, null);
+  }
+
+  /**
+   * Adds a listener told about balance changes without creating Bukkit events. (See {@link
+   * BalanceChangeEvent} for when listeners are called)
+   *
+   * @param listener The listener to add.
+   */
+  public static void addBalanceListener(@NotNull BalanceListener listener) {
+    INSTANCE.notifier.addListener(listener);
+  }
+
+  /** @param listener The listener to remove. */
+  public static void removeBalanceListener(@NotNull BalanceListener listener) {
+    INSTANCE.notifier.removeListener(listener);
+  }
+
+  /**
+   * <b>NOTE:</b> For offline players, the check may be served by a read replica.
+   *
    * @param playerId The player ID to test.
    * @return Returns true if the player has an account.
    */
@@ -104,18 +924,8 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
     INSTANCE = this;
     logger = getLogger();
 
-    if (!loadDialog()) return;
-
     Database.Credentials credentials = getCredentials();
-    if (credentials == null) return;
-
-    database = new Database(credentials);
-
-    try {
-      database.connect();
-    } catch (SQLException e) {
-      e.printStackTrace();
-    }
+    if (credentials == null || !enable(credentials)) return;
 
     BalanceCommand balanceCommand = new BalanceCommand();
     PluginCommand commandBalance = Objects.requireNonNull(getCommand("balance"));
@@ -130,9 +940,296 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
     }
   }
 
+  /**
+   * Loads the dialog and connects to the database without registering commands or listeners.
+   *
+   * <p><b>NOTE:</b> Headless load harnesses use this in place of {@link TrialEconomy#onEnable()}.
+   *
+   * @param credentials The credentials used to connect to the database.
+   * @return Returns true if the plugin is ready to load accounts.
+   * @throws NullPointerException Thrown if the credentials is null.
+   */
+  boolean enable(@NotNull Database.Credentials credentials) {
+
+    INSTANCE = this;
+    logger = getLogger();
+
+    if (!loadDialog()) return false;
+    loadConfig();
+
+    int partitions = config.getInt("storage.partitions", 1);
+    if (partitions < 1 || partitions > AccountPartitions.MAX_PARTITIONS) {
+      throw new YAMLException(
+          "The field 'storage.partitions' must be 1 to " + AccountPartitions.MAX_PARTITIONS + ".");
+    }
+
+    long slowOperationMillis = config.getLong("diagnostics.slow-operation-ms", 0);
+    if (slowOperationMillis < 0) {
+      throw new YAMLException("The field 'diagnostics.slow-operation-ms' cannot be negative.");
+    }
+    Diagnostics.setSlowThreshold(slowOperationMillis);
+
+    warmStart = config.getBoolean("storage.warm-start", true);
+
+    currencies = CurrencyRegistry.load(config);
+    database = new Database(credentials, partitions, currencies);
+
+    boolean coalesce = config.getBoolean("events.coalesce", true);
+    notifier = new BalanceNotifier(currencies, coalesce);
+    if (coalesce) Bukkit.getScheduler().runTaskTimer(this, notifier::flush, 1, 1);
+
+    try {
+      database.connect();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+
+    int mailboxThreads = config.getInt("mailbox.threads", 4);
+    if (mailboxThreads < 1) {
+      throw new YAMLException("The field 'mailbox.threads' must be at least 1.");
+    }
+
+    int transactionWindow = config.getInt("transactions.window", 10_000);
+    long transactionRetentionDays = config.getLong("transactions.retention-days", 7);
+    if (transactionWindow < 0) {
+      throw new YAMLException("The field 'transactions.window' cannot be negative.");
+    } else if (transactionRetentionDays < 0) {
+      throw new YAMLException("The field 'transactions.retention-days' cannot be negative.");
+    }
+
+    transactions =
+        new TransactionLog(
+            database, transactionWindow, TimeUnit.DAYS.toMillis(transactionRetentionDays));
+    mailboxes = new AccountMailboxes(database, accounts, transactions, mailboxThreads);
+
+    long retentionDays = config.getLong("history.retention-days", 90);
+    if (retentionDays < 0) {
+      throw new YAMLException("The field 'history.retention-days' cannot be negative.");
+    }
+
+    ledger = new HistoryLedger(database, TimeUnit.DAYS.toMillis(retentionDays));
+    Bukkit.getScheduler()
+        .runTaskTimerAsynchronously(
+            this, this::flushHistory, HISTORY_FLUSH_TICKS, HISTORY_FLUSH_TICKS);
+    Bukkit.getScheduler()
+        .runTaskTimerAsynchronously(this, this::pruneHistory, 20 * 60, HISTORY_PRUNE_TICKS);
+    Bukkit.getScheduler()
+        .runTaskTimerAsynchronously(
+            this, this::pruneTransactions, 20 * 60, TRANSACTION_PRUNE_TICKS);
+
+    ConfigurationSection cfgRules = config.getConfigurationSection("jobs.rules");
+    List<EconomyJob> rules =
+        cfgRules != null ? EconomyJob.load(cfgRules, currencies) : Collections.emptyList();
+
+    int jobChunkSize = config.getInt("jobs.chunk-size", 500);
+    double jobBudgetMillis = config.getDouble("jobs.tick-budget-ms", 2);
+    if (jobChunkSize < 1) {
+      throw new YAMLException("The field 'jobs.chunk-size' must be at least 1.");
+    } else if (!(jobBudgetMillis > 0)) {
+      throw new YAMLException("The field 'jobs.tick-budget-ms' must be more than 0.");
+    }
+
+    jobs =
+        new EconomyJobs(
+            database,
+            mailboxes,
+            rules,
+            jobChunkSize,
+            (long) (jobBudgetMillis * 1_000_000),
+            task -> Bukkit.getScheduler().runTask(this, task),
+            task -> Bukkit.getScheduler().runTaskAsynchronously(this, task));
+    if (!jobs.isEmpty()) {
+      Bukkit.getScheduler().runTaskTimer(this, jobs::tick, 1, 1);
+      Bukkit.getScheduler()
+          .runTaskTimerAsynchronously(this, this::checkJobs, 20 * 10, JOB_CHECK_TICKS);
+    }
+
+    ReplicaRouter replicas = database.getReplicas();
+    if (replicas.isEnabled()) {
+      long period = replicas.getPolicy().getHealthCheckSeconds() * 20L;
+      Bukkit.getScheduler().runTaskTimerAsynchronously(this, replicas::checkHealth, period, period);
+    }
+
+    Bukkit.getScheduler().runTaskAsynchronously(this, this::seedLeaderboard);
+
+    return true;
+  }
+
+  /** Seeds the leaderboard, then reconciles it periodically. Blocking; run off the main thread. */
+  private void seedLeaderboard() {
+
+    long start = System.nanoTime();
+    long margin =
+        CLOCK_SKEW_MILLIS
+            + TimeUnit.SECONDS.toMillis(database.getReplicas().getPolicy().getMaxLagSeconds());
+
+    long read = 0;
+    String source = "snapshot";
+
+    try {
+      AccountSnapshot snapshot = warmStart ? readSnapshot(margin) : null;
+      if (snapshot != null) {
+        try {
+          read = leaderboard.seed(database, snapshot, margin);
+        } catch (IOException e) {
+          logger.warning("Discarded the account snapshot: " + e.getMessage());
+          snapshot = null;
+        }
+      }
+      if (snapshot == null) {
+        leaderboard.seed(database);
+        read = leaderboard.size();
+        source = "database";
+      }
+    } catch (SQLException e) {
+      logger.warning("Failed to load the balance leaderboard.");
+      e.printStackTrace(System.err);
+      return;
+    }
+
+    logger.info(
+        "Loaded "
+            + leaderboard.size()
+            + " accounts into the balance leaderboard from the "
+            + source
+            + " in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            + " ms. ("
+            + read
+            + " read from the database)");
+
+    long period = LEADERBOARD_RECONCILE_SECONDS * 20L;
+
+    Bukkit.getScheduler()
+        .runTaskTimerAsynchronously(
+            this,
+            () -> {
+              try {
+                leaderboard.reconcile(
+                    database,
+                    margin,
+                    task -> Bukkit.getScheduler().runTask(this, task),
+                    playerId -> {
+                      PlayerAccount account = accounts.get(playerId);
+                      return account != null && account.isDirty();
+                    });
+              } catch (SQLException e) {
+                logger.warning("Failed to reconcile the balance leaderboard: " + e.getMessage());
+              }
+            },
+            period,
+            period);
+  }
+
+  /** @return The file the leaderboard is kept in between restarts. */
+  @NotNull
+  private File getSnapshotFile() {
+    return new File(getDataFolder(), "cache" + File.separator + "accounts.snapshot");
+  }
+
+  /**
+   * Maps the leaderboard snapshot and checks it against the database.
+   *
+   * @param margin How far the database may trail the snapshot, in milliseconds.
+   * @return The snapshot. If there is none, or it no longer describes the database, null is
+   *     returned.
+   * @throws SQLException Thrown if the database cannot be read.
+   */
+  @Nullable
+  private AccountSnapshot readSnapshot(long margin) throws SQLException {
+    try {
+      AccountSnapshot snapshot = AccountSnapshot.read(getSnapshotFile());
+      if (snapshot != null) snapshot.validate(database, margin);
+      return snapshot;
+    } catch (IOException e) {
+      logger.warning("Discarded the account snapshot: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /** Writes the leaderboard snapshot, if the leaderboard is complete. */
+  private void writeSnapshot() {
+
+    if (!warmStart || !leaderboard.isReady()) return;
+
+    try {
+      int count =
+          AccountSnapshot.write(
+              getSnapshotFile(), database.getCredentials().getJdbcUrl(), leaderboard);
+      logger.info("Saved " + count + " accounts to the account snapshot.");
+    } catch (IOException e) {
+      logger.warning("Failed to write the account snapshot.");
+      e.printStackTrace(System.err);
+    }
+  }
+
+  /** Writes buffered history entries. Blocking; run off the main thread. */
+  private void flushHistory() {
+    HistoryLedger ledger = this.ledger;
+    if (ledger == null) return;
+    try {
+      ledger.flush();
+    } catch (SQLException e) {
+      logger.warning("Failed to write history entries. Retrying: " + e.getMessage());
+    }
+  }
+
+  /** Deletes expired history entries. Blocking; run off the main thread. */
+  private void pruneHistory() {
+    HistoryLedger ledger = this.ledger;
+    if (ledger == null) return;
+    try {
+      long deleted = ledger.prune();
+      if (deleted != 0) logger.info("Pruned " + deleted + " expired history entries.");
+    } catch (SQLException e) {
+      logger.warning("Failed to prune history entries: " + e.getMessage());
+    }
+  }
+
+  /** Deletes expired transaction outcomes. Blocking; run off the main thread. */
+  private void pruneTransactions() {
+    TransactionLog transactions = this.transactions;
+    if (transactions == null) return;
+    try {
+      long deleted = transactions.prune();
+      if (deleted != 0) logger.info("Pruned " + deleted + " expired transaction outcomes.");
+    } catch (SQLException e) {
+      logger.warning("Failed to prune transaction outcomes: " + e.getMessage());
+    }
+  }
+
+  /** Starts any due economy jobs. Blocking; run off the main thread. */
+  private void checkJobs() {
+    EconomyJobs jobs = this.jobs;
+    if (jobs == null) return;
+    try {
+      jobs.check();
+    } catch (SQLException e) {
+      logger.warning("Failed to check economy jobs: " + e.getMessage());
+    }
+  }
+
   @Override
   public void onDisable() {
 
+    // Stop jobs first so they queue nothing more while the mailboxes drain.
+    if (jobs != null) {
+      jobs.close();
+      jobs = null;
+    }
+
+    if (mailboxes != null) {
+      try {
+        if (!mailboxes.close(MAILBOX_CLOSE_MILLIS)) {
+          logger.warning("Timed out waiting for " + mailboxes.size() + " account queue(s).");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      mailboxes = null;
+      transactions = null;
+    }
+
     if (!accounts.isEmpty()) {
 
       // If any accounts are loaded, save them.
@@ -151,7 +1248,18 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
       accounts.clear();
     }
 
+    if (ledger != null) {
+      try {
+        ledger.close();
+      } catch (SQLException e) {
+        logger.warning("Failed to write history entries.");
+        e.printStackTrace(System.err);
+      }
+      ledger = null;
+    }
+
     if (database != null) {
+      writeSnapshot();
       try {
         if (database.isConnected()) database.disconnect();
       } catch (SQLException e) {
@@ -170,6 +1278,12 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
   @EventHandler
   void on(PlayerQuitEvent event) {
     save(event.getPlayer().getUniqueId());
+    dialogs.forget(event.getPlayer().getUniqueId());
+  }
+
+  @EventHandler
+  void on(PlayerLocaleChangeEvent event) {
+    dialogs.forget(event.getPlayer().getUniqueId());
   }
 
   @Nullable
@@ -197,6 +1311,16 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
     return new Database.Credentials(cfgMySQLCredentials);
   }
 
+  private void loadConfig() {
+
+    File fileConfig = new File(getDataFolder(), "config.yml");
+    if (!fileConfig.exists()) {
+      saveResource("config.yml", false);
+    }
+
+    config = YamlConfiguration.loadConfiguration(fileConfig);
+  }
+
   private boolean loadDialog() {
 
     File folderDialog = new File(getDataFolder(), "dialog");
@@ -210,39 +1334,69 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
       saveResource("dialog/trial_economy_en.yml", false);
     }
 
-    ConfigurationSection cfgDialogEn =
-        YamlConfiguration.loadConfiguration(fileDialogTrialEconomyEn);
-
-    dialog = new Dialog(cfgDialogEn);
+    dialogs = createDialogCatalog();
     return true;
   }
 
-  private void load(@NotNull Player player) {
-
-    PlayerAccount account = null;
+  /**
+   * Loads the default locale's dialog. Fields missing from the file use the dialog shipped with the
+   * plugin.
+   */
+  @NotNull
+  private DialogCatalog createDialogCatalog() {
 
-    try {
-      account = database.getOrCreateAccount(player);
-    } catch (SQLException e) {
-      e.printStackTrace(System.err);
-      disable("A MySQL error occurred.");
+    Dialog bundled = null;
+    InputStream resource = getResource("dialog/trial_economy_en.yml");
+    if (resource != null) {
+      try (Reader reader = new InputStreamReader(resource, StandardCharsets.UTF_8)) {
+        bundled = new Dialog(YamlConfiguration.loadConfiguration(reader));
+      } catch (IOException e) {
+        logger.warning("Failed to read the bundled dialog.");
+        e.printStackTrace(System.err);
+      }
     }
 
-    accounts.put(player.getUniqueId(), account);
+    return new DialogCatalog(new File(getDataFolder(), "dialog"), bundled);
   }
 
-  private void save(@NotNull UUID playerId) {
-
-    if (!accounts.containsKey(playerId)) return;
-
-    PlayerAccount account = accounts.remove(playerId);
+  /**
+   * Loads a player's account as they join.
+   *
+   * @param player The player.
+   * @return Completes off the main thread once the account is loaded.
+   */
+  @NotNull
+  CompletableFuture<PlayerAccount> load(@NotNull Player player) {
+    return mailboxes
+        .load(player)
+        .whenComplete(
+            (account, e) -> {
+              if (e != null) {
+                e.printStackTrace(System.err);
+                Bukkit.getScheduler().runTask(this, () -> disable("A MySQL error occurred."));
+                return;
+              }
+              leaderboard.update(
+                  account.getPlayerId(), account.getPlayerName(), account.getBalance());
+            });
+  }
 
-    try {
-      database.save(account);
-    } catch (SQLException e) {
-      e.printStackTrace(System.err);
-      disable("A MySQL error occurred.");
-    }
+  /**
+   * Saves and unloads a player's account as they quit.
+   *
+   * @param playerId The player ID of the account.
+   * @return Completes off the main thread once the account is saved.
+   */
+  @NotNull
+  CompletableFuture<Void> save(@NotNull UUID playerId) {
+    return mailboxes
+        .unload(playerId)
+        .whenComplete(
+            (ignored, e) -> {
+              if (e == null) return;
+              e.printStackTrace(System.err);
+              Bukkit.getScheduler().runTask(this, () -> disable("A MySQL error occurred."));
+            });
   }
 
   void save(@NotNull PlayerAccount account) {
@@ -258,4 +1412,16 @@ public final class TrialEconomy extends JavaPlugin implements Listener {
     if (message != null) logger.warning(message);
     getPluginLoader().disablePlugin(this);
   }
+
+  /** A blocking export, import or rebalance. */
+  @FunctionalInterface
+  private interface Transfer {
+
+    /**
+     * @return The amount of accounts transferred.
+     * @throws IOException Thrown if the file cannot be read or written.
+     * @throws SQLException Thrown if the accounts cannot be read or written.
+     */
+    long run() throws IOException, SQLException;
+  }
 }
@@ -0,0 +1,221 @@
+package com.asledgehammer.trialeconomy;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+/**
+ * <b>UuidCodec</b> converts UUIDs to and from their 16-byte stored form without temporary arrays.
+ * Every persistence path encodes player IDs through here.
+ *
+ * <p>Account, history and transaction rows use {@link Layout#LEGACY}. Tables created later may pick
+ * a layout that sorts like the UUIDs it stores, keeping their indexes append-friendly.
+ *
+ * @author Jab
+ */
+final class UuidCodec {
+
+  /** The length of an encoded UUID. */
+  static final int BYTES = 16;
+
+  private static final VarHandle LITTLE_ENDIAN =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final VarHandle BIG_ENDIAN =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private UuidCodec() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Encodes a UUID in the layout of the account tables.
+   *
+   * @param uuid The UUID to encode.
+   * @return A new array of 16 bytes. JDBC drivers may keep bound arrays until a batch runs, so each
+   *     bound ID gets its own.
+   * @throws NullPointerException Thrown if the uuid is null.
+   */
+  @NotNull
+  static byte[] toBytes(@NotNull UUID uuid) {
+    byte[] bytes = new byte[BYTES];
+    encode(uuid, bytes, 0, Layout.LEGACY);
+    return bytes;
+  }
+
+  /**
+   * Decodes a UUID in the layout of the account tables.
+   *
+   * @param bytes An array of 16 bytes.
+   * @return The UUID.
+   * @throws IllegalArgumentException Thrown if the array isn't 16 in length.
+   */
+  @NotNull
+  static UUID toUUID(@NotNull byte[] bytes) {
+    if (bytes.length != BYTES) {
+      throw new IllegalArgumentException("A UUID is 16 bytes. (" + bytes.length + " given)");
+    }
+    return decode(bytes, 0, Layout.LEGACY);
+  }
+
+  /**
+   * @param uuid The UUID to encode.
+   * @param bytes The array to write 16 bytes to.
+   * @param offset The index of the first byte to write.
+   * @param layout The layout to write.
+   * @throws IndexOutOfBoundsException Thrown if the array has less than 16 bytes from the offset.
+   */
+  static void encode(
+      @NotNull UUID uuid, @NotNull byte[] bytes, int offset, @NotNull Layout layout) {
+    long mostSigBits = layout.toStored(uuid.getMostSignificantBits());
+    VarHandle view = layout.view;
+    view.set(bytes, offset, mostSigBits);
+    view.set(bytes, offset + 8, uuid.getLeastSignificantBits());
+  }
+
+  /**
+   * @param bytes The array to read 16 bytes from.
+   * @param offset The index of the first byte to read.
+   * @param layout The layout the bytes were written in.
+   * @return The UUID.
+   * @throws IndexOutOfBoundsException Thrown if the array has less than 16 bytes from the offset.
+   */
+  @NotNull
+  static UUID decode(@NotNull byte[] bytes, int offset, @NotNull Layout layout) {
+    VarHandle view = layout.view;
+    long mostSigBits = (long) view.get(bytes, offset);
+    long leastSigBits = (long) view.get(bytes, offset + 8);
+    return new UUID(layout.fromStored(mostSigBits), leastSigBits);
+  }
+
+  /**
+   * Writes a UUID at the buffer's position, advancing it by 16. The buffer's byte order is kept.
+   *
+   * @param uuid The UUID to encode.
+   * @param buffer The buffer to write to.
+   * @param layout The layout to write.
+   * @throws java.nio.BufferOverflowException Thrown if the buffer has less than 16 bytes remaining.
+   */
+  static void encode(@NotNull UUID uuid, @NotNull ByteBuffer buffer, @NotNull Layout layout) {
+    ByteOrder order = buffer.order();
+    buffer.order(layout.order);
+    buffer.putLong(layout.toStored(uuid.getMostSignificantBits()));
+    buffer.putLong(uuid.getLeastSignificantBits());
+    buffer.order(order);
+  }
+
+  /**
+   * Reads a UUID at the buffer's position, advancing it by 16. The buffer's byte order is kept.
+   *
+   * @param buffer The buffer to read from.
+   * @param layout The layout the bytes were written in.
+   * @return The UUID.
+   * @throws java.nio.BufferUnderflowException Thrown if the buffer has less than 16 bytes
+   *     remaining.
+   */
+  @NotNull
+  static UUID decode(@NotNull ByteBuffer buffer, @NotNull Layout layout) {
+    ByteOrder order = buffer.order();
+    buffer.order(layout.order);
+    long mostSigBits = buffer.getLong();
+    long leastSigBits = buffer.getLong();
+    buffer.order(order);
+    return new UUID(layout.fromStored(mostSigBits), leastSigBits);
+  }
+
+  /**
+   * Writes a UUID in {@link Layout#SORTABLE}, the layout of export and snapshot files.
+   *
+   * @param uuid The UUID to encode.
+   * @param out The output to write 16 bytes to.
+   * @throws IOException Thrown if the output fails.
+   */
+  static void write(@NotNull UUID uuid, @NotNull DataOutput out) throws IOException {
+    out.writeLong(uuid.getMostSignificantBits());
+    out.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  /**
+   * Reads a UUID written by {@link UuidCodec#write(UUID, DataOutput)}.
+   *
+   * @param in The input to read 16 bytes from.
+   * @return The UUID.
+   * @throws IOException Thrown if the input fails or ends early.
+   */
+  @NotNull
+  static UUID read(@NotNull DataInput in) throws IOException {
+    return new UUID(in.readLong(), in.readLong());
+  }
+
+  /**
+   * <b>Layout</b> is the byte order of a stored UUID.
+   *
+   * @author Jab
+   */
+  enum Layout {
+
+    /**
+     * Each half of the UUID in little-endian order, as stored by every table so far. Stored IDs
+     * don't sort like the UUIDs they encode.
+     */
+    LEGACY(ByteOrder.LITTLE_ENDIAN),
+
+    /**
+     * The UUID's bytes in the order they are written out, so stored IDs sort like {@link
+     * UUID#toString()}. Version 7 UUIDs sort by creation time.
+     */
+    SORTABLE(ByteOrder.BIG_ENDIAN),
+
+    /**
+     * {@link Layout#SORTABLE} with the time fields of version 1 UUIDs moved high first, so they
+     * sort by creation time. Matches MySQL's UUID_TO_BIN(uuid, 1).
+     */
+    TIME_ORDERED(ByteOrder.BIG_ENDIAN) {
+      @Override
+      long toStored(long mostSigBits) {
+        // time_low, time_mid, time_hi_and_version -> time_hi_and_version, time_mid, time_low
+        return (mostSigBits << 48)
+            | ((mostSigBits & 0xFFFF_0000L) << 16)
+            | (mostSigBits >>> 32);
+      }
+
+      @Override
+      long fromStored(long stored) {
+        return (stored << 32)
+            | ((stored >>> 16) & 0xFFFF_0000L)
+            | (stored >>> 48);
+      }
+    };
+
+    private final ByteOrder order;
+    private final VarHandle view;
+
+    Layout(@NotNull ByteOrder order) {
+      this.order = order;
+      this.view = order == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : BIG_ENDIAN;
+    }
+
+    /**
+     * @param mostSigBits The most significant bits of a UUID.
+     * @return The bits as stored.
+     */
+    long toStored(long mostSigBits) {
+      return mostSigBits;
+    }
+
+    /**
+     * @param stored The most significant bits as stored.
+     * @return The most significant bits of the UUID.
+     */
+    long fromStored(long stored) {
+      return stored;
+    }
+  }
+}